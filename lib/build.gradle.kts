@@ -9,6 +9,9 @@ plugins {
     // Apply the java-library plugin for API and implementation separation.
     `java-library`
     application
+
+    // Apply the JMH plugin for the benchmarks in src/jmh (run with ./gradlew jmh).
+    alias(libs.plugins.jmh)
 }
 
 repositories {
@@ -0,0 +1,102 @@
+package heroengine.benchmarks;
+
+import heroengine.components.Camera;
+import heroengine.components.Sprite;
+import heroengine.components.Transform;
+import heroengine.ecs.EntityManager;
+import heroengine.systems.RenderSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RenderSystem の描画1回あたりのスプライト1つの描画コスト（./gradlew jmh で実行、-Djava.awt.headless=true で画面なしでも動く）
+ * 描画リストの更新、画面外の除外、並べ替えを含む RenderSystem.render そのものを計測する
+ * 変換を設定しない描画（translateOnly）と、変換を設定する描画（fullTransform）の差を、同じ描画面積で比べる
+ * fullTransform はカメラの位置を0.5ずらし、画面とのずれを整数でなくすことで、すべてのスプライトに変換を設定させる
+ * （拡大したカメラで比べると、1つのスプライトの描画面積が増えて変換のコストより塗りのコストが大きくなる）
+ * まだ計測結果はない
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+    private static final int SPRITES = 2000;
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    /**
+     * 回転・拡大縮小するスプライトの割合
+     */
+    @Param({"0", "0.25", "1"})
+    public float rotatedRatio;
+
+    /**
+     * 回転・拡大縮小のないスプライトの描画方法
+     */
+    @Param({"translateOnly", "fullTransform"})
+    public String path;
+
+    private RenderSystem renderSystem;
+    private Graphics2D g2d;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        EntityManager entityManager = new EntityManager();
+        for (int i = 0; i < SPRITES; i++) {
+            Transform transform = new Transform(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+            if (random.nextFloat() < rotatedRatio) {
+                transform.rotation = random.nextFloat() * 6.28f;
+                transform.scaleX = 1.5f;
+                transform.scaleY = 1.5f;
+            }
+            Sprite sprite = new Sprite(8, 8, new Color(random.nextInt(0xFFFFFF)));
+            sprite.zOrder = random.nextInt(4);
+            entityManager.spawn(transform, sprite);
+        }
+        Camera camera = new Camera(WIDTH / 2f, HEIGHT / 2f);
+        if (path.equals("fullTransform")) {
+            camera.x += 0.5f;
+        }
+        entityManager.spawn(camera);
+        entityManager.refresh();
+
+        renderSystem = new RenderSystem(null);
+        renderSystem.setEntityManager(entityManager);
+        BufferedImage target = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+        g2d = target.createGraphics();
+        g2d.setClip(0, 0, WIDTH, HEIGHT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPRITES)
+    public void render() {
+        renderSystem.render(g2d);
+    }
+}
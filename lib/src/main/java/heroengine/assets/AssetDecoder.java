@@ -0,0 +1,19 @@
+package heroengine.assets;
+
+import java.io.IOException;
+
+/**
+ * アセットのデコーダー 読み込んだバイト列をアセットに変換する（デコード用のスレッドで呼ばれる）
+ */
+@FunctionalInterface
+public interface AssetDecoder<T> {
+
+    T decode(byte[] data) throws IOException;
+
+    /**
+     * アセットが使うメモリの見積もり（参照されていないアセットを捨てるときの上限の計算に使う）
+     */
+    default long estimateBytes(T asset, byte[] data) {
+        return data.length;
+    }
+}
@@ -0,0 +1,82 @@
+package heroengine.assets;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * まとめて先読みしたアセット ステージの切り替えで、読み込みの進捗を表示したり、まとめて参照を返したりする
+ */
+public class AssetGroup {
+
+    private final List<AssetHandle<?>> handles;
+
+    AssetGroup(List<AssetHandle<?>> handles) {
+        this.handles = Collections.unmodifiableList(handles);
+    }
+
+    public List<AssetHandle<?>> getHandles() {
+        return handles;
+    }
+
+    /**
+     * 読み込みが終わった（成功・失敗）割合（0.0f-1.0f）
+     */
+    public float getProgress() {
+        if (handles.isEmpty()) {
+            return 1.0f;
+        }
+        int done = 0;
+        for (AssetHandle<?> handle : handles) {
+            if (handle.isDone()) {
+                done++;
+            }
+        }
+        return done / (float) handles.size();
+    }
+
+    /**
+     * すべての読み込みが成功したか
+     */
+    public boolean isReady() {
+        for (AssetHandle<?> handle : handles) {
+            if (!handle.isReady()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * すべての読み込みが終わったか（失敗を含む）
+     */
+    public boolean isDone() {
+        for (AssetHandle<?> handle : handles) {
+            if (!handle.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 読み込みに失敗した数
+     */
+    public int getFailedCount() {
+        int failed = 0;
+        for (AssetHandle<?> handle : handles) {
+            if (handle.isFailed()) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * すべての参照を返す
+     */
+    public void release() {
+        for (AssetHandle<?> handle : handles) {
+            handle.release();
+        }
+    }
+}
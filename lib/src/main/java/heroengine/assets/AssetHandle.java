@@ -0,0 +1,135 @@
+package heroengine.assets;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * アセットのハンドル AssetManager から読み込みを要求するたびに1つ返され、アセットの参照を1つ保持する
+ * 読み込みが終わるまで get() はnullを返す
+ * 使い終わったら release() で参照を返す（同じアセットのハンドルがすべて返されると、アセットは破棄の対象になる）
+ */
+public class AssetHandle<T> {
+
+    private final AssetManager manager;
+    private final AssetManager.Entry entry;
+    private final CompletableFuture<T> future;
+    private boolean released;
+
+    AssetHandle(AssetManager manager, AssetManager.Entry entry, CompletableFuture<T> future) {
+        this.manager = manager;
+        this.entry = entry;
+        this.future = future;
+    }
+
+    /**
+     * アセットのキー（正規化したURI）
+     */
+    public String getKey() {
+        return entry.key;
+    }
+
+    /**
+     * 読み込みが成功して使える状態か
+     */
+    public boolean isReady() {
+        return future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    /**
+     * 読み込みが失敗したか
+     */
+    public boolean isFailed() {
+        return future.isCompletedExceptionally();
+    }
+
+    /**
+     * 成功・失敗のどちらかで読み込みが終わっているか
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * 読み込んだアセット（読み込み中や失敗した場合はnull）
+     */
+    public T get() {
+        return isReady() ? future.join() : null;
+    }
+
+    /**
+     * 読み込みが終わるまで待ってアセットを取得（ゲームスレッドでは使わず、ロード画面などで使う）
+     *
+     * @throws UncheckedIOException 読み込みに失敗した場合
+     */
+    public T join() {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            throw toUnchecked(e);
+        }
+    }
+
+    /**
+     * 読み込みに失敗した場合の例外（成功時や読み込み中はnull）
+     */
+    public Throwable getFailure() {
+        if (!isFailed()) {
+            return null;
+        }
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        } catch (CancellationException e) {
+            return e;
+        }
+    }
+
+    /**
+     * 読み込みが成功したときに呼ばれる処理を登録
+     * すでに読み込み済みならすぐに呼ばれ、そうでなければ AssetManager.update() の中で（ゲームスレッドで）呼ばれる
+     */
+    public void whenReady(Consumer<? super T> action) {
+        if (isReady()) {
+            action.accept(future.join());
+            return;
+        }
+        future.thenAccept(asset -> manager.post(() -> action.accept(asset)));
+    }
+
+    /**
+     * 参照を返す（2回目以降は何もしない）
+     */
+    public void release() {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+        }
+        manager.release(entry);
+    }
+
+    public synchronized boolean isReleased() {
+        return released;
+    }
+
+    private static RuntimeException toUnchecked(RuntimeException e) {
+        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        if (cause instanceof UncheckedIOException unchecked) {
+            return unchecked;
+        }
+        if (cause instanceof IOException io) {
+            return new UncheckedIOException(io);
+        }
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new IllegalStateException(cause);
+    }
+}
@@ -0,0 +1,317 @@
+package heroengine.assets;
+
+import heroengine.graphics.ImageCache;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * アセットマネージャー アセットをパスやURIごとに1回だけ読み込み、参照の数を数えて共有する
+ * ファイルの読み込みは仮想スレッドで、デコードは少数のバックグラウンドスレッドで行い、ゲームスレッドを止めない
+ * 参照がなくなったアセットはすぐには捨てず、メモリの上限を超えた分を使われていない順に捨てる（再び要求されればそのまま使う）
+ * 読み込み完了の通知（AssetHandle.whenReady）は update() の中で、呼び出したスレッドで実行される
+ */
+public class AssetManager implements AutoCloseable {
+
+    private static final long DEFAULT_UNREFERENCED_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * 画像のデコーダー（表示環境に合わせた形式に変換する）
+     */
+    public static final AssetDecoder<BufferedImage> IMAGE = new AssetDecoder<>() {
+        @Override
+        public BufferedImage decode(byte[] data) throws IOException {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+            if (image == null) {
+                throw new IOException("unsupported image format");
+            }
+            return ImageCache.toCompatible(image);
+        }
+
+        @Override
+        public long estimateBytes(BufferedImage asset, byte[] data) {
+            return (long) asset.getWidth() * asset.getHeight() * 4;
+        }
+    };
+
+    private final ExecutorService ioExecutor;
+    private final ExecutorService decodeExecutor;
+    private final Map<String, Entry> entries;
+    private final LinkedHashMap<String, Entry> unreferenced; // 参照されていないアセット（使われていない順）
+    private final Queue<Runnable> callbacks;
+    private long unreferencedBudgetBytes;
+    private boolean closed;
+
+    public AssetManager() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * @param decodeThreads デコードに使うスレッド数
+     */
+    public AssetManager(int decodeThreads) {
+        if (decodeThreads <= 0) {
+            throw new IllegalArgumentException("decodeThreads must be > 0: " + decodeThreads);
+        }
+        this.ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor decoder = new ThreadPoolExecutor(decodeThreads, decodeThreads,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "heroengine-asset-decode-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        decoder.allowCoreThreadTimeOut(true);
+        this.decodeExecutor = decoder;
+        this.entries = new HashMap<>();
+        this.unreferenced = new LinkedHashMap<>(16, 0.75f, true);
+        this.callbacks = new ConcurrentLinkedQueue<>();
+        this.unreferencedBudgetBytes = DEFAULT_UNREFERENCED_BUDGET_BYTES;
+    }
+
+    /**
+     * 画像ファイルの読み込みを要求（同じファイルはパスの書き方によらず1回だけ読み込まれる）
+     */
+    public AssetHandle<BufferedImage> loadImage(String path) {
+        return load(Path.of(path).toUri(), IMAGE);
+    }
+
+    /**
+     * URIの画像の読み込みを要求（getResource().toURI() で得たクラスパス上のリソースなど）
+     */
+    public AssetHandle<BufferedImage> loadImage(URI uri) {
+        return load(uri, IMAGE);
+    }
+
+    /**
+     * アセットの読み込みを要求し、参照を1つ増やす
+     * 読み込み済み・読み込み中のアセットは、それを共有する
+     *
+     * @throws IllegalStateException 同じURIを別のデコーダーで読み込もうとした場合、または閉じた後の場合
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> AssetHandle<T> load(URI uri, AssetDecoder<T> decoder) {
+        if (closed) {
+            throw new IllegalStateException("AssetManager is closed");
+        }
+        String key = normalize(uri).toString();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key, decoder, startLoading(normalize(uri), decoder));
+            entries.put(key, entry);
+        } else if (entry.decoder != decoder) {
+            throw new IllegalStateException("asset already loaded with a different decoder: " + key);
+        }
+        if (entry.references == 0) {
+            unreferenced.remove(key);
+        }
+        entry.references++;
+        return new AssetHandle<>(this, entry, (CompletableFuture<T>) entry.future);
+    }
+
+    /**
+     * 複数の画像をまとめて先読み（ステージの切り替え前などに使う）
+     */
+    public AssetGroup preloadImages(String... paths) {
+        List<AssetHandle<?>> handles = new ArrayList<>(paths.length);
+        for (String path : paths) {
+            handles.add(loadImage(path));
+        }
+        return new AssetGroup(handles);
+    }
+
+    /**
+     * 読み込み完了の通知を実行（ゲームスレッドから毎フレーム呼ぶ、GameEngineを使う場合は自動で呼ばれる）
+     */
+    public void update() {
+        Runnable callback;
+        while ((callback = callbacks.poll()) != null) {
+            callback.run();
+        }
+    }
+
+    /**
+     * 参照されていないアセットに使うメモリの上限（デフォルトは64MB、超えた分は使われていない順に捨てる）
+     */
+    public synchronized void setUnreferencedBudgetBytes(long budgetBytes) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("budgetBytes must be >= 0: " + budgetBytes);
+        }
+        this.unreferencedBudgetBytes = budgetBytes;
+        evict();
+    }
+
+    /**
+     * 参照されていないアセットをすべて捨てる（ステージの切り替え後などに使う）
+     */
+    public synchronized void evictUnreferenced() {
+        for (String key : unreferenced.keySet()) {
+            entries.remove(key);
+        }
+        unreferenced.clear();
+    }
+
+    /**
+     * 保持しているアセットの数（読み込み中と参照されていないものを含む）
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * パスのアセットの参照の数（保持していなければ0）
+     */
+    public int getReferenceCount(String path) {
+        return getReferenceCount(Path.of(path).toUri());
+    }
+
+    public synchronized int getReferenceCount(URI uri) {
+        Entry entry = entries.get(normalize(uri).toString());
+        return entry != null ? entry.references : 0;
+    }
+
+    /**
+     * パスのアセットを保持しているか（参照されていないものを含む）
+     */
+    public synchronized boolean contains(String path) {
+        return entries.containsKey(normalize(Path.of(path).toUri()).toString());
+    }
+
+    /**
+     * 読み込みのスレッドを止めて、保持しているアセットを捨てる
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            entries.clear();
+            unreferenced.clear();
+        }
+        ioExecutor.shutdownNow();
+        decodeExecutor.shutdownNow();
+    }
+
+    /**
+     * 読み込み完了の通知を update() で実行するように登録
+     */
+    void post(Runnable callback) {
+        callbacks.add(callback);
+    }
+
+    /**
+     * 参照を1つ減らし、なくなったら破棄の対象にする
+     */
+    synchronized void release(Entry entry) {
+        if (entries.get(entry.key) != entry || entry.references == 0) {
+            return;
+        }
+        entry.references--;
+        if (entry.references == 0) {
+            if (entry.future.isCompletedExceptionally()) {
+                // 失敗したアセットは次の要求で読み込み直す
+                entries.remove(entry.key);
+                return;
+            }
+            unreferenced.put(entry.key, entry);
+            evict();
+        }
+    }
+
+    /**
+     * 参照されていないアセットが上限に収まるまで、使われていない順に捨てる（読み込み中のものは数えない）
+     */
+    private void evict() {
+        long total = 0;
+        for (Entry entry : unreferenced.values()) {
+            total += entry.bytes;
+        }
+        Iterator<Entry> it = unreferenced.values().iterator();
+        while (total > unreferencedBudgetBytes && it.hasNext()) {
+            Entry entry = it.next();
+            total -= entry.bytes;
+            entries.remove(entry.key);
+            it.remove();
+        }
+    }
+
+    private <T> CompletableFuture<T> startLoading(URI uri, AssetDecoder<T> decoder) {
+        return CompletableFuture
+                .supplyAsync(() -> read(uri), ioExecutor)
+                .thenApplyAsync(data -> {
+                    try {
+                        T asset = decoder.decode(data);
+                        onLoaded(uri, decoder.estimateBytes(asset, data));
+                        return asset;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, decodeExecutor);
+    }
+
+    /**
+     * 読み込み完了時にメモリの見積もりを記録（参照がなくなっていれば上限を確認する）
+     */
+    private synchronized void onLoaded(URI uri, long bytes) {
+        Entry entry = entries.get(uri.toString());
+        if (entry != null) {
+            entry.bytes = bytes;
+            if (entry.references == 0) {
+                evict();
+            }
+        }
+    }
+
+    private static byte[] read(URI uri) {
+        try (InputStream in = uri.toURL().openStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read " + uri, e);
+        }
+    }
+
+    private static URI normalize(URI uri) {
+        if ("file".equals(uri.getScheme())) {
+            return Path.of(uri).toAbsolutePath().normalize().toUri();
+        }
+        return uri.normalize();
+    }
+
+    /**
+     * 1つのアセットの状態
+     */
+    static final class Entry {
+
+        final String key;
+        final AssetDecoder<?> decoder;
+        final CompletableFuture<?> future;
+        int references;
+        long bytes; // 読み込み完了までは0
+
+        Entry(String key, AssetDecoder<?> decoder, CompletableFuture<?> future) {
+            this.key = key;
+            this.decoder = decoder;
+            this.future = future;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package heroengine.components;
 
 import heroengine.ecs.Component;
+import heroengine.physics.CollisionMatrix;
 
 /**
  * コライダーコンポーネント 矩形の当たり判定を保持
@@ -12,6 +13,9 @@ public class BoxCollider implements Component {
     public float offsetX;
     public float offsetY;
     public boolean isTrigger; // トリガーの場合は物理衝突しない
+    public int layer; // 所属するレイヤー（0〜31）
+    public int mask; // 衝突する相手レイヤーのビット（初期値はすべて）
+    public boolean isStatic; // 動かないコライダー（地形など）
 
     public BoxCollider(float width, float height) {
         this(width, height, 0, 0);
@@ -23,6 +27,9 @@ public class BoxCollider implements Component {
         this.offsetX = offsetX;
         this.offsetY = offsetY;
         this.isTrigger = false;
+        this.layer = 0;
+        this.mask = ~0;
+        this.isStatic = false;
     }
 
     public void setSize(float width, float height) {
@@ -34,4 +41,45 @@ public class BoxCollider implements Component {
         this.offsetX = offsetX;
         this.offsetY = offsetY;
     }
+
+    /**
+     * レイヤーと、衝突する相手レイヤーを設定
+     * 相手レイヤーを省略した場合はレイヤーだけを変え、マスクはそのままにする
+     *
+     * @param layer 所属するレイヤー（0〜31）
+     * @param collidesWith 衝突する相手レイヤー（0〜31）
+     */
+    public BoxCollider setLayer(int layer, int... collidesWith) {
+        checkLayer(layer);
+        int mask = 0;
+        for (int other : collidesWith) {
+            checkLayer(other);
+            mask |= 1 << other;
+        }
+        this.layer = layer;
+        if (collidesWith.length > 0) {
+            this.mask = mask;
+        }
+        return this;
+    }
+
+    /**
+     * 動かないコライダーにする 静的コライダー同士は判定されず、位置は追加・削除があったときにだけ読み直される
+     * 位置や大きさを変えた場合は CollisionSystem.markStaticsDirty() を呼ぶこと
+     */
+    public BoxCollider setStatic(boolean isStatic) {
+        this.isStatic = isStatic;
+        return this;
+    }
+
+    public BoxCollider setTrigger(boolean isTrigger) {
+        this.isTrigger = isTrigger;
+        return this;
+    }
+
+    private static void checkLayer(int layer) {
+        if (layer < 0 || layer >= CollisionMatrix.MAX_LAYERS) {
+            throw new IllegalArgumentException("layer must be in [0, " + CollisionMatrix.MAX_LAYERS + "): " + layer);
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package heroengine.components;
+
+import heroengine.ecs.Component;
+
+/**
+ * 弾マーカーコンポーネント 高速で移動するエンティティに付けると、CollisionSystemが連続衝突判定を行う
+ * 移動前の位置から今の位置までを掃引し、最初に当たる位置で止めてすり抜けを防ぐ
+ * 移動前の位置は MovementSystem が記録する（他の方法で動かす場合は動かす前に recordStart を呼ぶ）
+ */
+public class Bullet implements Component {
+
+    public float startX; // 前回のCollisionSystemの更新後、最初に動く前の位置
+    public float startY;
+    public boolean moved; // startX/startY が記録されているか（CollisionSystemが掃引後に戻す）
+
+    /**
+     * 動かす前の位置を記録（前回の判定から既に動いている場合は最初の位置を残す）
+     */
+    public void recordStart(float x, float y) {
+        if (!moved) {
+            this.startX = x;
+            this.startY = y;
+            this.moved = true;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package heroengine.components;
+
+import heroengine.ecs.Component;
+
+/**
+ * カメラコンポーネント ワールドのどこを、どの倍率で、画面のどこに映すかを保持
+ * RenderSystemはカメラごとに、ビューポートに映る範囲のスプライトだけを描画する
+ * カメラがない場合は、ワールド座標をそのまま画面座標として描画する
+ */
+public class Camera implements Component {
+
+    // ビューポートの中央に映るワールド座標
+    public float x;
+    public float y;
+    public float zoom; // 拡大率（2.0fで2倍に拡大）
+
+    // 画面上の描画範囲（幅・高さが0以下なら描画領域全体）
+    public int viewportX;
+    public int viewportY;
+    public int viewportWidth;
+    public int viewportHeight;
+
+    public Camera() {
+        this(0, 0);
+    }
+
+    public Camera(float x, float y) {
+        this.x = x;
+        this.y = y;
+        this.zoom = 1.0f;
+    }
+
+    public void setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public void setZoom(float zoom) {
+        this.zoom = zoom;
+    }
+
+    public void setViewport(int x, int y, int width, int height) {
+        this.viewportX = x;
+        this.viewportY = y;
+        this.viewportWidth = width;
+        this.viewportHeight = height;
+    }
+}
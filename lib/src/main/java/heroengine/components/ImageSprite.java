@@ -1,6 +1,9 @@
 package heroengine.components;
 
+import heroengine.assets.AssetHandle;
 import heroengine.ecs.Component;
+import heroengine.graphics.AtlasRegion;
+import heroengine.graphics.ImageCache;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -10,21 +13,25 @@ import java.io.InputStream;
 
 /**
  * 画像スプライトコンポーネント 画像ファイルを読み込んで表示
+ * 読み込んだ画像は表示環境に合わせた形式に変換して保持する
  */
 public class ImageSprite implements Component {
 
-    public BufferedImage image;
+    public BufferedImage image; // アトラスの領域を使う場合はページ画像
+    public AtlasRegion region; // アトラスの領域（nullなら画像全体を描画）
+    public AssetHandle<BufferedImage> asset; // AssetManagerから読み込んだ場合のハンドル（外されるか画像を変えると解放）
     public int width;
     public int height;
     public boolean visible;
     public int zOrder; // 描画順序（大きいほど手前）
     public float alpha; // 透明度 (0.0f-1.0f)
+    private boolean sizeSet; // setSize() で表示サイズが指定されたか
 
     /**
      * 画像ファイルパスから読み込み
      */
     public ImageSprite(String imagePath) throws IOException {
-        this.image = ImageIO.read(new File(imagePath));
+        this.image = ImageCache.toCompatible(ImageIO.read(new File(imagePath)));
         this.width = image.getWidth();
         this.height = image.getHeight();
         this.visible = true;
@@ -36,7 +43,7 @@ public class ImageSprite implements Component {
      * InputStreamから読み込み（リソースファイル用）
      */
     public ImageSprite(InputStream imageStream) throws IOException {
-        this.image = ImageIO.read(imageStream);
+        this.image = ImageCache.toCompatible(ImageIO.read(imageStream));
         this.width = image.getWidth();
         this.height = image.getHeight();
         this.visible = true;
@@ -57,29 +64,81 @@ public class ImageSprite implements Component {
     }
 
     /**
-     * 画像を変更
+     * AssetManagerで読み込む画像から作成
+     * 読み込みが終わるまでは描画されず、終わったら画像と元画像のサイズが設定される（AssetManager.update() の中で）
+     * ハンドルはこのスプライトが持ち、エンティティから外されたときか画像を変えたときに release() する
+     */
+    public ImageSprite(AssetHandle<BufferedImage> asset) {
+        this.asset = asset;
+        this.visible = true;
+        this.zOrder = 0;
+        this.alpha = 1.0f;
+        asset.whenReady(image -> {
+            // 読み込み中に画像を変えられていたら反映しない
+            if (this.asset == asset) {
+                applyImage(image);
+            }
+        });
+    }
+
+    /**
+     * テクスチャアトラスの領域から作成
+     */
+    public ImageSprite(AtlasRegion region) {
+        this.image = region.page;
+        this.region = region;
+        this.width = region.width;
+        this.height = region.height;
+        this.visible = true;
+        this.zOrder = 0;
+        this.alpha = 1.0f;
+    }
+
+    /**
+     * 画像を変更（setSize() で表示サイズを指定していなければ画像のサイズにする）
      */
     public void setImage(BufferedImage image) {
-        this.image = image;
-        this.width = image.getWidth();
-        this.height = image.getHeight();
+        releaseAsset();
+        applyImage(image);
     }
 
     /**
      * 画像をファイルパスから読み込み
      */
     public void loadImage(String imagePath) throws IOException {
-        this.image = ImageIO.read(new File(imagePath));
-        this.width = image.getWidth();
-        this.height = image.getHeight();
+        BufferedImage loaded = ImageCache.toCompatible(ImageIO.read(new File(imagePath)));
+        releaseAsset();
+        applyImage(loaded);
+    }
+
+    /**
+     * テクスチャアトラスの領域に変更（setSize() で表示サイズを指定していなければ領域のサイズにする）
+     */
+    public void setRegion(AtlasRegion region) {
+        releaseAsset();
+        this.image = region.page;
+        this.region = region;
+        if (!sizeSet) {
+            this.width = region.width;
+            this.height = region.height;
+        }
     }
 
     /**
-     * 表示サイズを設定（元画像のサイズは変更されない）
+     * 表示サイズを設定（元画像のサイズは変更されない、以降に画像を変えてもこのサイズのまま）
      */
     public void setSize(int width, int height) {
         this.width = width;
         this.height = height;
+        this.sizeSet = true;
+    }
+
+    /**
+     * エンティティから外されたらAssetManagerのハンドルを解放する
+     */
+    @Override
+    public void onRemoved() {
+        releaseAsset();
     }
 
     /**
@@ -103,17 +162,33 @@ public class ImageSprite implements Component {
         this.alpha = Math.max(0.0f, Math.min(1.0f, alpha));
     }
 
+    private void applyImage(BufferedImage image) {
+        this.image = image;
+        this.region = null;
+        if (!sizeSet) {
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+        }
+    }
+
+    private void releaseAsset() {
+        if (asset != null) {
+            asset.release();
+            asset = null;
+        }
+    }
+
     /**
      * 元画像のサイズを取得
      */
     public int getOriginalWidth() {
-        return image.getWidth();
+        return region != null ? region.width : image.getWidth();
     }
 
     /**
      * 元画像のサイズを取得
      */
     public int getOriginalHeight() {
-        return image.getHeight();
+        return region != null ? region.height : image.getHeight();
     }
 }
@@ -0,0 +1,28 @@
+package heroengine.components;
+
+import heroengine.ecs.Component;
+
+/**
+ * シミュレーションLODコンポーネント 注目点からの距離に応じた更新頻度を保持
+ * LodSystemが毎ティック更新する（LodSystemがなければ常に更新対象）
+ */
+public class SimulationLod implements Component {
+
+    public int bucket; // 0=毎ティック, 1=1/2, 2=1/4, 3=1/8
+    public boolean due; // このティックで更新すべきか
+    public float deltaTime; // 前回更新されたティックからの経過時間（dueのときのみ有効）
+    public float pendingTime; // 前回更新されたティックから溜まっている時間
+    public float movementTime; // MovementSystemがまだ移動に使っていない時間（MovementSystemが自分で数える）
+
+    public SimulationLod() {
+        this.bucket = 0;
+        this.due = true;
+    }
+
+    /**
+     * 何ティックに1回更新されるか
+     */
+    public int getInterval() {
+        return 1 << bucket;
+    }
+}
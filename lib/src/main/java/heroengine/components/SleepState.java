@@ -0,0 +1,27 @@
+package heroengine.components;
+
+import heroengine.ecs.Component;
+
+/**
+ * スリープ状態コンポーネント 止まっているエンティティをSleepSystemがスリープさせ、移動と衝突判定の対象から外す
+ * 接触しているエンティティはアイランドとしてまとめてスリープし、まとめて起きる
+ */
+public class SleepState implements Component {
+
+    public boolean asleep;
+    public int stillFrames; // 速度がしきい値未満のまま続いたフレーム数
+    public long island; // スリープしたときのアイランドの番号
+
+    // スリープしたときの位置（外部から書き換えられたら起こす）
+    public float sleepX;
+    public float sleepY;
+
+    public boolean wakeRequested;
+
+    /**
+     * 次のSleepSystemの更新で、アイランドごと起こす
+     */
+    public void wake() {
+        this.wakeRequested = true;
+    }
+}
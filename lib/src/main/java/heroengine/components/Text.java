@@ -3,17 +3,25 @@ package heroengine.components;
 import heroengine.ecs.Component;
 
 import java.awt.*;
+import java.util.Arrays;
 
 /**
  * テキストコンポーネント 文字列を描画するための情報を保持
+ * 毎フレーム変わるスコアなどは clear() と append() で文字バッファを書き換えると、文字列を作らずに更新できる
  */
 public class Text implements Component {
 
-    public String text;
+    public String text; // 文字バッファを使っている間はnull
     public Font font;
     public Color color;
     public boolean visible;
 
+    // 文字バッファ（clear() / append() で使う）
+    private char[] buffer;
+    private int length;
+    private boolean buffered;
+    private int version; // 内容やフォントが変わるたびに増える（描画のキャッシュの判定に使う）
+
     public Text(String text) {
         this(text, new Font("SansSerif", Font.BOLD, 24), Color.WHITE);
     }
@@ -27,10 +35,119 @@ public class Text implements Component {
 
     public void setText(String text) {
         this.text = text;
+        this.buffered = false;
+        this.version++;
     }
 
     public void setFont(Font font) {
         this.font = font;
+        this.version++;
+    }
+
+    /**
+     * 文字バッファを空にする（以降は文字バッファの内容を描画する）
+     */
+    public Text clear() {
+        if (buffer == null) {
+            buffer = new char[16];
+        }
+        text = null;
+        length = 0;
+        buffered = true;
+        version++;
+        return this;
+    }
+
+    /**
+     * 文字バッファに文字列を追加
+     */
+    public Text append(CharSequence s) {
+        beginAppend(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buffer[length++] = s.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * 文字バッファに文字を追加
+     */
+    public Text append(char c) {
+        beginAppend(1);
+        buffer[length++] = c;
+        return this;
+    }
+
+    /**
+     * 文字バッファに整数を10進数で追加（文字列を作らない）
+     */
+    public Text append(int value) {
+        if (value == Integer.MIN_VALUE) {
+            return append("-2147483648");
+        }
+        int digits = 1;
+        for (int v = Math.abs(value); v >= 10; v /= 10) {
+            digits++;
+        }
+        beginAppend(value < 0 ? digits + 1 : digits);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        for (int k = length + digits - 1; k >= length; k--) {
+            buffer[k] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * 描画する文字列（文字バッファを使っている場合は新しい文字列を作る）
+     */
+    public String getText() {
+        return isBuffered() ? new String(buffer, 0, length) : text;
+    }
+
+    /**
+     * 文字バッファを使っているか（text に直接文字列を代入した場合は、その文字列を使う）
+     */
+    public boolean isBuffered() {
+        return buffered && text == null;
+    }
+
+    /**
+     * 文字バッファ（先頭から getLength() 文字が内容、書き換えないこと）
+     */
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * 文字バッファの文字数
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 内容やフォントを変更メソッドで変えるたびに増える番号
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * 追加の準備（文字列から文字バッファに切り替え、足りなければ広げる）
+     */
+    private void beginAppend(int count) {
+        if (!isBuffered()) {
+            clear();
+        }
+        if (length + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(length + count, buffer.length * 2));
+        }
+        version++;
     }
 
     public void setColor(Color color) {
@@ -0,0 +1,154 @@
+package heroengine.core;
+
+import heroengine.systems.RenderSystem;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.util.function.Supplier;
+
+/**
+ * アクティブレンダリング CanvasのBufferStrategyへ専用の描画スレッドから直接描画する
+ * Swingのrepaintを経由しないため、描画がまとめられたりイベントディスパッチスレッドの処理に待たされたりしない
+ * ゲームループが requestFrame() で描画を要求し、描画スレッドは要求のたびに1フレームを描画して表示する
+ * 描画中はゲームループの更新を待たせ、更新途中の状態を描画しない
+ * 描画中の例外はフレームごとに出力して数え、そのフレームを表示せずに次の要求を待つ（描画スレッドは止まらない）
+ */
+class ActiveRenderer {
+
+    private final Canvas canvas;
+    private final Supplier<RenderSystem> renderSystem;
+    private final FrameTimeStats frameTimeStats;
+    private final OverloadController overloadController;
+    private final Object stateLock; // 更新と描画の排他
+
+    private final Object signal = new Object();
+    private boolean frameRequested;
+    private volatile boolean running;
+    private Thread renderThread;
+    private BufferStrategy bufferStrategy;
+    private volatile int failedFrames;
+
+    /**
+     * @param stateLock ゲームループが更新中に保持するロック
+     */
+    ActiveRenderer(Canvas canvas, Supplier<RenderSystem> renderSystem, FrameTimeStats frameTimeStats,
+                   OverloadController overloadController, Object stateLock) {
+        this.canvas = canvas;
+        this.renderSystem = renderSystem;
+        this.frameTimeStats = frameTimeStats;
+        this.overloadController = overloadController;
+        this.stateLock = stateLock;
+    }
+
+    /**
+     * バッファを作成して描画スレッドを開始（Canvasが表示された後に呼ぶ）
+     *
+     * @param bufferCount バッファの数（2でダブルバッファ、3でトリプルバッファ）
+     */
+    void start(int bufferCount) {
+        canvas.createBufferStrategy(bufferCount);
+        bufferStrategy = canvas.getBufferStrategy();
+        startThread();
+    }
+
+    /**
+     * 描画スレッドを開始（バッファは start() で作成済みのもの）
+     */
+    void startThread() {
+        running = true;
+        renderThread = new Thread(this::renderLoop, "heroengine-render");
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    /**
+     * 描画スレッドを停止
+     */
+    void stop() {
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        try {
+            if (renderThread != null) {
+                renderThread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 次のフレームの描画を要求（描画が間に合っていない要求は1つにまとめる）
+     */
+    void requestFrame() {
+        synchronized (signal) {
+            frameRequested = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void renderLoop() {
+        while (running) {
+            synchronized (signal) {
+                while (!frameRequested && running) {
+                    try {
+                        signal.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                frameRequested = false;
+            }
+            if (running) {
+                try {
+                    renderFrame();
+                } catch (RuntimeException e) {
+                    // 1フレームの失敗で描画スレッドを止めない
+                    failedFrames++;
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 描画中の例外で表示できなかったフレームの数
+     */
+    int getFailedFrames() {
+        return failedFrames;
+    }
+
+    /**
+     * 1フレームを描画して表示（バッファの内容が失われた場合は描き直す）
+     */
+    private void renderFrame() {
+        RenderSystem system = renderSystem.get();
+        if (system == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) bufferStrategy.getDrawGraphics();
+                try {
+                    g2d.setColor(canvas.getBackground());
+                    g2d.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+                    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    synchronized (stateLock) {
+                        system.render(g2d);
+                    }
+                } finally {
+                    g2d.dispose();
+                }
+            } while (bufferStrategy.contentsRestored());
+            bufferStrategy.show();
+        } while (bufferStrategy.contentsLost());
+
+        // X11などで表示を遅らせずに反映させる
+        Toolkit.getDefaultToolkit().sync();
+        long end = System.nanoTime();
+        overloadController.recordRender(end - start);
+        frameTimeStats.record(end);
+    }
+}
@@ -0,0 +1,126 @@
+package heroengine.core;
+
+import java.util.Arrays;
+
+/**
+ * フレーム時間の統計 画面に表示したフレームの間隔を直近の一定数だけ保持し、平均やばらつきを求める
+ * 描画方式（repaintによる描画とアクティブレンダリング）のフレーム時間の安定性を比べるのに使う
+ * 記録と取得は別のスレッドから呼べる
+ */
+public class FrameTimeStats {
+
+    private final long[] intervals; // フレーム間隔（ナノ秒）のリングバッファ
+    private final long[] sorted; // パーセンタイルを求めるときの作業領域
+    private int next;
+    private int count;
+    private long lastTimestamp;
+    private boolean started;
+
+    public FrameTimeStats() {
+        this(240);
+    }
+
+    /**
+     * @param capacity 保持するフレーム間隔の数
+     */
+    public FrameTimeStats(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+        }
+        this.intervals = new long[capacity];
+        this.sorted = new long[capacity];
+    }
+
+    /**
+     * フレームを表示した時刻を記録
+     *
+     * @param timestampNanos System.nanoTime() の値
+     */
+    public synchronized void record(long timestampNanos) {
+        if (started) {
+            intervals[next] = timestampNanos - lastTimestamp;
+            next = (next + 1) % intervals.length;
+            count = Math.min(count + 1, intervals.length);
+        }
+        lastTimestamp = timestampNanos;
+        started = true;
+    }
+
+    /**
+     * 記録を消去（次の記録から測り直す）
+     */
+    public synchronized void reset() {
+        next = 0;
+        count = 0;
+        started = false;
+    }
+
+    /**
+     * 保持しているフレーム間隔の数
+     */
+    public synchronized int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * フレーム間隔の平均（ミリ秒）
+     */
+    public synchronized double getAverageMillis() {
+        if (count == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += intervals[i];
+        }
+        return total / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * フレーム間隔の標準偏差（ミリ秒） 小さいほどフレームが一定の間隔で表示されている
+     */
+    public synchronized double getStandardDeviationMillis() {
+        if (count == 0) {
+            return 0;
+        }
+        double average = getAverageMillis();
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            double d = intervals[i] / 1_000_000.0 - average;
+            sum += d * d;
+        }
+        return Math.sqrt(sum / count);
+    }
+
+    /**
+     * フレーム間隔の最大値（ミリ秒）
+     */
+    public synchronized double getMaxMillis() {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, intervals[i]);
+        }
+        return max / 1_000_000.0;
+    }
+
+    /**
+     * フレーム間隔のパーセンタイル（ミリ秒）
+     *
+     * @param percentile 0-100（99なら99パーセンタイル）
+     */
+    public synchronized double getPercentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        System.arraycopy(intervals, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        int index = (int) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100.0 * count) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("frames=%d avg=%.2fms sd=%.2fms p99=%.2fms max=%.2fms",
+                count, getAverageMillis(), getStandardDeviationMillis(), getPercentileMillis(99), getMaxMillis());
+    }
+}
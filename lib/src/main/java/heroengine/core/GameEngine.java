@@ -1,8 +1,11 @@
 package heroengine.core;
 
+import heroengine.assets.AssetManager;
 import heroengine.ecs.EntityManager;
 import heroengine.ecs.GameSystem;
 import heroengine.input.InputManager;
+import heroengine.profiling.FrameEvent;
+import heroengine.profiling.SystemUpdateEvent;
 import heroengine.systems.RenderSystem;
 
 import javax.swing.*;
@@ -23,12 +26,26 @@ public class GameEngine {
     private GamePanel gamePanel;
     private EntityManager entityManager;
     private List<GameSystem> systems;
-    private RenderSystem renderSystem;
+    private final SystemScheduler scheduler;
+    private final SystemScheduler.Runner systemRunner;
+    private final JobScheduler jobScheduler;
+    private final AssetManager assetManager;
+    private final OverloadController overloadController;
+    private volatile RenderSystem renderSystem;
     private InputManager inputManager;
 
+    // アクティブレンダリング
+    private boolean activeRendering;
+    private int bufferCount;
+    private Canvas canvas;
+    private ActiveRenderer activeRenderer;
+    private final FrameTimeStats frameTimeStats;
+    private final Object stateLock; // 更新中に保持し、描画（どちらの描画方式でも）と排他する
+
     private boolean running;
     private Thread gameThread;
     private final int targetFPS;
+    private long frameCount;
 
     public GameEngine(String title, int width, int height) {
         this(title, width, height, 60);
@@ -40,9 +57,45 @@ public class GameEngine {
         this.height = height;
         this.targetFPS = targetFPS;
         this.systems = new ArrayList<>();
+        this.scheduler = new SystemScheduler();
+        this.systemRunner = this::updateSystem;
+        this.jobScheduler = new JobScheduler();
+        this.assetManager = new AssetManager();
+        this.overloadController = new OverloadController();
         this.entityManager = new EntityManager();
         this.inputManager = new InputManager();
         this.running = false;
+        this.bufferCount = 2;
+        this.frameTimeStats = new FrameTimeStats();
+        this.stateLock = new Object();
+    }
+
+    /**
+     * アクティブレンダリングを使うか設定（init() より前に呼ぶ）
+     * 有効にすると、repaintを経由せずにCanvasのBufferStrategyへ専用の描画スレッドから描画する
+     */
+    public void setActiveRendering(boolean activeRendering) {
+        if (frame != null) {
+            throw new IllegalStateException("setActiveRendering must be called before init()");
+        }
+        this.activeRendering = activeRendering;
+    }
+
+    public boolean isActiveRendering() {
+        return activeRendering;
+    }
+
+    /**
+     * アクティブレンダリングのバッファの数（2でダブルバッファ、3でトリプルバッファ、init() より前に呼ぶ）
+     */
+    public void setBufferCount(int bufferCount) {
+        if (bufferCount < 2) {
+            throw new IllegalArgumentException("bufferCount must be >= 2: " + bufferCount);
+        }
+        if (frame != null) {
+            throw new IllegalStateException("setBufferCount must be called before init()");
+        }
+        this.bufferCount = bufferCount;
     }
 
     /**
@@ -60,6 +113,18 @@ public class GameEngine {
                 gamePanel.setPreferredSize(new Dimension(width, height));
                 gamePanel.setBackground(Color.BLACK);
 
+                Component surface = gamePanel;
+                if (activeRendering) {
+                    // 描画はすべて描画スレッドから行うため、Swingからの再描画は無視させる
+                    canvas = new Canvas();
+                    canvas.setIgnoreRepaint(true);
+                    canvas.setBackground(Color.BLACK);
+                    canvas.setPreferredSize(new Dimension(width, height));
+                    gamePanel.setLayout(new BorderLayout());
+                    gamePanel.add(canvas, BorderLayout.CENTER);
+                    surface = canvas;
+                }
+
                 frame.add(gamePanel);
                 frame.pack();
                 frame.setLocationRelativeTo(null);
@@ -67,8 +132,14 @@ public class GameEngine {
 
                 // 入力リスナーを登録
                 frame.addKeyListener(inputManager);
-                gamePanel.addMouseListener(inputManager.getMouseAdapter());
-                gamePanel.addMouseMotionListener(inputManager.getMouseAdapter());
+                surface.addMouseListener(inputManager.getMouseAdapter());
+                surface.addMouseMotionListener(inputManager.getMouseAdapter());
+                if (activeRendering) {
+                    canvas.addKeyListener(inputManager);
+                    activeRenderer = new ActiveRenderer(canvas, () -> renderSystem, frameTimeStats,
+                            overloadController, stateLock);
+                    activeRenderer.start(bufferCount);
+                }
             });
         } catch (Exception e) {
             e.printStackTrace();
@@ -88,6 +159,7 @@ public class GameEngine {
         for (GameSystem system : systems) {
 
             this.systems.add(system);
+            scheduler.add(system);
             system.setEntityManager(entityManager);
 
             // 既に初期化済みの場合は、追加されたシステムも初期化
@@ -98,7 +170,29 @@ public class GameEngine {
             // RenderSystemは特別に保持
             if (system instanceof RenderSystem) {
                 renderSystem = (RenderSystem) system;
+                if (activeRendering) {
+                    renderSystem.setFrameRequester(this::requestFrame);
+                }
+            }
+        }
+    }
+
+    /**
+     * システムを削除（ゲームループの更新の合間に行う、削除したシステムの shutdown() を呼ぶ）
+     *
+     * @return 削除した場合はtrue
+     */
+    public boolean removeSystem(GameSystem system) {
+        synchronized (stateLock) {
+            if (!systems.remove(system)) {
+                return false;
             }
+            scheduler.remove(system);
+            if (system == renderSystem) {
+                renderSystem = null;
+            }
+            system.shutdown();
+            return true;
         }
     }
 
@@ -135,6 +229,12 @@ public class GameEngine {
             e.printStackTrace();
         }
 
+        if (activeRenderer != null) {
+            activeRenderer.stop();
+        }
+        jobScheduler.cancelAll();
+        assetManager.close();
+
         // すべてのシステムをシャットダウン
         for (GameSystem system : systems) {
             system.shutdown();
@@ -155,8 +255,17 @@ public class GameEngine {
             lastTime = now;
 
             if (delta >= 1) {
+                // 過負荷時は遅れを取り戻すために進める時間を制限
+                if (overloadController.isActive(OverloadController.Step.CAP_CATCH_UP)) {
+                    delta = Math.min(delta, overloadController.getMaxCatchUpTicks());
+                }
+                scheduler.setLowPriorityThrottle(
+                        overloadController.isActive(OverloadController.Step.THROTTLE_LOW_PRIORITY)
+                        ? overloadController.getLowPriorityThrottle() : 1);
+
                 float deltaTime = (float) delta / targetFPS;
-                update(deltaTime);
+                long updateCost = update(deltaTime, System.nanoTime() + (long) nsPerTick);
+                overloadController.recordTick(updateCost, (long) nsPerTick);
                 delta = 0;
             }
 
@@ -170,21 +279,81 @@ public class GameEngine {
     }
 
     /**
-     * 更新処理
+     * 更新処理（アクティブレンダリングの描画中は描画が終わるまで待つ）
+     *
+     * @return 更新にかかった時間（描画を待った時間は含まない、描画の時間は別に記録される）
+     */
+    private long update(float deltaTime, long frameDeadline) {
+        synchronized (stateLock) {
+            long start = System.nanoTime();
+            updateLocked(deltaTime, frameDeadline);
+            return System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @param frameDeadline このティックの処理を終えるべき時刻（System.nanoTime() 基準）
      */
-    private void update(float deltaTime) {
+    private void updateLocked(float deltaTime, long frameDeadline) {
+        FrameEvent frameEvent = new FrameEvent();
+        frameEvent.begin();
+
         // エンティティの追加・削除を反映
         entityManager.refresh();
 
-        // すべてのシステムを更新
-        for (GameSystem system : systems) {
-            if (system.isEnabled()) {
-                system.update(deltaTime);
-            }
-        }
+        // 更新時期のシステムを更新（TickRateに従う）
+        scheduler.tick(deltaTime, systemRunner);
+
+        // ティックの残り時間（時間予算が短ければ予算）の範囲で分割実行ジョブを進める
+        jobScheduler.run(frameDeadline);
+
+        // 読み込みが終わったアセットの通知を実行
+        assetManager.update();
 
         // 入力状態をクリア（フレームの最後に実行）
         inputManager.update();
+
+        frameEvent.end();
+        if (frameEvent.shouldCommit()) {
+            frameEvent.frame = frameCount;
+            frameEvent.deltaTime = deltaTime;
+            frameEvent.commit();
+        }
+        frameCount++;
+    }
+
+    /**
+     * アクティブレンダリングの描画スレッドに次のフレームの描画を要求
+     */
+    private void requestFrame() {
+        if (activeRenderer != null) {
+            activeRenderer.requestFrame();
+        }
+    }
+
+    /**
+     * システム1つを更新
+     *
+     * @param deltaTime そのシステムの前回更新からの経過時間
+     */
+    private void updateSystem(GameSystem system, float deltaTime) {
+        // 過負荷時は描画フレームを間引く
+        if (system == renderSystem
+                && overloadController.isActive(OverloadController.Step.SKIP_RENDER)
+                && frameCount % overloadController.getRenderSkipInterval() != 0) {
+            return;
+        }
+
+        SystemUpdateEvent systemEvent = new SystemUpdateEvent();
+        systemEvent.begin();
+        system.update(deltaTime);
+        systemEvent.end();
+        if (systemEvent.shouldCommit()) {
+            systemEvent.system = system.getClass().getName();
+            systemEvent.frame = frameCount;
+            systemEvent.deltaTime = deltaTime;
+            systemEvent.commit();
+        }
     }
 
     /**
@@ -196,7 +365,8 @@ public class GameEngine {
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
 
-            if (renderSystem != null) {
+            // アクティブレンダリングでは描画スレッドがCanvasに描画する
+            if (renderSystem != null && !activeRendering) {
                 Graphics2D g2d = (Graphics2D) g;
 
                 // アンチエイリアス有効化
@@ -205,7 +375,17 @@ public class GameEngine {
                         RenderingHints.VALUE_ANTIALIAS_ON
                 );
 
-                renderSystem.render(g2d);
+                // 更新中（エンティティの構成の変化が描画リストに反映される間）は描画を待つ
+                long start = System.nanoTime();
+                synchronized (stateLock) {
+                    RenderSystem system = renderSystem;
+                    if (system != null) {
+                        system.render(g2d);
+                    }
+                }
+                long end = System.nanoTime();
+                overloadController.recordRender(end - start);
+                frameTimeStats.record(end);
             }
         }
     }
@@ -221,4 +401,39 @@ public class GameEngine {
     public InputManager getInputManager() {
         return inputManager;
     }
+
+    /**
+     * 複数フレームに分割して実行するジョブのスケジューラーを取得
+     */
+    public JobScheduler getJobScheduler() {
+        return jobScheduler;
+    }
+
+    /**
+     * 画像などのアセットを非同期に読み込んで共有するマネージャーを取得
+     */
+    public AssetManager getAssetManager() {
+        return assetManager;
+    }
+
+    /**
+     * 過負荷時の間引きを制御するコントローラーを取得
+     */
+    public OverloadController getOverloadController() {
+        return overloadController;
+    }
+
+    /**
+     * 表示したフレームの間隔の統計を取得（描画方式によらず記録される）
+     */
+    public FrameTimeStats getFrameTimeStats() {
+        return frameTimeStats;
+    }
+
+    /**
+     * これまでに実行したフレーム数を取得
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
 }
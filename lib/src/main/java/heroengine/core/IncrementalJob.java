@@ -0,0 +1,28 @@
+package heroengine.core;
+
+/**
+ * 分割実行ジョブ 1フレームに収まらない処理を小さな単位に分けて複数フレームで実行する
+ */
+public interface IncrementalJob {
+
+    /**
+     * 処理を1単位だけ進める（短時間で戻ること）
+     *
+     * @return 処理がすべて完了したらtrue
+     */
+    boolean step();
+
+    /**
+     * 進捗（0.0f-1.0f）
+     */
+    default float getProgress() {
+        return 0.0f;
+    }
+
+    /**
+     * 完了時の処理（ゲームスレッドで呼ばれる）
+     */
+    default void onComplete() {
+        // オーバーライド可能
+    }
+}
@@ -0,0 +1,87 @@
+package heroengine.core;
+
+/**
+ * 投入したジョブの状態を参照・操作するためのハンドル
+ */
+public class JobHandle {
+
+    private final IncrementalJob job;
+    private boolean done;
+    private boolean cancelled;
+    private Throwable failure;
+    private long steps;
+    private int frames;
+
+    JobHandle(IncrementalJob job) {
+        this.job = job;
+    }
+
+    public IncrementalJob getJob() {
+        return job;
+    }
+
+    /**
+     * 完了・キャンセル・失敗のいずれかで終了しているか
+     */
+    public boolean isDone() {
+        return done || cancelled || failure != null;
+    }
+
+    public boolean isCompleted() {
+        return done;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * ジョブが例外で終了した場合の例外（正常時はnull、onComplete の例外は完了した上で記録される）
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * 進捗（0.0f-1.0f）
+     */
+    public float getProgress() {
+        return done ? 1.0f : job.getProgress();
+    }
+
+    /**
+     * これまでに実行したステップ数
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * 実行に使われたフレーム数
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * ジョブをキャンセル（次のフレームから実行されない）
+     */
+    public void cancel() {
+        if (!isDone()) {
+            cancelled = true;
+        }
+    }
+
+    void markCompleted() {
+        done = true;
+    }
+
+    void markFailed(Throwable failure) {
+        this.failure = failure;
+    }
+
+    void addSteps(long steps) {
+        this.steps += steps;
+        this.frames++;
+    }
+}
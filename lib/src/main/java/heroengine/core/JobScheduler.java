@@ -0,0 +1,155 @@
+package heroengine.core;
+
+import heroengine.profiling.JobSliceEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ジョブスケジューラー フレームごとの時間予算内で分割実行ジョブを進める
+ * 予算を使い切ったジョブは中断され、次のフレームで続きから実行される
+ */
+public class JobScheduler {
+
+    private final List<JobHandle> jobs;
+    private long frameBudgetNanos;
+    private int cursor;
+
+    public JobScheduler() {
+        this.jobs = new ArrayList<>();
+        this.frameBudgetNanos = 2_000_000L; // 2ms
+    }
+
+    /**
+     * ジョブを投入（ゲームスレッドから呼ぶ）
+     */
+    public JobHandle submit(IncrementalJob job) {
+        JobHandle handle = new JobHandle(job);
+        jobs.add(handle);
+        return handle;
+    }
+
+    /**
+     * 1フレームあたりの時間予算を設定（ミリ秒）
+     */
+    public void setFrameBudgetMillis(float millis) {
+        this.frameBudgetNanos = (long) (millis * 1_000_000L);
+    }
+
+    public float getFrameBudgetMillis() {
+        return frameBudgetNanos / 1_000_000f;
+    }
+
+    /**
+     * 実行待ちのジョブ数
+     */
+    public int getPendingCount() {
+        return jobs.size();
+    }
+
+    /**
+     * 時間予算内でジョブを実行 予算が0でも先頭のジョブは最低1ステップ進める
+     */
+    public void run() {
+        run(Long.MAX_VALUE);
+    }
+
+    /**
+     * 時間予算とフレームの残り時間の短い方でジョブを実行 期限を過ぎていても先頭のジョブは最低1ステップ進める
+     *
+     * @param frameDeadlineNanos このフレームの処理を終えるべき時刻（System.nanoTime() 基準）
+     */
+    public void run(long frameDeadlineNanos) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long deadline = now + Math.max(0, Math.min(frameBudgetNanos, frameDeadlineNanos - now));
+        int count = jobs.size();
+        int start = cursor % count;
+        int last = start;
+        boolean expired = false;
+
+        // 前のフレームで中断したジョブの次から順番に実行（ラウンドロビン）
+        for (int i = 0; i < count && !expired; i++) {
+            int index = (start + i) % count;
+            JobHandle handle = jobs.get(index);
+            if (handle.isDone()) {
+                continue;
+            }
+            last = index;
+            expired = runSlice(handle, deadline);
+        }
+        cursor = last + 1;
+
+        // 終了したジョブを取り除く
+        for (int i = jobs.size() - 1; i >= 0; i--) {
+            if (jobs.get(i).isDone()) {
+                jobs.remove(i);
+                if (i < cursor) {
+                    cursor--;
+                }
+            }
+        }
+    }
+
+    /**
+     * 1つのジョブを期限まで実行
+     *
+     * @return 期限を過ぎたらtrue
+     */
+    private boolean runSlice(JobHandle handle, long deadline) {
+        JobSliceEvent event = new JobSliceEvent();
+        event.begin();
+
+        IncrementalJob job = handle.getJob();
+        long steps = 0;
+        boolean finished = false;
+        long now;
+        try {
+            do {
+                finished = job.step();
+                steps++;
+                now = System.nanoTime();
+            } while (!finished && now < deadline);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            handle.markFailed(e);
+            now = System.nanoTime();
+        }
+        handle.addSteps(steps);
+
+        if (finished) {
+            handle.markCompleted();
+            try {
+                job.onComplete();
+            } catch (RuntimeException e) {
+                // 完了時の処理の失敗でゲームループを止めない
+                e.printStackTrace();
+                handle.markFailed(e);
+            }
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.job = job.getClass().getName();
+            event.steps = steps;
+            event.progress = handle.getProgress();
+            event.completed = finished;
+            event.commit();
+        }
+        return now >= deadline;
+    }
+
+    /**
+     * すべてのジョブをキャンセル
+     */
+    public void cancelAll() {
+        for (JobHandle handle : jobs) {
+            handle.cancel();
+        }
+        jobs.clear();
+        cursor = 0;
+    }
+}
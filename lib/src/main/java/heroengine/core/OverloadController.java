@@ -0,0 +1,204 @@
+package heroengine.core;
+
+import heroengine.profiling.OverloadEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 過負荷コントローラー 更新処理と描画処理の所要時間をティックの予算と比較し、
+ * 遅れが続く場合は設定された順序で段階的に処理を間引く
+ * 描画は別のスレッド（イベントディスパッチスレッドや描画スレッド）で行われるため、recordRender で記録された時間を
+ * 次の recordTick でそのティックの所要時間に加える（描画を間引くと負荷が下がり、レベルが戻るようになる）
+ */
+public class OverloadController {
+
+    /**
+     * 間引きの段階
+     */
+    public enum Step {
+        SKIP_RENDER, // 描画フレームを間引く
+        THROTTLE_LOW_PRIORITY, // 低優先度システムの更新頻度を下げる
+        CAP_CATCH_UP // 遅れを取り戻すための経過時間を制限する
+    }
+
+    private static final float SMOOTHING = 0.1f;
+
+    private final List<OverloadListener> listeners;
+    private final AtomicLong pendingRenderNanos; // 前回の recordTick 以降の描画時間
+    private Step[] order;
+    private int level;
+
+    private float averageLoad; // 予算に対する所要時間の比率（移動平均）
+    private float escalateLoad;
+    private float recoverLoad;
+    private int escalateTicks;
+    private int recoverTicks;
+    private int overTicks;
+    private int underTicks;
+
+    private int renderSkipInterval;
+    private int lowPriorityThrottle;
+    private float maxCatchUpTicks;
+
+    public OverloadController() {
+        this.listeners = new ArrayList<>();
+        this.pendingRenderNanos = new AtomicLong();
+        this.order = new Step[]{Step.SKIP_RENDER, Step.THROTTLE_LOW_PRIORITY, Step.CAP_CATCH_UP};
+        this.escalateLoad = 1.0f;
+        this.recoverLoad = 0.6f;
+        this.escalateTicks = 30;
+        this.recoverTicks = 120;
+        this.renderSkipInterval = 2;
+        this.lowPriorityThrottle = 4;
+        this.maxCatchUpTicks = 1.0f;
+    }
+
+    /**
+     * 1フレームの描画（と表示）にかかった時間を記録（どのスレッドから呼んでもよい）
+     */
+    public void recordRender(long costNanos) {
+        pendingRenderNanos.addAndGet(costNanos);
+    }
+
+    /**
+     * 1ティック分の所要時間を記録し、必要ならレベルを変更
+     * 前回からの間に recordRender で記録された描画時間も、このティックの所要時間に含める
+     *
+     * @param costNanos 更新処理にかかった時間
+     * @param budgetNanos 1ティックの予算
+     */
+    public void recordTick(long costNanos, long budgetNanos) {
+        long renderNanos = pendingRenderNanos.getAndSet(0);
+        float load = (float) (costNanos + renderNanos) / budgetNanos;
+        averageLoad += (load - averageLoad) * SMOOTHING;
+
+        if (averageLoad > escalateLoad) {
+            underTicks = 0;
+            if (++overTicks >= escalateTicks && level < order.length) {
+                overTicks = 0;
+                setLevel(level + 1);
+            }
+        } else if (averageLoad < recoverLoad) {
+            overTicks = 0;
+            if (++underTicks >= recoverTicks && level > 0) {
+                underTicks = 0;
+                setLevel(level - 1);
+            }
+        } else {
+            overTicks = 0;
+            underTicks = 0;
+        }
+    }
+
+    private void setLevel(int newLevel) {
+        int oldLevel = level;
+        level = newLevel;
+
+        OverloadEvent event = new OverloadEvent();
+        if (event.shouldCommit()) {
+            event.oldLevel = oldLevel;
+            event.newLevel = newLevel;
+            event.load = averageLoad;
+            event.commit();
+        }
+
+        for (OverloadListener listener : listeners) {
+            listener.onLevelChanged(oldLevel, newLevel, this);
+        }
+    }
+
+    /**
+     * 指定した段階が現在有効か
+     */
+    public boolean isActive(Step step) {
+        for (int i = 0; i < level; i++) {
+            if (order[i] == step) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 現在のレベル（0=通常、有効な段階の数）
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * 予算に対する所要時間（更新と描画）の比率（移動平均）
+     */
+    public float getAverageLoad() {
+        return averageLoad;
+    }
+
+    /**
+     * 間引きの順序を設定（先頭から順に有効になる）
+     */
+    public void setDegradationOrder(Step... order) {
+        this.order = order.clone();
+        if (level > order.length) {
+            setLevel(order.length);
+        }
+    }
+
+    /**
+     * レベルを上げる負荷率と、その状態が続くティック数を設定
+     */
+    public void setEscalation(float load, int ticks) {
+        this.escalateLoad = load;
+        this.escalateTicks = ticks;
+    }
+
+    /**
+     * レベルを下げる負荷率と、その状態が続くティック数を設定
+     */
+    public void setRecovery(float load, int ticks) {
+        this.recoverLoad = load;
+        this.recoverTicks = ticks;
+    }
+
+    /**
+     * SKIP_RENDER時に何ティックに1回描画するか
+     */
+    public int getRenderSkipInterval() {
+        return renderSkipInterval;
+    }
+
+    public void setRenderSkipInterval(int renderSkipInterval) {
+        this.renderSkipInterval = Math.max(1, renderSkipInterval);
+    }
+
+    /**
+     * THROTTLE_LOW_PRIORITY時に低優先度システムの更新間隔を何倍にするか
+     */
+    public int getLowPriorityThrottle() {
+        return lowPriorityThrottle;
+    }
+
+    public void setLowPriorityThrottle(int lowPriorityThrottle) {
+        this.lowPriorityThrottle = Math.max(1, lowPriorityThrottle);
+    }
+
+    /**
+     * CAP_CATCH_UP時に1回の更新で進める最大ティック数
+     */
+    public float getMaxCatchUpTicks() {
+        return maxCatchUpTicks;
+    }
+
+    public void setMaxCatchUpTicks(float maxCatchUpTicks) {
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    public void addListener(OverloadListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OverloadListener listener) {
+        listeners.remove(listener);
+    }
+}
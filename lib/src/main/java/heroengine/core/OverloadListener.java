@@ -0,0 +1,13 @@
+package heroengine.core;
+
+/**
+ * 過負荷レベルの変化を受け取るリスナー
+ */
+@FunctionalInterface
+public interface OverloadListener {
+
+    /**
+     * レベルが変化したときに呼ばれる（ゲームスレッド）
+     */
+    void onLevelChanged(int oldLevel, int newLevel, OverloadController controller);
+}
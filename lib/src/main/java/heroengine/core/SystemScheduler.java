@@ -0,0 +1,199 @@
+package heroengine.core;
+
+import heroengine.ecs.GameSystem;
+import heroengine.ecs.TickRate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * システムスケジューラー 各システムのTickRateに従って更新するかを判定する
+ * 低頻度のシステムが同じフレームに集中しないよう位相をずらす
+ */
+public class SystemScheduler {
+
+    // Hz指定のシステムの位相をずらすための係数（黄金比）
+    private static final float PHASE_STEP = 0.618034f;
+
+    private final List<Slot> slots;
+    private final Map<Integer, Integer> intervalCounts;
+    private int hzCount;
+    private int everyTickCount;
+    private long tick;
+    private int lowPriorityThrottle = 1;
+
+    public SystemScheduler() {
+        this.slots = new ArrayList<>();
+        this.intervalCounts = new HashMap<>();
+    }
+
+    /**
+     * システムを登録
+     */
+    public void add(GameSystem system) {
+        Slot slot = new Slot(system);
+        assignPhase(slot);
+        slots.add(slot);
+    }
+
+    /**
+     * システムの登録を解除（登録されていなければ何もしない）
+     *
+     * @return 解除した場合はtrue
+     */
+    public boolean remove(GameSystem system) {
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            if (slot.system == system) {
+                releasePhase(slot);
+                slots.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 間隔ごとに登録されているシステムの数（位相をずらすのに使う）
+     */
+    int getIntervalCount(int ticks) {
+        return intervalCounts.getOrDefault(ticks, 0);
+    }
+
+    /**
+     * 1ティック進め、更新時期のシステムを登録順に実行
+     *
+     * @param deltaTime このティックの経過時間（秒）
+     * @param runner 実際にシステムを更新する処理
+     */
+    public void tick(float deltaTime, Runner runner) {
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            GameSystem system = slot.system;
+
+            if (!system.isEnabled()) {
+                // 無効中の時間は再開後に渡さない
+                slot.elapsed = 0;
+                system.consumeUpdateRequest();
+                continue;
+            }
+
+            if (system.getTickRate() != slot.rate) {
+                assignPhase(slot);
+            }
+
+            slot.elapsed += deltaTime;
+            if (isDue(slot, deltaTime)) {
+                float elapsed = slot.elapsed;
+                slot.elapsed = 0;
+                runner.run(system, elapsed);
+            }
+        }
+        tick++;
+    }
+
+    /**
+     * 低優先度システムの更新間隔を何倍にするか（1で通常）
+     */
+    public void setLowPriorityThrottle(int throttle) {
+        this.lowPriorityThrottle = Math.max(1, throttle);
+    }
+
+    public int getLowPriorityThrottle() {
+        return lowPriorityThrottle;
+    }
+
+    /**
+     * これまでに進めたティック数
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    private boolean isDue(Slot slot, float deltaTime) {
+        TickRate rate = slot.rate;
+        int throttle = slot.system.isLowPriority() ? lowPriorityThrottle : 1;
+        switch (rate.getMode()) {
+            case EVERY_TICK:
+                return throttle == 1 || (tick + slot.phase) % throttle == 0;
+            case EVERY_N_TICKS:
+                return (tick + slot.phase) % ((long) rate.getTicks() * throttle) == 0;
+            case FIXED_HZ: {
+                float period = throttle / rate.getHz();
+                slot.timer += deltaTime;
+                if (slot.timer < period) {
+                    return false;
+                }
+                // 大きく遅れた場合でも溜め込まず1回にまとめる
+                slot.timer = slot.timer % period;
+                return true;
+            }
+            default:
+                return slot.system.consumeUpdateRequest();
+        }
+    }
+
+    /**
+     * 同じ間隔のシステム同士で位相をずらす
+     */
+    private void assignPhase(Slot slot) {
+        releasePhase(slot);
+        TickRate rate = slot.system.getTickRate();
+        slot.rate = rate;
+        slot.phase = 0;
+        slot.timer = 0;
+
+        if (rate.getMode() == TickRate.Mode.EVERY_TICK) {
+            // 間引き時にのみ使う位相
+            slot.phase = everyTickCount++ & 0xFFFF;
+        } else if (rate.getMode() == TickRate.Mode.EVERY_N_TICKS) {
+            int n = rate.getTicks();
+            int count = intervalCounts.merge(n, 1, Integer::sum) - 1;
+            slot.intervalTicks = n;
+            // 現在のティックから数えてcount番目のティックで最初に更新する
+            slot.phase = (int) Math.floorMod(-(tick + count), (long) n);
+        } else if (rate.getMode() == TickRate.Mode.FIXED_HZ) {
+            float period = 1.0f / rate.getHz();
+            slot.timer = (hzCount++ * PHASE_STEP) % 1.0f * period;
+        }
+    }
+
+    /**
+     * 前の間隔の数からこのシステムを外す（間隔の変更時と登録解除時）
+     */
+    private void releasePhase(Slot slot) {
+        if (slot.intervalTicks == 0) {
+            return;
+        }
+        intervalCounts.computeIfPresent(slot.intervalTicks, (n, count) -> count > 1 ? count - 1 : null);
+        slot.intervalTicks = 0;
+    }
+
+    /**
+     * システムの更新処理
+     */
+    @FunctionalInterface
+    public interface Runner {
+
+        void run(GameSystem system, float deltaTime);
+    }
+
+    /**
+     * システムごとのスケジュール状態
+     */
+    private static class Slot {
+
+        final GameSystem system;
+        TickRate rate;
+        int phase;
+        float timer;
+        float elapsed;
+        int intervalTicks; // intervalCounts に数えている間隔（数えていなければ0）
+
+        Slot(GameSystem system) {
+            this.system = system;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package heroengine.demo;
 
 import heroengine.components.BoxCollider;
+import heroengine.components.Bullet;
 import heroengine.components.Sprite;
 import heroengine.components.Text;
 import heroengine.components.Transform;
@@ -31,6 +32,10 @@ public class PongGame {
     private static final float PADDLE_SPEED = 400f;
     private static final float INITIAL_BALL_SPEED = 300f;
 
+    // 衝突レイヤー（パドルとボールの組み合わせだけを判定する）
+    private static final int PADDLE_LAYER = 1;
+    private static final int BALL_LAYER = 2;
+
     private static int playerScore = 0;
     private static int aiScore = 0;
 
@@ -71,7 +76,7 @@ public class PongGame {
                 new Transform(30, HEIGHT / 2),
                 new Sprite(PADDLE_WIDTH, PADDLE_HEIGHT, Color.WHITE),
                 new Velocity(),
-                new BoxCollider(PADDLE_WIDTH, PADDLE_HEIGHT),
+                new BoxCollider(PADDLE_WIDTH, PADDLE_HEIGHT).setLayer(PADDLE_LAYER, BALL_LAYER),
                 new PlayerPaddleTag()
         );
 
@@ -80,7 +85,7 @@ public class PongGame {
                 new Transform(WIDTH - 30, HEIGHT / 2),
                 new Sprite(PADDLE_WIDTH, PADDLE_HEIGHT, Color.WHITE),
                 new Velocity(),
-                new BoxCollider(PADDLE_WIDTH, PADDLE_HEIGHT),
+                new BoxCollider(PADDLE_WIDTH, PADDLE_HEIGHT).setLayer(PADDLE_LAYER, BALL_LAYER),
                 new AIPaddleTag()
         );
 
@@ -89,7 +94,8 @@ public class PongGame {
                 new Transform(WIDTH / 2, HEIGHT / 2),
                 new Sprite(BALL_SIZE, BALL_SIZE, Color.WHITE),
                 new Velocity(INITIAL_BALL_SPEED, INITIAL_BALL_SPEED * 0.5f),
-                new BoxCollider(BALL_SIZE, BALL_SIZE),
+                new BoxCollider(BALL_SIZE, BALL_SIZE).setLayer(BALL_LAYER, PADDLE_LAYER),
+                new Bullet(), // 速くなってもパドルをすり抜けないように連続衝突判定を行う
                 new BallTag()
         );
 
@@ -261,8 +267,9 @@ public class PongGame {
      */
     private static class PongCollisionSystem extends CollisionSystem {
 
+        // 接触が始まったときだけ跳ね返す（重なっている間に何度も反転しないように）
         @Override
-        protected void onCollision(Entity a, Entity b) {
+        protected void onCollisionEnter(Entity a, Entity b) {
             Entity ball = null;
             Entity paddle = null;
 
@@ -334,7 +341,7 @@ public class PongGame {
         private void updateScoreDisplay() {
             for (Entity entity : entityManager.getEntitiesWith(Text.class, ScoreDisplayTag.class)) {
                 Text text = entity.getComponent(Text.class).get();
-                text.setText(playerScore + "  :  " + aiScore);
+                text.clear().append(playerScore).append("  :  ").append(aiScore);
             }
         }
     }
@@ -40,7 +40,7 @@ public class SampleGame {
                 new PlayerControlSystem(inputManager),
                 new CollisionSystem() {
             @Override
-            protected void onCollision(Entity a, Entity b) {
+            protected void onCollisionEnter(Entity a, Entity b) {
                 // 衝突時にプレイヤーの色を変更
                 if (a.hasComponent(PlayerTag.class)) {
                     a.getComponent(Sprite.class).get().setColor(Color.RED);
@@ -4,4 +4,12 @@ package heroengine.ecs;
  * コンポーネントの基底インターフェース ECSアーキテクチャにおけるデータコンテナ
  */
 public interface Component {
+
+    /**
+     * エンティティから外されたときに呼ばれる（削除、同じ型のコンポーネントでの置き換え、エンティティの削除）
+     * 借りているリソースを返すコンポーネントがオーバーライドする
+     */
+    default void onRemoved() {
+        // オーバーライド可能
+    }
 }
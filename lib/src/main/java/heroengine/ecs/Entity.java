@@ -1,6 +1,8 @@
 package heroengine.ecs;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -14,6 +16,7 @@ public class Entity {
     private final long id;
     private final Map<Class<? extends Component>, Component> components;
     private boolean active;
+    EntityManager manager; // 所属するマネージャー（refresh() で追加されてから削除されるまで）
 
     public Entity() {
         this.id = nextId++;
@@ -30,7 +33,13 @@ public class Entity {
     }
 
     public void setActive(boolean active) {
+        if (this.active == active) {
+            return;
+        }
         this.active = active;
+        if (manager != null) {
+            manager.activeChanged(this);
+        }
     }
 
     /**
@@ -39,7 +48,17 @@ public class Entity {
     @SafeVarargs
     public final <T extends Component> Entity addComponents(T... components) {
         for (T component : components) {
-            this.components.put(component.getClass(), component);
+            Component replaced = this.components.put(component.getClass(), component);
+            if (replaced != null && replaced != component) {
+                replaced.onRemoved();
+            }
+        }
+        if (manager != null) {
+            List<Class<? extends Component>> added = new ArrayList<>(components.length);
+            for (T component : components) {
+                added.add(component.getClass());
+            }
+            manager.componentsChanged(this, added);
         }
         return this;
     }
@@ -60,17 +79,37 @@ public class Entity {
     }
 
     /**
-     * コンポーネントを削除
+     * コンポーネントを削除（外したコンポーネントの onRemoved() を呼ぶ）
      */
     public <T extends Component> void removeComponent(Class<T> componentClass) {
-        components.remove(componentClass);
+        Component removed = components.remove(componentClass);
+        if (removed == null) {
+            return;
+        }
+        removed.onRemoved();
+        if (manager != null) {
+            manager.componentsChanged(this, List.of(componentClass));
+        }
     }
 
     /**
-     * すべてのコンポーネントを削除
+     * すべてのコンポーネントを削除（外したコンポーネントの onRemoved() を呼ぶ）
      */
     public void clearComponents() {
+        if (components.isEmpty()) {
+            return;
+        }
+        List<Component> removed = new ArrayList<>(components.values());
         components.clear();
+        for (Component component : removed) {
+            component.onRemoved();
+        }
+        if (manager == null) {
+            return;
+        }
+        for (Component component : removed) {
+            manager.componentsChanged(this, List.of(component.getClass()));
+        }
     }
 
     @Override
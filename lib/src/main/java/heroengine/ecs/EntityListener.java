@@ -0,0 +1,18 @@
+package heroengine.ecs;
+
+/**
+ * エンティティリスナー EntityManagerに登録すると、対象のコンポーネントを持つエンティティの構成の変化が通知される
+ * 通知は変更した処理と同じスレッドから、変更の直後に呼ばれる（refresh() で追加・削除されたエンティティだけが対象）
+ */
+public interface EntityListener {
+
+    /**
+     * エンティティが追加された、有効になった、または対象のコンポーネントが追加・削除された
+     */
+    void onEntityChanged(Entity entity);
+
+    /**
+     * エンティティが削除された、または無効になった（コンポーネントはまだ残っている）
+     */
+    void onEntityRemoved(Entity entity);
+}
@@ -1,7 +1,10 @@
 package heroengine.ecs;
 
+import heroengine.profiling.EntityRefreshEvent;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -12,11 +15,32 @@ public class EntityManager {
     private final List<Entity> entities;
     private final List<Entity> entitiesToAdd;
     private final List<Entity> entitiesToRemove;
+    private final List<EntityListener> listeners;
+    private final List<Set<Class<? extends Component>>> listenerFilters;
+    private volatile long version; // 書き込みはゲームスレッドだけ、描画スレッドからも読まれる
 
     public EntityManager() {
         this.entities = new ArrayList<>();
         this.entitiesToAdd = new ArrayList<>();
         this.entitiesToRemove = new ArrayList<>();
+        this.listeners = new ArrayList<>();
+        this.listenerFilters = new ArrayList<>();
+    }
+
+    /**
+     * リスナーを登録 指定したコンポーネントのどれかに関係する変化だけが通知される
+     */
+    public void addEntityListener(EntityListener listener, Set<Class<? extends Component>> componentClasses) {
+        listeners.add(listener);
+        listenerFilters.add(Set.copyOf(componentClasses));
+    }
+
+    public void removeEntityListener(EntityListener listener) {
+        int index = listeners.indexOf(listener);
+        if (index >= 0) {
+            listeners.remove(index);
+            listenerFilters.remove(index);
+        }
     }
 
     /**
@@ -37,20 +61,45 @@ public class EntityManager {
     }
 
     /**
-     * すべてのエンティティを削除
+     * すべてのエンティティを削除（削除待ちと同じく、各エンティティのコンポーネントも外す）
      */
     public void clear() {
+        for (Entity entity : entities) {
+            entity.manager = null;
+            if (entity.isActive()) {
+                notifyRemoved(entity);
+            }
+            entity.clearComponents();
+        }
+        for (Entity entity : entitiesToAdd) {
+            entity.clearComponents();
+        }
         entities.clear();
         entitiesToAdd.clear();
         entitiesToRemove.clear();
+        version++;
     }
 
     /**
      * 追加・削除待ちのエンティティを処理 フレームの最初か最後に呼ぶ
      */
     public void refresh() {
+        EntityRefreshEvent event = new EntityRefreshEvent();
+        event.begin();
+        int removed = entitiesToRemove.size();
+        int added = entitiesToAdd.size();
+        if (removed > 0 || added > 0) {
+            version++;
+        }
+
         // 削除処理
         for (Entity entity : entitiesToRemove) {
+            if (entity.manager == this) {
+                entity.manager = null;
+                if (entity.isActive()) {
+                    notifyRemoved(entity);
+                }
+            }
             entity.clearComponents();
             entities.remove(entity);
         }
@@ -58,7 +107,21 @@ public class EntityManager {
 
         // 追加処理
         entities.addAll(entitiesToAdd);
+        for (Entity entity : entitiesToAdd) {
+            entity.manager = this;
+            if (entity.isActive()) {
+                notifyChanged(entity);
+            }
+        }
         entitiesToAdd.clear();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.added = added;
+            event.removed = removed;
+            event.entityCount = entities.size();
+            event.commit();
+        }
     }
 
     /**
@@ -88,6 +151,75 @@ public class EntityManager {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * このマネージャーのエンティティの追加・削除、コンポーネントの追加・削除、有効・無効の変更のたびに変わる番号
+     * 前回と同じなら getEntitiesWith の結果も同じなので、結果をキャッシュする側が作り直しの判定に使う
+     */
+    public long getStructureVersion() {
+        return version;
+    }
+
+    /**
+     * 所属するエンティティのコンポーネントが追加・削除された（Entityから呼ばれる）
+     */
+    void componentsChanged(Entity entity, List<Class<? extends Component>> componentClasses) {
+        version++;
+        if (!entity.isActive()) {
+            return;
+        }
+        for (int l = 0; l < listeners.size(); l++) {
+            if (matches(listenerFilters.get(l), componentClasses)) {
+                listeners.get(l).onEntityChanged(entity);
+            }
+        }
+    }
+
+    /**
+     * 所属するエンティティの有効・無効が変わった（Entityから呼ばれる）
+     */
+    void activeChanged(Entity entity) {
+        version++;
+        if (entity.isActive()) {
+            notifyChanged(entity);
+        } else {
+            notifyRemoved(entity);
+        }
+    }
+
+    private void notifyChanged(Entity entity) {
+        for (int l = 0; l < listeners.size(); l++) {
+            if (hasAny(entity, listenerFilters.get(l))) {
+                listeners.get(l).onEntityChanged(entity);
+            }
+        }
+    }
+
+    private void notifyRemoved(Entity entity) {
+        for (int l = 0; l < listeners.size(); l++) {
+            if (hasAny(entity, listenerFilters.get(l))) {
+                listeners.get(l).onEntityRemoved(entity);
+            }
+        }
+    }
+
+    private static boolean hasAny(Entity entity, Set<Class<? extends Component>> filter) {
+        for (Class<? extends Component> componentClass : filter) {
+            if (entity.hasComponent(componentClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(Set<Class<? extends Component>> filter, List<Class<? extends Component>> componentClasses) {
+        for (Class<? extends Component> componentClass : filter) {
+            if (componentClasses.contains(componentClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * エンティティの数を取得
      */
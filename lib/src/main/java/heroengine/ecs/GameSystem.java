@@ -1,5 +1,7 @@
 package heroengine.ecs;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * システムの基底クラス エンティティとコンポーネントに対してロジックを実行する
  */
@@ -7,6 +9,9 @@ public abstract class GameSystem {
 
     protected EntityManager entityManager;
     private boolean enabled = true;
+    private TickRate tickRate = TickRate.everyTick();
+    private final AtomicBoolean updateRequested = new AtomicBoolean();
+    private boolean lowPriority;
 
     public void setEntityManager(EntityManager entityManager) {
         this.entityManager = entityManager;
@@ -20,6 +25,47 @@ public abstract class GameSystem {
         this.enabled = enabled;
     }
 
+    public TickRate getTickRate() {
+        return tickRate;
+    }
+
+    /**
+     * 更新頻度を設定（デフォルトは毎ティック）
+     *
+     * @throws IllegalArgumentException tickRateがnullの場合
+     */
+    public void setTickRate(TickRate tickRate) {
+        if (tickRate == null) {
+            throw new IllegalArgumentException("tickRate must not be null");
+        }
+        this.tickRate = tickRate;
+    }
+
+    public boolean isLowPriority() {
+        return lowPriority;
+    }
+
+    /**
+     * 低優先度に設定すると、過負荷時に更新頻度が下げられる
+     */
+    public void setLowPriority(boolean lowPriority) {
+        this.lowPriority = lowPriority;
+    }
+
+    /**
+     * 次のティックでの更新を要求（TickRate.onDemand() のシステム用、どのスレッドから呼んでもよい）
+     */
+    public void requestUpdate() {
+        updateRequested.set(true);
+    }
+
+    /**
+     * 更新要求を取り出してクリア（エンジンが呼び出す、取り出しと同時に来た要求は失われない）
+     */
+    public boolean consumeUpdateRequest() {
+        return updateRequested.getAndSet(false);
+    }
+
     /**
      * システムの初期化
      */
@@ -28,9 +74,9 @@ public abstract class GameSystem {
     }
 
     /**
-     * システムの更新（毎フレーム呼ばれる）
+     * システムの更新（TickRateに従って呼ばれる、デフォルトは毎フレーム）
      *
-     * @param deltaTime 前フレームからの経過時間（秒）
+     * @param deltaTime 前回の更新からの経過時間（秒）
      */
     public abstract void update(float deltaTime);
 
@@ -0,0 +1,96 @@
+package heroengine.ecs;
+
+/**
+ * ティックレート システムをどの頻度で更新するかを表す
+ */
+public final class TickRate {
+
+    /**
+     * 更新モード
+     */
+    public enum Mode {
+        EVERY_TICK, // 毎ティック
+        EVERY_N_TICKS, // Nティックごと
+        FIXED_HZ, // 一定の周波数
+        ON_DEMAND // 要求されたときのみ
+    }
+
+    private static final TickRate EVERY_TICK = new TickRate(Mode.EVERY_TICK, 1, 0);
+    private static final TickRate ON_DEMAND = new TickRate(Mode.ON_DEMAND, 0, 0);
+
+    private final Mode mode;
+    private final int ticks;
+    private final float hz;
+
+    private TickRate(Mode mode, int ticks, float hz) {
+        this.mode = mode;
+        this.ticks = ticks;
+        this.hz = hz;
+    }
+
+    /**
+     * 毎ティック更新（デフォルト）
+     */
+    public static TickRate everyTick() {
+        return EVERY_TICK;
+    }
+
+    /**
+     * Nティックごとに更新
+     */
+    public static TickRate everyTicks(int ticks) {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("ticks must be >= 1: " + ticks);
+        }
+        return ticks == 1 ? EVERY_TICK : new TickRate(Mode.EVERY_N_TICKS, ticks, 0);
+    }
+
+    /**
+     * 一定の周波数（Hz）で更新 ティックレートより高い値を指定しても1ティック1回まで
+     */
+    public static TickRate hz(float hz) {
+        if (!(hz > 0)) {
+            throw new IllegalArgumentException("hz must be > 0: " + hz);
+        }
+        return new TickRate(Mode.FIXED_HZ, 0, hz);
+    }
+
+    /**
+     * GameSystem#requestUpdate が呼ばれたティックのみ更新
+     */
+    public static TickRate onDemand() {
+        return ON_DEMAND;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * EVERY_N_TICKSの間隔（ティック数）
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * FIXED_HZの周波数
+     */
+    public float getHz() {
+        return hz;
+    }
+
+    @Override
+    public String toString() {
+        switch (mode) {
+            case EVERY_N_TICKS:
+                return "every " + ticks + " ticks";
+            case FIXED_HZ:
+                return hz + " Hz";
+            case ON_DEMAND:
+                return "on demand";
+            default:
+                return "every tick";
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package heroengine.graphics;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * アトラスの領域 アトラスのページ画像のうち、1つの画像が詰め込まれた矩形
+ */
+public final class AtlasRegion {
+
+    public final String name;
+    public final BufferedImage page;
+    public final int pageIndex;
+    public final int x;
+    public final int y;
+    public final int width;
+    public final int height;
+
+    AtlasRegion(String name, BufferedImage page, int pageIndex, int x, int y, int width, int height) {
+        this.name = name;
+        this.page = page;
+        this.pageIndex = pageIndex;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public String toString() {
+        return "AtlasRegion{" + name + ", page=" + pageIndex + ", " + x + "," + y + " " + width + "x" + height + "}";
+    }
+}
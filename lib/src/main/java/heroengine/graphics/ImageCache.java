@@ -0,0 +1,312 @@
+package heroengine.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 画像キャッシュ 画像を表示環境に合わせた形式に変換し、拡大縮小済みの画像を作り置きする
+ * 拡大縮小済みの画像は元画像・元の範囲・表示サイズごとに保持し、合計がメモリの上限を超えたら使われていない順に捨てる
+ * 元画像は弱参照で保持する（元画像が使われなくなれば、その拡大縮小済みの画像も捨てる）
+ * 元画像の中身を書き換えた場合は invalidate(image) を呼ぶ（呼ばなければ書き換える前の画像が返る）
+ * ヘッドレス環境では表示環境に依存しない形式（TYPE_INT_ARGB_PRE）を使う
+ * 複数のスレッドから呼べる
+ */
+public class ImageCache {
+
+    private static final long DEFAULT_BUDGET_BYTES = 32L * 1024 * 1024;
+
+    private final LinkedHashMap<Key, BufferedImage> scaled;
+    private final Key probe; // 検索用のキー（ロック中だけ使う）
+    private final ReferenceQueue<BufferedImage> collected; // 回収された元画像のキー
+    private Object interpolation = RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+    private long budgetBytes;
+    private long usedBytes;
+    private long hits;
+    private long misses;
+
+    public ImageCache() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    /**
+     * @param budgetBytes 拡大縮小済みの画像に使うメモリの上限（1ピクセル4バイトで計算）
+     */
+    public ImageCache(long budgetBytes) {
+        this.scaled = new LinkedHashMap<>(64, 0.75f, true);
+        this.probe = new Key();
+        this.collected = new ReferenceQueue<>();
+        setBudgetBytes(budgetBytes);
+    }
+
+    /**
+     * 画像を表示環境に合わせた形式に変換（すでにその形式ならそのまま返す）
+     * ImageIO で読み込んだ画像は、そのままでは高速に描画できない形式のことが多い
+     */
+    public static BufferedImage toCompatible(BufferedImage image) {
+        if (GraphicsEnvironment.isHeadless()) {
+            if (image.getType() == BufferedImage.TYPE_INT_ARGB_PRE) {
+                return image;
+            }
+        } else {
+            GraphicsConfiguration config = defaultConfiguration();
+            if (image.getColorModel().equals(config.getColorModel(image.getTransparency()))) {
+                return image;
+            }
+        }
+        BufferedImage compatible = createCompatibleImage(image.getWidth(), image.getHeight(), image.getTransparency());
+        Graphics2D g2d = compatible.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return compatible;
+    }
+
+    /**
+     * 表示環境に合わせた形式の画像を作成
+     *
+     * @param transparency Transparency.OPAQUE / BITMASK / TRANSLUCENT
+     */
+    public static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+        BufferedImage image;
+        if (GraphicsEnvironment.isHeadless()) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        } else {
+            image = defaultConfiguration().createCompatibleImage(width, height, transparency);
+        }
+        image.setAccelerationPriority(1.0f);
+        return image;
+    }
+
+    /**
+     * 画像全体を指定サイズに拡大縮小した画像を取得（作り置きがなければ作る）
+     *
+     * @return 拡大縮小済みの画像（上限を超えて保持できない大きさならnull）
+     */
+    public BufferedImage getScaled(BufferedImage image, int width, int height) {
+        return getScaled(image, 0, 0, image.getWidth(), image.getHeight(), width, height);
+    }
+
+    /**
+     * 画像の範囲を指定サイズに拡大縮小した画像を取得（作り置きがなければ作る）
+     * 同じ元画像・範囲・サイズの2回目以降の呼び出しではメモリを確保しない
+     *
+     * @return 拡大縮小済みの画像（上限を超えて保持できない大きさならnull）
+     */
+    public synchronized BufferedImage getScaled(BufferedImage image, int srcX, int srcY, int srcWidth, int srcHeight,
+                                                int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        purgeCollected();
+        probe.set(image, srcX, srcY, srcWidth, srcHeight, width, height);
+        BufferedImage cached = scaled.get(probe);
+        probe.image = null;
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        misses++;
+        long bytes = bytesOf(width, height);
+        if (bytes > budgetBytes) {
+            return null;
+        }
+
+        BufferedImage result = createCompatibleImage(width, height, image.getTransparency());
+        Graphics2D g2d = result.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(image, 0, 0, width, height, srcX, srcY, srcX + srcWidth, srcY + srcHeight, null);
+        g2d.dispose();
+
+        Key key = new Key();
+        key.set(image, srcX, srcY, srcWidth, srcHeight, width, height);
+        key.reference = new SourceReference(image, collected, key);
+        key.image = null;
+        scaled.put(key, result);
+        usedBytes += bytes;
+        evict();
+        return result;
+    }
+
+    /**
+     * メモリの上限を変更（超えている分はすぐに捨てる）
+     */
+    public final synchronized void setBudgetBytes(long budgetBytes) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("budgetBytes must be >= 0: " + budgetBytes);
+        }
+        this.budgetBytes = budgetBytes;
+        evict();
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * 拡大縮小の補間方法を変更（作り置きした画像はすべて捨てる）
+     * デフォルトは RenderingHints.VALUE_INTERPOLATION_BILINEAR、ドット絵なら VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+     */
+    public synchronized void setInterpolation(Object interpolation) {
+        if (!RenderingHints.KEY_INTERPOLATION.isCompatibleValue(interpolation)) {
+            throw new IllegalArgumentException("not an interpolation hint: " + interpolation);
+        }
+        if (this.interpolation != interpolation) {
+            this.interpolation = interpolation;
+            clear();
+        }
+    }
+
+    public synchronized Object getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * 保持している拡大縮小済みの画像のメモリ（1ピクセル4バイトで計算）
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int size() {
+        return scaled.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * 元画像から作った拡大縮小済みの画像をすべて捨てる（元画像の中身を書き換えたときに呼ぶ）
+     */
+    public synchronized void invalidate(BufferedImage image) {
+        Iterator<Map.Entry<Key, BufferedImage>> it = scaled.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, BufferedImage> entry = it.next();
+            if (entry.getKey().source() == image) {
+                usedBytes -= bytesOf(entry.getKey().width, entry.getKey().height);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 保持している画像をすべて捨てる
+     */
+    public synchronized void clear() {
+        scaled.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * 元画像が回収されたキーを捨てる
+     */
+    private void purgeCollected() {
+        SourceReference reference;
+        while ((reference = (SourceReference) collected.poll()) != null) {
+            if (scaled.remove(reference.key) != null) {
+                usedBytes -= bytesOf(reference.key.width, reference.key.height);
+            }
+        }
+    }
+
+    /**
+     * 上限に収まるまで、使われていない順に捨てる
+     */
+    private void evict() {
+        Iterator<Map.Entry<Key, BufferedImage>> it = scaled.entrySet().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<Key, BufferedImage> eldest = it.next();
+            usedBytes -= bytesOf(eldest.getKey().width, eldest.getKey().height);
+            it.remove();
+        }
+    }
+
+    private static long bytesOf(int width, int height) {
+        return (long) width * height * 4;
+    }
+
+    private static GraphicsConfiguration defaultConfiguration() {
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+
+    /**
+     * 拡大縮小済みの画像のキー（元画像は同一性で比較、保持するキーは元画像を弱参照で持つ）
+     */
+    private static final class Key {
+
+        BufferedImage image; // 検索用のキーの元画像
+        SourceReference reference; // 保持するキーの元画像
+        int srcX;
+        int srcY;
+        int srcWidth;
+        int srcHeight;
+        int width;
+        int height;
+        int hash;
+
+        void set(BufferedImage image, int srcX, int srcY, int srcWidth, int srcHeight, int width, int height) {
+            this.image = image;
+            this.srcX = srcX;
+            this.srcY = srcY;
+            this.srcWidth = srcWidth;
+            this.srcHeight = srcHeight;
+            this.width = width;
+            this.height = height;
+            int h = System.identityHashCode(image);
+            h = h * 31 + srcX;
+            h = h * 31 + srcY;
+            h = h * 31 + srcWidth;
+            h = h * 31 + srcHeight;
+            h = h * 31 + width;
+            h = h * 31 + height;
+            this.hash = h;
+        }
+
+        BufferedImage source() {
+            return reference != null ? reference.get() : image;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            BufferedImage source = source();
+            return source != null && source == other.source() && srcX == other.srcX && srcY == other.srcY
+                    && srcWidth == other.srcWidth && srcHeight == other.srcHeight
+                    && width == other.width && height == other.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 保持するキーから元画像への弱参照（回収されたらキーを捨てる）
+     */
+    private static final class SourceReference extends WeakReference<BufferedImage> {
+
+        final Key key;
+
+        SourceReference(BufferedImage image, ReferenceQueue<BufferedImage> queue, Key key) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package heroengine.graphics;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * テクスチャアトラス 多数の小さな画像を少数の大きなページ画像に詰め込んだもの
+ * 同じページから描画するスプライトは、画像の切り替えなしでまとめて描画できる
+ * TextureAtlasBuilder で作成する
+ */
+public final class TextureAtlas {
+
+    private final List<BufferedImage> pages;
+    private final Map<String, AtlasRegion> regions;
+
+    TextureAtlas(List<BufferedImage> pages, Map<String, AtlasRegion> regions) {
+        this.pages = Collections.unmodifiableList(pages);
+        this.regions = Collections.unmodifiableMap(regions);
+    }
+
+    /**
+     * 名前で領域を取得
+     *
+     * @throws IllegalArgumentException 登録されていない名前の場合
+     */
+    public AtlasRegion getRegion(String name) {
+        AtlasRegion region = regions.get(name);
+        if (region == null) {
+            throw new IllegalArgumentException("no such region: " + name);
+        }
+        return region;
+    }
+
+    public boolean hasRegion(String name) {
+        return regions.containsKey(name);
+    }
+
+    /**
+     * すべての領域（追加した順）
+     */
+    public Map<String, AtlasRegion> getRegions() {
+        return regions;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    public BufferedImage getPage(int index) {
+        return pages.get(index);
+    }
+}
@@ -0,0 +1,151 @@
+package heroengine.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * テクスチャアトラスの作成 追加した画像を棚詰め（シェルフ）方式でページに詰め込む
+ * 画像を高さの高い順に並べ、左から右へ棚に置き、棚があふれたら下に新しい棚、ページがあふれたら新しいページを作る
+ * ページの大きさを超える画像は、その画像だけのページになる
+ * ページ画像は ImageCache.createCompatibleImage で表示環境に合わせた形式で作成する
+ */
+public class TextureAtlasBuilder {
+
+    private final Map<String, BufferedImage> images;
+    private int pageSize;
+    private int padding;
+
+    public TextureAtlasBuilder() {
+        this.images = new LinkedHashMap<>();
+        this.pageSize = 1024;
+        this.padding = 2;
+    }
+
+    /**
+     * ページの幅と高さの上限（デフォルトは1024）
+     */
+    public TextureAtlasBuilder setPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be > 0: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * 画像同士の間隔（拡大縮小したときに隣の画像がにじまないようにする、デフォルトは2）
+     */
+    public TextureAtlasBuilder setPadding(int padding) {
+        if (padding < 0) {
+            throw new IllegalArgumentException("padding must be >= 0: " + padding);
+        }
+        this.padding = padding;
+        return this;
+    }
+
+    /**
+     * 画像を追加
+     *
+     * @throws IllegalArgumentException 同じ名前の画像がすでに追加されている場合
+     */
+    public TextureAtlasBuilder add(String name, BufferedImage image) {
+        if (images.containsKey(name)) {
+            throw new IllegalArgumentException("duplicate region name: " + name);
+        }
+        images.put(name, image);
+        return this;
+    }
+
+    /**
+     * 追加した画像を詰め込んでアトラスを作成
+     */
+    public TextureAtlas build() {
+        String[] names = images.keySet().toArray(new String[0]);
+        BufferedImage[] sources = images.values().toArray(new BufferedImage[0]);
+        int n = names.length;
+
+        // 高さの高い順（同じなら幅の広い順、追加した順）に並べる
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byHeight = Integer.compare(sources[b].getHeight(), sources[a].getHeight());
+            if (byHeight != 0) {
+                return byHeight;
+            }
+            return Integer.compare(sources[b].getWidth(), sources[a].getWidth());
+        });
+
+        // 配置を決める
+        int[] pageOf = new int[n];
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        List<int[]> pageSizes = new ArrayList<>(); // ページごとの使用した幅と高さ
+        int page = -1;
+        int shelfX = 0;
+        int shelfY = 0;
+        int shelfHeight = 0;
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            int width = sources[i].getWidth();
+            int height = sources[i].getHeight();
+
+            if (width > pageSize || height > pageSize) {
+                // 大きすぎる画像はその画像だけのページにする
+                pageSizes.add(new int[]{width, height});
+                pageOf[i] = pageSizes.size() - 1;
+                continue;
+            }
+            if (page >= 0 && shelfX + width > pageSize) {
+                // 棚があふれたら下に新しい棚を作る
+                shelfY += shelfHeight + padding;
+                shelfX = 0;
+                shelfHeight = 0;
+            }
+            if (page < 0 || shelfY + height > pageSize) {
+                // ページがあふれたら新しいページを作る
+                pageSizes.add(new int[]{0, 0});
+                page = pageSizes.size() - 1;
+                shelfX = 0;
+                shelfY = 0;
+                shelfHeight = 0;
+            }
+            pageOf[i] = page;
+            xs[i] = shelfX;
+            ys[i] = shelfY;
+            int[] used = pageSizes.get(page);
+            used[0] = Math.max(used[0], shelfX + width);
+            used[1] = Math.max(used[1], shelfY + height);
+            shelfX += width + padding;
+            shelfHeight = Math.max(shelfHeight, height);
+        }
+
+        // ページ画像を作って画像を書き込む
+        List<BufferedImage> pages = new ArrayList<>(pageSizes.size());
+        List<Graphics2D> graphics = new ArrayList<>(pageSizes.size());
+        for (int[] size : pageSizes) {
+            BufferedImage image = ImageCache.createCompatibleImage(
+                    Math.max(1, size[0]), Math.max(1, size[1]), Transparency.TRANSLUCENT);
+            Graphics2D g2d = image.createGraphics();
+            g2d.setComposite(AlphaComposite.Src);
+            pages.add(image);
+            graphics.add(g2d);
+        }
+        Map<String, AtlasRegion> regions = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            graphics.get(pageOf[i]).drawImage(sources[i], xs[i], ys[i], null);
+            regions.put(names[i], new AtlasRegion(names[i], pages.get(pageOf[i]), pageOf[i],
+                    xs[i], ys[i], sources[i].getWidth(), sources[i].getHeight()));
+        }
+        for (Graphics2D g2d : graphics) {
+            g2d.dispose();
+        }
+        return new TextureAtlas(pages, regions);
+    }
+}
@@ -0,0 +1,176 @@
+package heroengine.physics;
+
+import heroengine.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * 動的AABBツリーによるブロードフェーズ 小さな弾から画面幅の壁まで、大きさがばらばらなコライダー向け
+ * プロキシはエンティティごとにフレーム間で維持し、余白付きAABBからはみ出したときだけ入れ直す
+ */
+public class AabbTreeBroadphase implements Broadphase {
+
+    private static final int NONE = -1;
+
+    private final DynamicAabbTree tree;
+    private final LongIntHashMap proxyByEntity;
+    private final PairCollector collector;
+    private final RangeFilter rangeFilter;
+
+    private int[] proxyStamp;
+    private long[] proxyEntity;
+    private int[] activeProxies;
+    private int activeCount;
+    private int[] frameProxies; // ColliderSetのインデックス → プロキシ
+    private int stamp;
+
+    public AabbTreeBroadphase() {
+        this(4.0f);
+    }
+
+    /**
+     * @param margin AABBを広げる余白
+     */
+    public AabbTreeBroadphase(float margin) {
+        this.tree = new DynamicAabbTree(margin);
+        this.proxyByEntity = new LongIntHashMap(256);
+        this.collector = new PairCollector();
+        this.rangeFilter = new RangeFilter();
+        this.proxyStamp = new int[64];
+        this.proxyEntity = new long[64];
+        this.activeProxies = new int[64];
+        this.frameProxies = new int[64];
+    }
+
+    /**
+     * 内部のツリー（範囲・点・レイの検索に使える userData はColliderSetのインデックス）
+     */
+    public DynamicAabbTree getTree() {
+        return tree;
+    }
+
+    @Override
+    public void findPairs(ColliderSet colliders, PairBuffer pairs) {
+        syncProxies(colliders);
+
+        collector.colliders = colliders;
+        collector.pairs = pairs;
+        for (int i = 0; i < colliders.size; i++) {
+            collector.index = i;
+            tree.query(colliders.minX[i], colliders.minY[i], colliders.maxX[i], colliders.maxY[i], collector);
+        }
+        collector.colliders = null;
+        collector.pairs = null;
+    }
+
+    /**
+     * ツリーを使って範囲と重なるコライダーを探す
+     */
+    @Override
+    public void query(ColliderSet colliders, float minX, float minY, float maxX, float maxY, QueryCallback callback) {
+        rangeFilter.colliders = colliders;
+        rangeFilter.callback = callback;
+        rangeFilter.minX = minX;
+        rangeFilter.minY = minY;
+        rangeFilter.maxX = maxX;
+        rangeFilter.maxY = maxY;
+        tree.query(minX, minY, maxX, maxY, rangeFilter);
+        rangeFilter.colliders = null;
+        rangeFilter.callback = null;
+    }
+
+    /**
+     * ColliderSetに合わせてプロキシを作成・移動・削除
+     */
+    private void syncProxies(ColliderSet colliders) {
+        stamp++;
+        if (frameProxies.length < colliders.size) {
+            frameProxies = new int[Math.max(colliders.size, frameProxies.length * 2)];
+        }
+
+        for (int i = 0; i < colliders.size; i++) {
+            long id = colliders.entities[i].getId();
+            int proxy = proxyByEntity.get(id, NONE);
+            float minX = colliders.minX[i];
+            float minY = colliders.minY[i];
+            float maxX = colliders.maxX[i];
+            float maxY = colliders.maxY[i];
+
+            if (proxy == NONE) {
+                proxy = tree.createProxy(minX, minY, maxX, maxY, i);
+                proxyByEntity.put(id, proxy, NONE);
+                ensureProxyCapacity(proxy + 1);
+                proxyEntity[proxy] = id;
+                if (activeCount == activeProxies.length) {
+                    activeProxies = Arrays.copyOf(activeProxies, activeCount * 2);
+                }
+                activeProxies[activeCount++] = proxy;
+            } else {
+                tree.moveProxy(proxy, minX, minY, maxX, maxY);
+                tree.setUserData(proxy, i);
+            }
+            proxyStamp[proxy] = stamp;
+            frameProxies[i] = proxy;
+        }
+
+        // 今フレームに存在しないプロキシを削除
+        for (int k = activeCount - 1; k >= 0; k--) {
+            int proxy = activeProxies[k];
+            if (proxyStamp[proxy] != stamp) {
+                proxyByEntity.remove(proxyEntity[proxy], NONE);
+                tree.destroyProxy(proxy);
+                activeProxies[k] = activeProxies[--activeCount];
+            }
+        }
+    }
+
+    private void ensureProxyCapacity(int capacity) {
+        if (proxyStamp.length < capacity) {
+            int newCapacity = Math.max(capacity, proxyStamp.length * 2);
+            proxyStamp = Arrays.copyOf(proxyStamp, newCapacity);
+            proxyEntity = Arrays.copyOf(proxyEntity, newCapacity);
+        }
+    }
+
+    /**
+     * ツリーの検索結果をペアとして追加（インデックスが大きい相手だけを追加して重複を除く）
+     */
+    private class PairCollector implements QueryCallback {
+
+        ColliderSet colliders;
+        PairBuffer pairs;
+        int index;
+
+        @Override
+        public boolean report(int proxyId) {
+            int other = tree.getUserData(proxyId);
+            if (other > index && colliders.canCollide(index, other)) {
+                pairs.add(index, other);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * ツリーの検索結果を実際のAABBで確認してから通知（ツリーのAABBは余白付きのため）
+     */
+    private class RangeFilter implements QueryCallback {
+
+        ColliderSet colliders;
+        QueryCallback callback;
+        float minX;
+        float minY;
+        float maxX;
+        float maxY;
+
+        @Override
+        public boolean report(int proxyId) {
+            int i = tree.getUserData(proxyId);
+            if (colliders.maxX[i] < minX || maxX < colliders.minX[i]
+                    || colliders.maxY[i] < minY || maxY < colliders.minY[i]) {
+                return true;
+            }
+            return callback.report(i);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package heroengine.physics;
+
+/**
+ * ブロードフェーズ 詳細な判定の前に、重なっている可能性のあるペアを絞り込む
+ */
+public interface Broadphase {
+
+    /**
+     * 今フレームのコライダーから候補ペアを収集
+     * 同じペアを重複して追加しないこと（AABBが実際に重なっているかは呼び出し側で判定する）
+     * レイヤーが衝突しないペア（ColliderSet.canCollideがfalse）は追加しないこと
+     */
+    void findPairs(ColliderSet colliders, PairBuffer pairs);
+
+    /**
+     * 直前の findPairs で使ったコライダーのうち、範囲と重なるもの（接している場合も含む）を通知
+     * 各コライダーは1回だけ通知される デフォルトはすべてのコライダーを順に調べる
+     */
+    default void query(ColliderSet colliders, float minX, float minY, float maxX, float maxY, QueryCallback callback) {
+        for (int i = 0; i < colliders.size; i++) {
+            if (!(colliders.maxX[i] < minX || maxX < colliders.minX[i]
+                    || colliders.maxY[i] < minY || maxY < colliders.minY[i])) {
+                if (!callback.report(i)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package heroengine.physics;
+
+/**
+ * 総当たりブロードフェーズ すべての組み合わせを調べる（コライダーが少ない場合向け）
+ */
+public class BruteForceBroadphase implements Broadphase {
+
+    @Override
+    public void findPairs(ColliderSet colliders, PairBuffer pairs) {
+        int n = colliders.size;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (colliders.canCollide(i, j) && colliders.overlaps(i, j)) {
+                    pairs.add(i, j);
+                }
+            }
+        }
+    }
+}
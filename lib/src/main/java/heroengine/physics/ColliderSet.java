@@ -0,0 +1,104 @@
+package heroengine.physics;
+
+import heroengine.ecs.Entity;
+
+import java.util.Arrays;
+
+/**
+ * コライダー集合 1フレーム分のコライダーのAABBを配列で保持する
+ * インデックスはCollisionSystemが収集した順番で、ブロードフェーズはこのインデックスでペアを返す
+ * レイヤーのビットとマスクを持ち、AABBを調べる前に衝突しない組み合わせを除ける
+ */
+public class ColliderSet {
+
+    public int size;
+    public Entity[] entities;
+    public float[] minX;
+    public float[] minY;
+    public float[] maxX;
+    public float[] maxY;
+    public int[] layerBits; // 1 << レイヤー
+    public int[] masks; // 衝突する相手レイヤーのビット（レイヤー表を反映済み）
+    public boolean[] triggers;
+
+    public ColliderSet() {
+        this(64);
+    }
+
+    public ColliderSet(int capacity) {
+        this.entities = new Entity[capacity];
+        this.minX = new float[capacity];
+        this.minY = new float[capacity];
+        this.maxX = new float[capacity];
+        this.maxY = new float[capacity];
+        this.layerBits = new int[capacity];
+        this.masks = new int[capacity];
+        this.triggers = new boolean[capacity];
+    }
+
+    /**
+     * すべてのコライダーを削除（配列は再利用する）
+     */
+    public void clear() {
+        Arrays.fill(entities, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * すべてのレイヤーと衝突するコライダーを追加
+     *
+     * @return 追加したコライダーのインデックス
+     */
+    public int add(Entity entity, float minX, float minY, float maxX, float maxY) {
+        return add(entity, minX, minY, maxX, maxY, 0, ~0, false);
+    }
+
+    /**
+     * コライダーを追加
+     *
+     * @param layer 所属するレイヤー（0〜31）
+     * @param mask 衝突する相手レイヤーのビット
+     * @param trigger トリガーかどうか
+     * @return 追加したコライダーのインデックス
+     */
+    public int add(Entity entity, float minX, float minY, float maxX, float maxY, int layer, int mask, boolean trigger) {
+        if (size == entities.length) {
+            grow(size * 2);
+        }
+        int index = size++;
+        this.entities[index] = entity;
+        this.minX[index] = minX;
+        this.minY[index] = minY;
+        this.maxX[index] = maxX;
+        this.maxY[index] = maxY;
+        this.layerBits[index] = 1 << layer;
+        this.masks[index] = mask;
+        this.triggers[index] = trigger;
+        return index;
+    }
+
+    /**
+     * 2つのコライダーのレイヤーが互いに衝突対象になっているか
+     */
+    public boolean canCollide(int a, int b) {
+        return (masks[a] & layerBits[b]) != 0 && (masks[b] & layerBits[a]) != 0;
+    }
+
+    /**
+     * 2つのコライダーのAABBが重なっているか（接している場合も含む）
+     */
+    public boolean overlaps(int a, int b) {
+        return !(maxX[a] < minX[b] || maxX[b] < minX[a] || maxY[a] < minY[b] || maxY[b] < minY[a]);
+    }
+
+    private void grow(int capacity) {
+        entities = Arrays.copyOf(entities, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        layerBits = Arrays.copyOf(layerBits, capacity);
+        masks = Arrays.copyOf(masks, capacity);
+        triggers = Arrays.copyOf(triggers, capacity);
+    }
+}
@@ -0,0 +1,68 @@
+package heroengine.physics;
+
+import java.util.Arrays;
+
+/**
+ * 衝突レイヤー表 レイヤー同士（0〜31）が衝突するかどうかを保持する
+ * 初期状態ではすべてのレイヤーの組み合わせが衝突する
+ */
+public class CollisionMatrix {
+
+    public static final int MAX_LAYERS = 32;
+
+    private final int[] rows; // レイヤーごとに、衝突する相手レイヤーのビット
+    private int version;
+
+    public CollisionMatrix() {
+        this.rows = new int[MAX_LAYERS];
+        reset();
+    }
+
+    /**
+     * すべての組み合わせを衝突する状態に戻す
+     */
+    public final void reset() {
+        Arrays.fill(rows, ~0);
+        version++;
+    }
+
+    /**
+     * 2つのレイヤーが衝突するかを設定（対称に設定される）
+     */
+    public void setCollides(int layerA, int layerB, boolean collides) {
+        checkLayer(layerA);
+        checkLayer(layerB);
+        if (collides) {
+            rows[layerA] |= 1 << layerB;
+            rows[layerB] |= 1 << layerA;
+        } else {
+            rows[layerA] &= ~(1 << layerB);
+            rows[layerB] &= ~(1 << layerA);
+        }
+        version++;
+    }
+
+    public boolean collides(int layerA, int layerB) {
+        return (rows[layerA] & (1 << layerB)) != 0;
+    }
+
+    /**
+     * レイヤーが衝突する相手レイヤーのビット
+     */
+    public int getMask(int layer) {
+        return rows[layer];
+    }
+
+    /**
+     * 変更のたびに増える番号（静的コライダーの焼き直しの判定に使う）
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    private static void checkLayer(int layer) {
+        if (layer < 0 || layer >= MAX_LAYERS) {
+            throw new IllegalArgumentException("layer must be in [0, " + MAX_LAYERS + "): " + layer);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package heroengine.physics;
+
+import java.util.Arrays;
+
+/**
+ * 動的AABBツリー（境界ボリューム階層） 葉にプロキシのAABBを持つ二分木
+ * AABBは余白（マージン）付きで保持するため、少し動いただけでは入れ直しが発生しない
+ * 挿入・削除のたびに回転で高さのバランスを取る
+ * 大きさがばらばらなコライダーの判定や、範囲・点・レイの検索に使う
+ */
+public class DynamicAabbTree {
+
+    public static final int NULL_NODE = -1;
+
+    private final float margin;
+
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    private int[] parent; // 未使用ノードでは次の未使用ノード
+    private int[] child1;
+    private int[] child2;
+    private int[] height; // 葉は0、未使用は-1
+    private int[] userData;
+
+    private int root;
+    private int nodeCapacity;
+    private int nodeCount;
+    private int freeList;
+    private int proxyCount;
+
+    private int[] stack;
+
+    public DynamicAabbTree() {
+        this(4.0f);
+    }
+
+    /**
+     * @param margin AABBを広げる余白（この範囲内の移動では入れ直さない）
+     */
+    public DynamicAabbTree(float margin) {
+        this.margin = margin;
+        this.root = NULL_NODE;
+        this.stack = new int[64];
+        allocate(16);
+    }
+
+    public float getMargin() {
+        return margin;
+    }
+
+    /**
+     * プロキシを作成
+     *
+     * @param userData 呼び出し側が使う任意の値
+     * @return プロキシID
+     */
+    public int createProxy(float minX, float minY, float maxX, float maxY, int userData) {
+        int node = allocateNode();
+        setFatBounds(node, minX, minY, maxX, maxY);
+        this.userData[node] = userData;
+        height[node] = 0;
+        insertLeaf(node);
+        proxyCount++;
+        return node;
+    }
+
+    /**
+     * プロキシを削除
+     */
+    public void destroyProxy(int proxyId) {
+        removeLeaf(proxyId);
+        freeNode(proxyId);
+        proxyCount--;
+    }
+
+    /**
+     * プロキシのAABBを更新 余白付きAABBに収まっていれば何もしない
+     *
+     * @return ツリーに入れ直した場合はtrue
+     */
+    public boolean moveProxy(int proxyId, float minX, float minY, float maxX, float maxY) {
+        if (this.minX[proxyId] <= minX && this.minY[proxyId] <= minY
+                && maxX <= this.maxX[proxyId] && maxY <= this.maxY[proxyId]) {
+            return false;
+        }
+        removeLeaf(proxyId);
+        setFatBounds(proxyId, minX, minY, maxX, maxY);
+        insertLeaf(proxyId);
+        return true;
+    }
+
+    public int getUserData(int proxyId) {
+        return userData[proxyId];
+    }
+
+    public void setUserData(int proxyId, int value) {
+        userData[proxyId] = value;
+    }
+
+    public float getFatMinX(int proxyId) {
+        return minX[proxyId];
+    }
+
+    public float getFatMinY(int proxyId) {
+        return minY[proxyId];
+    }
+
+    public float getFatMaxX(int proxyId) {
+        return maxX[proxyId];
+    }
+
+    public float getFatMaxY(int proxyId) {
+        return maxY[proxyId];
+    }
+
+    public int getProxyCount() {
+        return proxyCount;
+    }
+
+    /**
+     * ツリーの高さ（空なら0）
+     */
+    public int getHeight() {
+        return root == NULL_NODE ? 0 : height[root];
+    }
+
+    /**
+     * 範囲と（余白付きAABBが）重なるプロキシを列挙
+     */
+    public void query(float qMinX, float qMinY, float qMaxX, float qMaxY, QueryCallback callback) {
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (node == NULL_NODE) {
+                continue;
+            }
+            if (maxX[node] < qMinX || qMaxX < minX[node] || maxY[node] < qMinY || qMaxY < minY[node]) {
+                continue;
+            }
+            if (height[node] == 0) {
+                if (!callback.report(node)) {
+                    return;
+                }
+            } else {
+                top = push(top, child1[node]);
+                top = push(top, child2[node]);
+            }
+        }
+    }
+
+    /**
+     * 点を含むプロキシを列挙
+     */
+    public void queryPoint(float x, float y, QueryCallback callback) {
+        query(x, y, x, y, callback);
+    }
+
+    /**
+     * 線分 (x1, y1)-(x2, y2) と交差する可能性のあるプロキシを列挙
+     * コールバックの戻り値で線分を短くすると、それより遠いノードは調べない
+     */
+    public void rayCast(float x1, float y1, float x2, float y2, RayCastCallback callback) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float maxFraction = 1.0f;
+
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (node == NULL_NODE) {
+                continue;
+            }
+            float entry = slabEntry(node, x1, y1, dx, dy, maxFraction);
+            if (entry < 0) {
+                continue;
+            }
+            if (height[node] == 0) {
+                float value = callback.report(node, x1, y1, x2, y2, maxFraction);
+                if (value == 0) {
+                    return;
+                }
+                if (value > 0 && value < maxFraction) {
+                    maxFraction = value;
+                }
+            } else {
+                top = push(top, child1[node]);
+                top = push(top, child2[node]);
+            }
+        }
+    }
+
+    /**
+     * 線分がノードのAABBに入る位置（0-maxFraction、交差しなければ-1）
+     */
+    private float slabEntry(int node, float x, float y, float dx, float dy, float maxFraction) {
+        float tMin = 0;
+        float tMax = maxFraction;
+
+        if (dx == 0) {
+            if (x < minX[node] || x > maxX[node]) {
+                return -1;
+            }
+        } else {
+            float inv = 1.0f / dx;
+            float t1 = (minX[node] - x) * inv;
+            float t2 = (maxX[node] - x) * inv;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (y < minY[node] || y > maxY[node]) {
+                return -1;
+            }
+        } else {
+            float inv = 1.0f / dy;
+            float t1 = (minY[node] - y) * inv;
+            float t2 = (maxY[node] - y) * inv;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        return tMin <= tMax ? tMin : -1;
+    }
+
+    private int push(int top, int node) {
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top] = node;
+        return top + 1;
+    }
+
+    private void setFatBounds(int node, float minX, float minY, float maxX, float maxY) {
+        this.minX[node] = minX - margin;
+        this.minY[node] = minY - margin;
+        this.maxX[node] = maxX + margin;
+        this.maxY[node] = maxY + margin;
+    }
+
+    // ========== ノード管理 ==========
+    private int allocateNode() {
+        if (freeList == NULL_NODE) {
+            allocate(nodeCapacity * 2);
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL_NODE;
+        child1[node] = NULL_NODE;
+        child2[node] = NULL_NODE;
+        height[node] = 0;
+        nodeCount++;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        freeList = node;
+        nodeCount--;
+    }
+
+    private void allocate(int capacity) {
+        int old = nodeCapacity;
+        minX = Arrays.copyOf(minX == null ? new float[0] : minX, capacity);
+        minY = Arrays.copyOf(minY == null ? new float[0] : minY, capacity);
+        maxX = Arrays.copyOf(maxX == null ? new float[0] : maxX, capacity);
+        maxY = Arrays.copyOf(maxY == null ? new float[0] : maxY, capacity);
+        parent = Arrays.copyOf(parent == null ? new int[0] : parent, capacity);
+        child1 = Arrays.copyOf(child1 == null ? new int[0] : child1, capacity);
+        child2 = Arrays.copyOf(child2 == null ? new int[0] : child2, capacity);
+        height = Arrays.copyOf(height == null ? new int[0] : height, capacity);
+        userData = Arrays.copyOf(userData == null ? new int[0] : userData, capacity);
+
+        // 追加分を未使用リストにつなぐ
+        for (int i = old; i < capacity - 1; i++) {
+            parent[i] = i + 1;
+            height[i] = -1;
+        }
+        parent[capacity - 1] = NULL_NODE;
+        height[capacity - 1] = -1;
+        freeList = old;
+        nodeCapacity = capacity;
+    }
+
+    // ========== 挿入・削除 ==========
+    private void insertLeaf(int leaf) {
+        if (root == NULL_NODE) {
+            root = leaf;
+            parent[root] = NULL_NODE;
+            return;
+        }
+
+        // 面積の増加が最小になる兄弟ノードを探す
+        float leafMinX = minX[leaf];
+        float leafMinY = minY[leaf];
+        float leafMaxX = maxX[leaf];
+        float leafMaxY = maxY[leaf];
+        int index = root;
+        while (height[index] > 0) {
+            int c1 = child1[index];
+            int c2 = child2[index];
+
+            float area = perimeter(minX[index], minY[index], maxX[index], maxY[index]);
+            float combinedArea = perimeter(
+                    Math.min(minX[index], leafMinX), Math.min(minY[index], leafMinY),
+                    Math.max(maxX[index], leafMaxX), Math.max(maxY[index], leafMaxY));
+
+            // ここに新しい親を作るコスト
+            float cost = 2.0f * combinedArea;
+            // さらに下に降りる場合に祖先が広がる分のコスト
+            float inheritanceCost = 2.0f * (combinedArea - area);
+
+            float cost1 = descendCost(c1, leafMinX, leafMinY, leafMaxX, leafMaxY) + inheritanceCost;
+            float cost2 = descendCost(c2, leafMinX, leafMinY, leafMaxX, leafMaxY) + inheritanceCost;
+
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? c1 : c2;
+        }
+        int sibling = index;
+
+        // 新しい親ノードを作る
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        userData[newParent] = -1;
+        minX[newParent] = Math.min(leafMinX, minX[sibling]);
+        minY[newParent] = Math.min(leafMinY, minY[sibling]);
+        maxX[newParent] = Math.max(leafMaxX, maxX[sibling]);
+        maxY[newParent] = Math.max(leafMaxY, maxY[sibling]);
+        height[newParent] = height[sibling] + 1;
+
+        if (oldParent != NULL_NODE) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refit(parent[leaf]);
+    }
+
+    private float descendCost(int child, float lMinX, float lMinY, float lMaxX, float lMaxY) {
+        float combined = perimeter(
+                Math.min(minX[child], lMinX), Math.min(minY[child], lMinY),
+                Math.max(maxX[child], lMaxX), Math.max(maxY[child], lMaxY));
+        if (height[child] == 0) {
+            return combined;
+        }
+        return combined - perimeter(minX[child], minY[child], maxX[child], maxY[child]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+
+        if (grandParent != NULL_NODE) {
+            // 親を取り除いて兄弟を祖父につなぐ
+            if (child1[grandParent] == p) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(p);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL_NODE;
+            freeNode(p);
+        }
+    }
+
+    /**
+     * 祖先をたどってバランスを取りながらAABBと高さを更新
+     */
+    private void refit(int index) {
+        while (index != NULL_NODE) {
+            index = balance(index);
+
+            int c1 = child1[index];
+            int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            minX[index] = Math.min(minX[c1], minX[c2]);
+            minY[index] = Math.min(minY[c1], minY[c2]);
+            maxX[index] = Math.max(maxX[c1], maxX[c2]);
+            maxY[index] = Math.max(maxY[c1], maxY[c2]);
+
+            index = parent[index];
+        }
+    }
+
+    /**
+     * 子の高さの差が2以上なら回転する
+     *
+     * @return 回転後にこの位置にあるノード
+     */
+    private int balance(int a) {
+        if (height[a] < 2) {
+            return a;
+        }
+        int b = child1[a];
+        int c = child2[a];
+        int diff = height[c] - height[b];
+
+        if (diff > 1) {
+            return rotateUp(a, c, b);
+        }
+        if (diff < -1) {
+            return rotateUp(a, b, c);
+        }
+        return a;
+    }
+
+    /**
+     * 高い方の子 high を a の位置に持ち上げる（low は a に残る子）
+     */
+    private int rotateUp(int a, int high, int low) {
+        int f = child1[high];
+        int g = child2[high];
+
+        // highをaの位置へ
+        child1[high] = a;
+        parent[high] = parent[a];
+        parent[a] = high;
+
+        if (parent[high] != NULL_NODE) {
+            int p = parent[high];
+            if (child1[p] == a) {
+                child1[p] = high;
+            } else {
+                child2[p] = high;
+            }
+        } else {
+            root = high;
+        }
+
+        // highの子のうち高い方をhighに残し、低い方をaに渡す
+        int keep = height[f] > height[g] ? f : g;
+        int give = keep == f ? g : f;
+        child2[high] = keep;
+        if (child1[a] == high) {
+            child1[a] = give;
+        } else {
+            child2[a] = give;
+        }
+        parent[give] = a;
+
+        minX[a] = Math.min(minX[low], minX[give]);
+        minY[a] = Math.min(minY[low], minY[give]);
+        maxX[a] = Math.max(maxX[low], maxX[give]);
+        maxY[a] = Math.max(maxY[low], maxY[give]);
+        height[a] = 1 + Math.max(height[low], height[give]);
+
+        minX[high] = Math.min(minX[a], minX[keep]);
+        minY[high] = Math.min(minY[a], minY[keep]);
+        maxX[high] = Math.max(maxX[a], maxX[keep]);
+        maxY[high] = Math.max(maxY[a], maxY[keep]);
+        height[high] = 1 + Math.max(height[a], height[keep]);
+
+        return high;
+    }
+
+    private static float perimeter(float minX, float minY, float maxX, float maxY) {
+        return 2.0f * ((maxX - minX) + (maxY - minY));
+    }
+
+    /**
+     * レイキャストの結果を受け取るコールバック
+     */
+    @FunctionalInterface
+    public interface RayCastCallback {
+
+        /**
+         * プロキシの余白付きAABBと交差する可能性がある場合に呼ばれる
+         *
+         * @return 0で終了、負の値でこのプロキシを無視、正の値で線分をその割合まで短くする
+         */
+        float report(int proxyId, float x1, float y1, float x2, float y2, float maxFraction);
+    }
+}
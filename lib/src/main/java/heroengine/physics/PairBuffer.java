@@ -0,0 +1,77 @@
+package heroengine.physics;
+
+import java.util.Arrays;
+
+/**
+ * ペアバッファー コライダーのインデックスのペアを1つのlongに詰めて保持する
+ * 小さいインデックスが上位32ビットに入るため、ソートすると総当たりと同じ順番になる
+ */
+public class PairBuffer {
+
+    private long[] pairs;
+    private int size;
+
+    public PairBuffer() {
+        this.pairs = new long[256];
+    }
+
+    /**
+     * ペアを追加（順番は問わない）
+     */
+    public void add(int a, int b) {
+        if (size == pairs.length) {
+            pairs = Arrays.copyOf(pairs, size * 2);
+        }
+        pairs[size++] = a < b ? pack(a, b) : pack(b, a);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * from番目のペアをto番目に上書きする（順番を保って詰めるときに使う、to <= from）
+     */
+    public void move(int from, int to) {
+        pairs[to] = pairs[from];
+    }
+
+    /**
+     * 先頭からsize個のペアだけを残す
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IllegalArgumentException("size out of range: " + size);
+        }
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * k番目のペアの小さい方のインデックス
+     */
+    public int first(int k) {
+        return (int) (pairs[k] >>> 32);
+    }
+
+    /**
+     * k番目のペアの大きい方のインデックス
+     */
+    public int second(int k) {
+        return (int) pairs[k];
+    }
+
+    /**
+     * インデックス順にソート
+     */
+    public void sort() {
+        Arrays.sort(pairs, 0, size);
+    }
+
+    private static long pack(int a, int b) {
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+}
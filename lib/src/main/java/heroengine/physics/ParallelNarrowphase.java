@@ -0,0 +1,159 @@
+package heroengine.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 並列ナローフェーズ 候補ペアを連続した区間に分けてワーカーでAABB判定し、
+ * ワーカーごとの結果を区間の順番につなげる（結果の順番はスレッド数に関係なく、1スレッドで判定した場合と同じ）
+ * 判定中はColliderSetとPairBufferを読むだけで、書き込みはワーカー専用の配列にだけ行う
+ */
+public class ParallelNarrowphase implements AutoCloseable {
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final int threads;
+    private final ExecutorService executor;
+    private final Chunk[] chunks;
+    private final List<Future<?>> futures;
+    private int minPairsPerThread;
+
+    private int[] results;
+    private int resultCount;
+
+    /**
+     * @param threads 判定に使うスレッド数（呼び出し元のスレッドを含む）
+     */
+    public ParallelNarrowphase(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be >= 1: " + threads);
+        }
+        this.threads = threads;
+        this.chunks = new Chunk[threads];
+        for (int t = 0; t < threads; t++) {
+            chunks[t] = new Chunk();
+        }
+        this.futures = new ArrayList<>(threads);
+        this.minPairsPerThread = 2048;
+        this.results = new int[256];
+
+        int pool = POOL_COUNT.incrementAndGet();
+        AtomicInteger workerCount = new AtomicInteger();
+        this.executor = threads > 1
+                ? Executors.newFixedThreadPool(threads - 1, runnable -> {
+                    Thread thread = new Thread(runnable, "heroengine-narrowphase-" + pool + "-" + workerCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 1スレッドあたりの最小ペア数（候補がこれより少ない場合はスレッド数を減らす）
+     */
+    public void setMinPairsPerThread(int minPairsPerThread) {
+        this.minPairsPerThread = Math.max(1, minPairsPerThread);
+    }
+
+    /**
+     * 候補ペアのうちAABBが重なっているものを求める
+     * 2番目のインデックスが colliders.size 以上のペアは判定済みとして扱い、そのまま結果に含める
+     *
+     * @return 重なっているペアの数（番号は result(n) で取得）
+     */
+    public int test(ColliderSet colliders, PairBuffer pairs) {
+        int count = pairs.size();
+        int used = Math.max(1, Math.min(threads, count / minPairsPerThread));
+
+        for (int t = 0; t < used; t++) {
+            Chunk chunk = chunks[t];
+            chunk.colliders = colliders;
+            chunk.pairs = pairs;
+            chunk.start = (int) ((long) count * t / used);
+            chunk.end = (int) ((long) count * (t + 1) / used);
+        }
+
+        // 先頭以外の区間をワーカーに渡し、先頭の区間は呼び出し元のスレッドで判定する
+        futures.clear();
+        for (int t = 1; t < used; t++) {
+            futures.add(executor.submit(chunks[t]));
+        }
+        chunks[0].run();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("narrowphase interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("narrowphase worker failed", e.getCause());
+        }
+
+        // 区間の順番に結果をつなげる
+        resultCount = 0;
+        for (int t = 0; t < used; t++) {
+            Chunk chunk = chunks[t];
+            if (results.length < resultCount + chunk.count) {
+                results = Arrays.copyOf(results, Math.max(resultCount + chunk.count, results.length * 2));
+            }
+            System.arraycopy(chunk.results, 0, results, resultCount, chunk.count);
+            resultCount += chunk.count;
+            chunk.colliders = null;
+            chunk.pairs = null;
+        }
+        return resultCount;
+    }
+
+    /**
+     * n番目に重なっていたペアのPairBuffer上の番号
+     */
+    public int result(int n) {
+        return results[n];
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 1スレッド分の区間と結果
+     */
+    private static class Chunk implements Runnable {
+
+        ColliderSet colliders;
+        PairBuffer pairs;
+        int start;
+        int end;
+        int[] results = new int[256];
+        int count;
+
+        @Override
+        public void run() {
+            count = 0;
+            int dynamicCount = colliders.size;
+            for (int k = start; k < end; k++) {
+                int j = pairs.second(k);
+                if (j >= dynamicCount || colliders.overlaps(pairs.first(k), j)) {
+                    if (count == results.length) {
+                        results = Arrays.copyOf(results, count * 2);
+                    }
+                    results[count++] = k;
+                }
+            }
+        }
+    }
+}
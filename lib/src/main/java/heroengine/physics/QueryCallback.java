@@ -0,0 +1,14 @@
+package heroengine.physics;
+
+/**
+ * 範囲検索の結果を受け取るコールバック（ブロードフェーズ、静的コライダーの索引、DynamicAabbTreeで共通）
+ */
+@FunctionalInterface
+public interface QueryCallback {
+
+    /**
+     * @param index 見つかったもののインデックス（ColliderSet上のインデックス、DynamicAabbTreeではプロキシID）
+     * @return 検索を続ける場合はtrue
+     */
+    boolean report(int index);
+}
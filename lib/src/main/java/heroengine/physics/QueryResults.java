@@ -0,0 +1,92 @@
+package heroengine.physics;
+
+import heroengine.ecs.Entity;
+
+import java.util.Arrays;
+
+/**
+ * 空間検索の結果バッファー 呼び出し側で作成して使い回す（容量が足りないときだけ配列を拡張する）
+ */
+public class QueryResults {
+
+    private Entity[] entities;
+    private float[] distances;
+    private int size;
+
+    public QueryResults() {
+        this(16);
+    }
+
+    public QueryResults(int capacity) {
+        this.entities = new Entity[Math.max(1, capacity)];
+        this.distances = new float[entities.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Entity get(int index) {
+        return entities[index];
+    }
+
+    /**
+     * 検索位置からの距離（範囲検索・点検索では0）
+     */
+    public float getDistance(int index) {
+        return distances[index];
+    }
+
+    /**
+     * 結果を空にする（エンティティへの参照も外す）
+     */
+    public void clear() {
+        Arrays.fill(entities, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * 結果を末尾に追加
+     */
+    public void add(Entity entity, float distance) {
+        if (size == entities.length) {
+            grow(size * 2);
+        }
+        entities[size] = entity;
+        distances[size] = distance;
+        size++;
+    }
+
+    /**
+     * 距離の近い順に最大limit件を保つように挿入
+     */
+    public void insertNearest(Entity entity, float distance, int limit) {
+        if (size == limit && distance >= distances[size - 1]) {
+            return;
+        }
+        int position = size < limit ? size : size - 1;
+        if (position == entities.length) {
+            grow(entities.length * 2);
+        }
+        // 同じ距離なら先に見つかった方を前に置く
+        while (position > 0 && distances[position - 1] > distance) {
+            entities[position] = entities[position - 1];
+            distances[position] = distances[position - 1];
+            position--;
+        }
+        entities[position] = entity;
+        distances[position] = distance;
+        if (size < limit) {
+            size++;
+        }
+    }
+
+    private void grow(int capacity) {
+        entities = Arrays.copyOf(entities, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+    }
+}
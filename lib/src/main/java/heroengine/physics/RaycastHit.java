@@ -0,0 +1,25 @@
+package heroengine.physics;
+
+import heroengine.ecs.Entity;
+
+/**
+ * レイキャストの結果 呼び出し側で作成して使い回す
+ */
+public class RaycastHit {
+
+    public Entity entity;
+    public float distance; // レイの始点から当たった位置までの距離
+    public float x; // 当たった位置
+    public float y;
+    public float normalX; // 当たった面の法線（始点がAABBの内側にある場合は0）
+    public float normalY;
+
+    public void clear() {
+        entity = null;
+        distance = 0;
+        x = 0;
+        y = 0;
+        normalX = 0;
+        normalY = 0;
+    }
+}
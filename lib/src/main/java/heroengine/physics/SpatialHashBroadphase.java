@@ -0,0 +1,303 @@
+package heroengine.physics;
+
+import java.util.Arrays;
+
+/**
+ * 空間ハッシュブロードフェーズ 一様なセルに分割し、同じセルに入ったコライダー同士だけを候補にする
+ * 大きさが近いコライダーが多数ある場合にほぼ線形で動作する（セルサイズはコライダーの大きさ程度にする）
+ * 内部の配列はフレーム間で再利用し、毎ティック作り直す
+ * 多くのセルにまたがるコライダー（巨大・無限の座標を含む）はセルに入れず、別のリストで全コライダーと比べる
+ */
+public class SpatialHashBroadphase implements Broadphase {
+
+    private static final int EMPTY = -1;
+
+    // 1つのコライダーを入れるセルの上限（超えたら大きいコライダーのリストに入れる）
+    private static final int MAX_CELLS_PER_COLLIDER = 256;
+
+    private final float cellSize;
+    private final float inverseCellSize;
+
+    // セル（キー: セル座標）→ エントリーの連結リスト先頭
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int[] cellStamps;
+    private int cellMask;
+    private int stamp;
+    private int[] usedCells;
+    private int usedCellCount;
+
+    // エントリー（コライダーが入っているセル1つにつき1つ）
+    private int[] entryColliders;
+    private int[] entryNext;
+    private long[] entryCells;
+    private int entryCount;
+
+    // コライダーごとの最小セル座標（重複除去に使う）
+    private int[] colliderCellX;
+    private int[] colliderCellY;
+
+    // セルに入れていない大きいコライダー
+    private int[] oversized;
+    private int oversizedCount;
+    private boolean[] isOversized;
+
+    public SpatialHashBroadphase(float cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("cellSize must be > 0: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1.0f / cellSize;
+        allocateCells(256);
+        this.usedCells = new int[128];
+        this.entryColliders = new int[256];
+        this.entryNext = new int[256];
+        this.entryCells = new long[256];
+        this.colliderCellX = new int[64];
+        this.colliderCellY = new int[64];
+        this.oversized = new int[16];
+        this.isOversized = new boolean[64];
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public void findPairs(ColliderSet colliders, PairBuffer pairs) {
+        rebuild(colliders);
+
+        for (int c = 0; c < usedCellCount; c++) {
+            int slot = usedCells[c];
+            long key = cellKeys[slot];
+            int cellX = (int) (key >> 32);
+            int cellY = (int) key;
+
+            for (int a = cellHeads[slot]; a != EMPTY; a = entryNext[a]) {
+                int i = entryColliders[a];
+                for (int b = entryNext[a]; b != EMPTY; b = entryNext[b]) {
+                    int j = entryColliders[b];
+                    if (!colliders.canCollide(i, j)) {
+                        continue;
+                    }
+                    // 2つのコライダーが共有するセルのうち、左上のセルでだけ報告して重複を除く
+                    if (cellX == Math.max(colliderCellX[i], colliderCellX[j])
+                            && cellY == Math.max(colliderCellY[i], colliderCellY[j])) {
+                        pairs.add(i, j);
+                    }
+                }
+            }
+        }
+
+        // 大きいコライダーは、重なっているすべてのコライダーと組にする（大きいもの同士は1回だけ）
+        for (int k = 0; k < oversizedCount; k++) {
+            int i = oversized[k];
+            for (int j = 0; j < colliders.size; j++) {
+                if (j == i || (isOversized[j] && j < i)) {
+                    continue;
+                }
+                if (colliders.canCollide(i, j) && colliders.overlaps(i, j)) {
+                    pairs.add(i, j);
+                }
+            }
+        }
+    }
+
+    /**
+     * セルを使って範囲と重なるコライダーを探す（範囲が広すぎる場合は全体を調べる）
+     */
+    @Override
+    public void query(ColliderSet colliders, float minX, float minY, float maxX, float maxY, QueryCallback callback) {
+        double cellsX = Math.floor(maxX * inverseCellSize) - Math.floor(minX * inverseCellSize) + 1;
+        double cellsY = Math.floor(maxY * inverseCellSize) - Math.floor(minY * inverseCellSize) + 1;
+        if (!(cellsX * cellsY <= usedCellCount)) {
+            Broadphase.super.query(colliders, minX, minY, maxX, maxY, callback);
+            return;
+        }
+
+        // 大きいコライダーはセルに入っていないので直接調べる
+        for (int k = 0; k < oversizedCount; k++) {
+            int i = oversized[k];
+            if (colliders.maxX[i] < minX || maxX < colliders.minX[i]
+                    || colliders.maxY[i] < minY || maxY < colliders.minY[i]) {
+                continue;
+            }
+            if (!callback.report(i)) {
+                return;
+            }
+        }
+
+        // セルに入っているコライダーのセル座標はintの範囲に収まっている
+        long x0 = Math.max(toCell(minX), Integer.MIN_VALUE);
+        long y0 = Math.max(toCell(minY), Integer.MIN_VALUE);
+        long x1 = Math.min(toCell(maxX), Integer.MAX_VALUE);
+        long y1 = Math.min(toCell(maxY), Integer.MAX_VALUE);
+        for (long y = y0; y <= y1; y++) {
+            for (long x = x0; x <= x1; x++) {
+                int slot = lookupSlot(cellKey((int) x, (int) y));
+                if (slot == EMPTY) {
+                    continue;
+                }
+                for (int e = cellHeads[slot]; e != EMPTY; e = entryNext[e]) {
+                    int i = entryColliders[e];
+                    // 範囲とコライダーが共有するセルのうち、左上のセルでだけ報告して重複を除く
+                    if (x != Math.max(colliderCellX[i], x0) || y != Math.max(colliderCellY[i], y0)) {
+                        continue;
+                    }
+                    if (colliders.maxX[i] < minX || maxX < colliders.minX[i]
+                            || colliders.maxY[i] < minY || maxY < colliders.minY[i]) {
+                        continue;
+                    }
+                    if (!callback.report(i)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * キーのセルを探す（なければEMPTY）
+     */
+    private int lookupSlot(long key) {
+        int slot = hash(key) & cellMask;
+        while (cellStamps[slot] == stamp) {
+            if (cellKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & cellMask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * 今フレームのコライダーでセルを作り直す
+     */
+    private void rebuild(ColliderSet colliders) {
+        nextStamp();
+        usedCellCount = 0;
+        entryCount = 0;
+        oversizedCount = 0;
+
+        int n = colliders.size;
+        if (colliderCellX.length < n) {
+            colliderCellX = new int[Math.max(n, colliderCellX.length * 2)];
+            colliderCellY = new int[colliderCellX.length];
+            isOversized = new boolean[colliderCellX.length];
+        }
+
+        for (int i = 0; i < n; i++) {
+            long x0 = toCell(colliders.minX[i]);
+            long y0 = toCell(colliders.minY[i]);
+            long x1 = toCell(colliders.maxX[i]);
+            long y1 = toCell(colliders.maxY[i]);
+
+            // セル座標がintに収まらない、またはセルが多すぎる場合はセルに入れない
+            boolean large = x0 < Integer.MIN_VALUE || y0 < Integer.MIN_VALUE
+                    || x1 > Integer.MAX_VALUE || y1 > Integer.MAX_VALUE
+                    || (double) (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_CELLS_PER_COLLIDER;
+            isOversized[i] = large;
+            if (large) {
+                if (oversizedCount == oversized.length) {
+                    oversized = Arrays.copyOf(oversized, oversizedCount * 2);
+                }
+                oversized[oversizedCount++] = i;
+                continue;
+            }
+            colliderCellX[i] = (int) x0;
+            colliderCellY[i] = (int) y0;
+
+            for (long y = y0; y <= y1; y++) {
+                for (long x = x0; x <= x1; x++) {
+                    insert(i, cellKey((int) x, (int) y));
+                }
+            }
+        }
+    }
+
+    private void insert(int collider, long key) {
+        if (entryCount == entryColliders.length) {
+            int capacity = entryCount * 2;
+            entryColliders = Arrays.copyOf(entryColliders, capacity);
+            entryNext = Arrays.copyOf(entryNext, capacity);
+            entryCells = Arrays.copyOf(entryCells, capacity);
+        }
+        // 使用セル数が容量の半分を超えたら拡張
+        if (usedCellCount * 2 >= cellKeys.length) {
+            growCells();
+        }
+
+        int entry = entryCount++;
+        int slot = findSlot(key);
+        entryColliders[entry] = collider;
+        entryCells[entry] = key;
+        entryNext[entry] = cellHeads[slot];
+        cellHeads[slot] = entry;
+    }
+
+    /**
+     * キーのセルを探し、なければ作成
+     */
+    private int findSlot(long key) {
+        int slot = hash(key) & cellMask;
+        while (cellStamps[slot] == stamp) {
+            if (cellKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & cellMask;
+        }
+        cellStamps[slot] = stamp;
+        cellKeys[slot] = key;
+        cellHeads[slot] = EMPTY;
+        if (usedCellCount == usedCells.length) {
+            usedCells = Arrays.copyOf(usedCells, usedCellCount * 2);
+        }
+        usedCells[usedCellCount++] = slot;
+        return slot;
+    }
+
+    /**
+     * セルの表を拡張し、これまでに追加したエントリーを入れ直す
+     */
+    private void growCells() {
+        allocateCells(cellKeys.length * 2);
+        usedCellCount = 0;
+        int count = entryCount;
+        for (int e = 0; e < count; e++) {
+            int slot = findSlot(entryCells[e]);
+            entryNext[e] = cellHeads[slot];
+            cellHeads[slot] = e;
+        }
+    }
+
+    private void allocateCells(int capacity) {
+        cellKeys = new long[capacity];
+        cellHeads = new int[capacity];
+        cellStamps = new int[capacity];
+        cellMask = capacity - 1;
+        stamp = 1;
+    }
+
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(cellStamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * セル座標（無限大はlongの範囲に丸められる）
+     */
+    private long toCell(float value) {
+        return (long) Math.floor(value * inverseCellSize);
+    }
+
+    private static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
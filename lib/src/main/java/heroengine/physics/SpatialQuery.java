@@ -0,0 +1,409 @@
+package heroengine.physics;
+
+import heroengine.ecs.Entity;
+
+/**
+ * 空間検索 CollisionSystemのブロードフェーズと焼き込み済みの索引（静的・スリープ中）を使って、範囲・点・レイ・近傍を検索する
+ * 結果は直前の CollisionSystem.update 時点の位置に基づく
+ * 結果は呼び出し側が用意したバッファーに書き込むため、検索中にメモリを確保しない
+ * ゲームスレッドから呼ぶこと
+ */
+public class SpatialQuery {
+
+    private static final int ALL_LAYERS = ~0;
+
+    private static final int MODE_AABB = 0;
+    private static final int MODE_NEAREST = 1;
+    private static final int MODE_RAY = 2;
+
+    // レイキャストで区間に分ける数の上限（範囲が非常に長い場合は区間を長くする）
+    private static final int MAX_RAY_SEGMENTS = 1024;
+
+    private ColliderSet dynamics;
+    private Broadphase broadphase;
+    private StaticAabbIndex staticIndex;
+    private StaticAabbIndex sleepingIndex;
+
+    // 全コライダーを囲む範囲（検索時に必要になったら求める）
+    private boolean boundsValid;
+    private float boundsMinX;
+    private float boundsMinY;
+    private float boundsMaxX;
+    private float boundsMaxY;
+
+    private float raySegmentLength;
+    private float initialNearestRadius;
+
+    private final Collector dynamicCollector;
+    private final Collector bakedCollector;
+
+    // 検索中の状態（Collectorから参照する）
+    private int mode;
+    private int layerMask;
+    private QueryResults results;
+    private float pointX;
+    private float pointY;
+    private int limit;
+    private float rayX;
+    private float rayY;
+    private float rayDirX;
+    private float rayDirY;
+    private RaycastHit hit;
+    private float bestDistance;
+
+    public SpatialQuery() {
+        this.raySegmentLength = 256;
+        this.initialNearestRadius = 64;
+        this.dynamicCollector = new Collector();
+        this.bakedCollector = new Collector();
+    }
+
+    /**
+     * 検索対象を更新（CollisionSystemが毎回の更新の最後に呼び出す）
+     */
+    public void update(ColliderSet dynamics, Broadphase broadphase, StaticAabbIndex staticIndex,
+                       StaticAabbIndex sleepingIndex) {
+        this.dynamics = dynamics;
+        this.broadphase = broadphase;
+        this.staticIndex = staticIndex;
+        this.sleepingIndex = sleepingIndex;
+        this.boundsValid = false;
+    }
+
+    /**
+     * レイキャストで1回に検索する区間の長さ（近くで当たった場合に遠くを調べずに済む）
+     */
+    public void setRaySegmentLength(float raySegmentLength) {
+        if (!(raySegmentLength > 0)) {
+            throw new IllegalArgumentException("raySegmentLength must be > 0: " + raySegmentLength);
+        }
+        this.raySegmentLength = raySegmentLength;
+    }
+
+    /**
+     * 近傍検索で最初に調べる範囲の半径（見つからなければ2倍ずつ広げる）
+     */
+    public void setInitialNearestRadius(float initialNearestRadius) {
+        if (!(initialNearestRadius > 0)) {
+            throw new IllegalArgumentException("initialNearestRadius must be > 0: " + initialNearestRadius);
+        }
+        this.initialNearestRadius = initialNearestRadius;
+    }
+
+    /**
+     * 範囲と重なるエンティティを検索（接している場合も含む）
+     *
+     * @return 見つかった数
+     */
+    public int queryAabb(float minX, float minY, float maxX, float maxY, QueryResults results) {
+        return queryAabb(minX, minY, maxX, maxY, ALL_LAYERS, results);
+    }
+
+    /**
+     * 範囲と重なるエンティティを検索
+     *
+     * @param layerMask 対象にするレイヤーのビット
+     * @return 見つかった数
+     */
+    public int queryAabb(float minX, float minY, float maxX, float maxY, int layerMask, QueryResults results) {
+        results.clear();
+        begin(MODE_AABB, layerMask);
+        this.results = results;
+        search(minX, minY, maxX, maxY);
+        this.results = null;
+        return results.size();
+    }
+
+    /**
+     * 点を含むエンティティを検索（例: マウスでクリックした位置）
+     *
+     * @return 見つかった数
+     */
+    public int queryPoint(float x, float y, QueryResults results) {
+        return queryAabb(x, y, x, y, ALL_LAYERS, results);
+    }
+
+    public int queryPoint(float x, float y, int layerMask, QueryResults results) {
+        return queryAabb(x, y, x, y, layerMask, results);
+    }
+
+    /**
+     * 点に近い順にk個のエンティティを検索（距離はAABBまでの最短距離、AABBの内側なら0）
+     *
+     * @return 見つかった数
+     */
+    public int nearest(float x, float y, int k, QueryResults results) {
+        return nearest(x, y, k, ALL_LAYERS, results);
+    }
+
+    public int nearest(float x, float y, int k, int layerMask, QueryResults results) {
+        results.clear();
+        if (k <= 0 || !ensureBounds()) {
+            return 0;
+        }
+        begin(MODE_NEAREST, layerMask);
+        this.results = results;
+        this.pointX = x;
+        this.pointY = y;
+        this.limit = k;
+
+        // 範囲を広げながら検索し、k個見つかって範囲の外にそれより近いものがなければ終了
+        float radius = initialNearestRadius;
+        while (true) {
+            results.clear();
+            float minX = x - radius;
+            float minY = y - radius;
+            float maxX = x + radius;
+            float maxY = y + radius;
+            search(minX, minY, maxX, maxY);
+
+            boolean found = results.size() == k && results.getDistance(k - 1) <= radius;
+            boolean coversAll = minX <= boundsMinX && minY <= boundsMinY && maxX >= boundsMaxX && maxY >= boundsMaxY;
+            if (found || coversAll || Float.isInfinite(radius)) {
+                break;
+            }
+            radius *= 2;
+        }
+        this.results = null;
+        return results.size();
+    }
+
+    /**
+     * レイと最初に交わるエンティティを検索
+     *
+     * @param dirX レイの向き（正規化されていなくてもよい）
+     * @param maxDistance 最大距離（Float.POSITIVE_INFINITYなら制限なし）
+     * @param hit 結果の書き込み先
+     * @return 当たった場合はtrue
+     */
+    public boolean raycast(float originX, float originY, float dirX, float dirY, float maxDistance, RaycastHit hit) {
+        return raycast(originX, originY, dirX, dirY, maxDistance, ALL_LAYERS, hit);
+    }
+
+    public boolean raycast(float originX, float originY, float dirX, float dirY, float maxDistance, int layerMask,
+                           RaycastHit hit) {
+        hit.clear();
+        float length = (float) Math.sqrt(dirX * dirX + dirY * dirY);
+        if (length == 0 || !ensureBounds()) {
+            return false;
+        }
+        begin(MODE_RAY, layerMask);
+        this.hit = hit;
+        this.rayX = originX;
+        this.rayY = originY;
+        this.rayDirX = dirX / length;
+        this.rayDirY = dirY / length;
+        this.bestDistance = maxDistance;
+
+        // 全コライダーを囲む範囲の中だけを、区間に分けて近い方から調べる
+        float start = Math.max(0, slabEntry(boundsMinX, boundsMinY, boundsMaxX, boundsMaxY));
+        float end = Math.min(Math.min(maxDistance, slabExit(boundsMinX, boundsMinY, boundsMaxX, boundsMaxY)),
+                Float.MAX_VALUE);
+        // 区間は番号で数える（floatの足し算だと、大きい距離で値が増えなくなり終わらない）
+        double span = (double) end - start;
+        int segments = span > 0 ? (int) Math.min(MAX_RAY_SEGMENTS, Math.ceil(span / raySegmentLength)) : 1;
+        double step = span / segments;
+        for (int s = 0; span >= 0 && s < segments; s++) {
+            float t0 = s == 0 ? start : (float) (start + step * s);
+            float t1 = s == segments - 1 ? end : (float) (start + step * (s + 1));
+            float x0 = originX + rayDirX * t0;
+            float y0 = originY + rayDirY * t0;
+            float x1 = originX + rayDirX * t1;
+            float y1 = originY + rayDirY * t1;
+            search(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1));
+            if (hit.entity != null && bestDistance <= t1) {
+                break;
+            }
+        }
+        this.hit = null;
+        return hit.entity != null;
+    }
+
+    private void begin(int mode, int layerMask) {
+        this.mode = mode;
+        this.layerMask = layerMask;
+    }
+
+    /**
+     * 動的コライダーと焼き込み済みのコライダーをすべて検索
+     */
+    private void search(float minX, float minY, float maxX, float maxY) {
+        if (dynamics == null) {
+            return;
+        }
+        dynamicCollector.set = dynamics;
+        broadphase.query(dynamics, minX, minY, maxX, maxY, dynamicCollector);
+        searchBaked(staticIndex, minX, minY, maxX, maxY);
+        searchBaked(sleepingIndex, minX, minY, maxX, maxY);
+    }
+
+    private void searchBaked(StaticAabbIndex index, float minX, float minY, float maxX, float maxY) {
+        if (index != null && index.size() > 0) {
+            bakedCollector.index = index;
+            index.query(minX, minY, maxX, maxY, bakedCollector);
+            bakedCollector.index = null;
+        }
+    }
+
+    /**
+     * レイがAABBに入る距離（交わらなければ正の無限大）
+     */
+    private float slabEntry(float minX, float minY, float maxX, float maxY) {
+        float entry = Float.NEGATIVE_INFINITY;
+        float exit = Float.POSITIVE_INFINITY;
+        if (rayDirX != 0) {
+            float a = (minX - rayX) / rayDirX;
+            float b = (maxX - rayX) / rayDirX;
+            entry = Math.max(entry, Math.min(a, b));
+            exit = Math.min(exit, Math.max(a, b));
+        } else if (rayX < minX || rayX > maxX) {
+            return Float.POSITIVE_INFINITY;
+        }
+        if (rayDirY != 0) {
+            float a = (minY - rayY) / rayDirY;
+            float b = (maxY - rayY) / rayDirY;
+            entry = Math.max(entry, Math.min(a, b));
+            exit = Math.min(exit, Math.max(a, b));
+        } else if (rayY < minY || rayY > maxY) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return entry <= exit && exit >= 0 ? entry : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * レイがAABBから出る距離
+     */
+    private float slabExit(float minX, float minY, float maxX, float maxY) {
+        float exit = Float.POSITIVE_INFINITY;
+        if (rayDirX != 0) {
+            exit = Math.min(exit, Math.max((minX - rayX) / rayDirX, (maxX - rayX) / rayDirX));
+        }
+        if (rayDirY != 0) {
+            exit = Math.min(exit, Math.max((minY - rayY) / rayDirY, (maxY - rayY) / rayDirY));
+        }
+        return exit;
+    }
+
+    /**
+     * 全コライダーを囲む範囲を求める
+     *
+     * @return コライダーが1つもなければfalse
+     */
+    private boolean ensureBounds() {
+        if (dynamics == null) {
+            return false;
+        }
+        if (boundsValid) {
+            return boundsMinX <= boundsMaxX;
+        }
+        boundsMinX = Float.POSITIVE_INFINITY;
+        boundsMinY = Float.POSITIVE_INFINITY;
+        boundsMaxX = Float.NEGATIVE_INFINITY;
+        boundsMaxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < dynamics.size; i++) {
+            includeBounds(dynamics.minX[i], dynamics.minY[i], dynamics.maxX[i], dynamics.maxY[i]);
+        }
+        includeBounds(staticIndex);
+        includeBounds(sleepingIndex);
+        boundsValid = true;
+        return boundsMinX <= boundsMaxX;
+    }
+
+    private void includeBounds(StaticAabbIndex index) {
+        if (index == null) {
+            return;
+        }
+        for (int i = 0; i < index.size(); i++) {
+            includeBounds(index.getMinX(i), index.getMinY(i), index.getMaxX(i), index.getMaxY(i));
+        }
+    }
+
+    private void includeBounds(float minX, float minY, float maxX, float maxY) {
+        boundsMinX = Math.min(boundsMinX, minX);
+        boundsMinY = Math.min(boundsMinY, minY);
+        boundsMaxX = Math.max(boundsMaxX, maxX);
+        boundsMaxY = Math.max(boundsMaxY, maxY);
+    }
+
+    /**
+     * 範囲検索で見つかったコライダーを、検索の種類に応じて処理
+     */
+    private class Collector implements QueryCallback {
+
+        ColliderSet set; // 動的コライダーを検索する場合
+        StaticAabbIndex index; // 焼き込み済みのコライダーを検索する場合
+
+        @Override
+        public boolean report(int i) {
+            Entity entity;
+            float minX;
+            float minY;
+            float maxX;
+            float maxY;
+            int layerBits;
+            if (index != null) {
+                entity = index.getEntity(i);
+                minX = index.getMinX(i);
+                minY = index.getMinY(i);
+                maxX = index.getMaxX(i);
+                maxY = index.getMaxY(i);
+                layerBits = index.getLayerBits(i);
+            } else {
+                entity = set.entities[i];
+                minX = set.minX[i];
+                minY = set.minY[i];
+                maxX = set.maxX[i];
+                maxY = set.maxY[i];
+                layerBits = set.layerBits[i];
+            }
+            if ((layerBits & layerMask) == 0) {
+                return true;
+            }
+            switch (mode) {
+                case MODE_AABB -> results.add(entity, 0);
+                case MODE_NEAREST -> {
+                    float dx = Math.max(Math.max(minX - pointX, pointX - maxX), 0);
+                    float dy = Math.max(Math.max(minY - pointY, pointY - maxY), 0);
+                    results.insertNearest(entity, (float) Math.sqrt(dx * dx + dy * dy), limit);
+                }
+                default -> reportRay(entity, minX, minY, maxX, maxY);
+            }
+            return true;
+        }
+
+        private void reportRay(Entity entity, float minX, float minY, float maxX, float maxY) {
+            float distance = slabEntry(minX, minY, maxX, maxY);
+            float normalX = 0;
+            float normalY = 0;
+            if (distance < 0) {
+                // 始点がAABBの内側
+                distance = 0;
+            } else if (distance != Float.POSITIVE_INFINITY) {
+                // 入った面の法線
+                float x = rayX + rayDirX * distance;
+                float y = rayY + rayDirY * distance;
+                float gapX = Math.min(Math.abs(x - minX), Math.abs(x - maxX));
+                float gapY = Math.min(Math.abs(y - minY), Math.abs(y - maxY));
+                if (gapX <= gapY) {
+                    normalX = rayDirX > 0 ? -1 : 1;
+                } else {
+                    normalY = rayDirY > 0 ? -1 : 1;
+                }
+            }
+            if (distance > bestDistance || distance == Float.POSITIVE_INFINITY) {
+                return;
+            }
+            // 同じ距離なら先に見つかった方を残す
+            if (hit.entity != null && distance == bestDistance) {
+                return;
+            }
+            bestDistance = distance;
+            hit.entity = entity;
+            hit.distance = distance;
+            hit.x = rayX + rayDirX * distance;
+            hit.y = rayY + rayDirY * distance;
+            hit.normalX = normalX;
+            hit.normalY = normalY;
+        }
+    }
+}
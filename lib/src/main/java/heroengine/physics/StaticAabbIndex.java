@@ -0,0 +1,229 @@
+package heroengine.physics;
+
+import heroengine.ecs.Entity;
+
+import java.util.Arrays;
+
+/**
+ * 静的コライダーの索引 動かないコライダーを一様なグリッドに焼き込み、作成後は変更しない
+ * セルごとのコライダー番号を1つの配列に詰めて保持するため、検索はメモリを確保せず、複数スレッドから同時に呼べる
+ * コライダーの追加・削除があったときは、新しい索引を作り直す
+ */
+public final class StaticAabbIndex {
+
+    // 1つのコライダーあたりのセル数の上限の目安（これを超える場合はセルを大きくする）
+    private static final int MAX_CELLS_PER_COLLIDER = 4;
+
+    private final int size;
+    private final Entity[] entities;
+    private final float[] minX;
+    private final float[] minY;
+    private final float[] maxX;
+    private final float[] maxY;
+    private final int[] layerBits;
+    private final int[] masks;
+
+    private final float cellSize;
+    private final float inverseCellSize;
+    private final int originX;
+    private final int originY;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStarts; // セルの先頭位置（セル数 + 1）
+    private final int[] cellItems; // セルごとに並べたコライダー番号
+    private final int[] itemCellX; // コライダーの最小セル座標（重複除去に使う）
+    private final int[] itemCellY;
+
+    /**
+     * セルの大きさをコライダーの平均的な大きさから決めて作成
+     */
+    public StaticAabbIndex(ColliderSet colliders) {
+        this(colliders, averageSize(colliders));
+    }
+
+    /**
+     * @param colliders 焼き込むコライダー（内容はコピーされる）
+     * @param cellSize セルの大きさ（コライダーが極端に広がっている場合は自動で大きくする）
+     */
+    public StaticAabbIndex(ColliderSet colliders, float cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("cellSize must be > 0: " + cellSize);
+        }
+        int n = colliders.size;
+        this.size = n;
+        this.entities = Arrays.copyOf(colliders.entities, n);
+        this.minX = Arrays.copyOf(colliders.minX, n);
+        this.minY = Arrays.copyOf(colliders.minY, n);
+        this.maxX = Arrays.copyOf(colliders.maxX, n);
+        this.maxY = Arrays.copyOf(colliders.maxY, n);
+        this.layerBits = Arrays.copyOf(colliders.layerBits, n);
+        this.masks = Arrays.copyOf(colliders.masks, n);
+
+        // 全体の範囲
+        float boundsMinX = Float.POSITIVE_INFINITY;
+        float boundsMinY = Float.POSITIVE_INFINITY;
+        float boundsMaxX = Float.NEGATIVE_INFINITY;
+        float boundsMaxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            boundsMinX = Math.min(boundsMinX, minX[i]);
+            boundsMinY = Math.min(boundsMinY, minY[i]);
+            boundsMaxX = Math.max(boundsMaxX, maxX[i]);
+            boundsMaxY = Math.max(boundsMaxY, maxY[i]);
+        }
+        if (n == 0) {
+            boundsMinX = boundsMinY = boundsMaxX = boundsMaxY = 0;
+        }
+
+        // セル数がコライダー数に対して多すぎる場合はセルを大きくする
+        double maxCells = Math.max(1024.0, (double) n * MAX_CELLS_PER_COLLIDER);
+        double area = ((double) boundsMaxX - boundsMinX + cellSize) * ((double) boundsMaxY - boundsMinY + cellSize);
+        double cells = area / ((double) cellSize * cellSize);
+        if (cells > maxCells) {
+            cellSize = (float) (cellSize * Math.sqrt(cells / maxCells));
+        }
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1.0f / cellSize;
+
+        this.originX = toCell(boundsMinX);
+        this.originY = toCell(boundsMinY);
+        this.columns = toCell(boundsMaxX) - originX + 1;
+        this.rows = toCell(boundsMaxY) - originY + 1;
+        this.cellStarts = new int[columns * rows + 1];
+        this.itemCellX = new int[n];
+        this.itemCellY = new int[n];
+
+        // 1回目: セルごとの数を数える
+        for (int i = 0; i < n; i++) {
+            int x0 = toCell(minX[i]) - originX;
+            int y0 = toCell(minY[i]) - originY;
+            int x1 = toCell(maxX[i]) - originX;
+            int y1 = toCell(maxY[i]) - originY;
+            itemCellX[i] = x0;
+            itemCellY[i] = y0;
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    cellStarts[y * columns + x + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStarts[c + 1] += cellStarts[c];
+        }
+
+        // 2回目: セルごとに詰める（番号の小さい順に並ぶ）
+        this.cellItems = new int[cellStarts[columns * rows]];
+        int[] cursor = Arrays.copyOf(cellStarts, columns * rows);
+        for (int i = 0; i < n; i++) {
+            int x1 = toCell(maxX[i]) - originX;
+            int y1 = toCell(maxY[i]) - originY;
+            for (int y = itemCellY[i]; y <= y1; y++) {
+                for (int x = itemCellX[i]; x <= x1; x++) {
+                    cellItems[cursor[y * columns + x]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * 範囲と重なるコライダーをレイヤーに関係なく通知（接している場合も含む）
+     * 各コライダーは1回だけ通知される
+     */
+    public void query(float minX, float minY, float maxX, float maxY, QueryCallback callback) {
+        query(minX, minY, maxX, maxY, ~0, ~0, false, callback);
+    }
+
+    /**
+     * 範囲と重なり、レイヤーが互いに衝突対象になっているコライダーを通知（接している場合も含む）
+     * 各コライダーは1回だけ通知される
+     *
+     * @param layerBits 検索する側のレイヤーのビット
+     * @param mask 検索する側が衝突する相手レイヤーのビット
+     */
+    public void query(float minX, float minY, float maxX, float maxY, int layerBits, int mask, QueryCallback callback) {
+        query(minX, minY, maxX, maxY, layerBits, mask, true, callback);
+    }
+
+    private void query(float minX, float minY, float maxX, float maxY, int layerBits, int mask,
+                       boolean mutual, QueryCallback callback) {
+        if (size == 0) {
+            return;
+        }
+        // 範囲が非常に大きい場合にあふれないようlongで計算してからグリッド内に収める
+        int x0 = (int) Math.max((long) toCell(minX) - originX, 0);
+        int y0 = (int) Math.max((long) toCell(minY) - originY, 0);
+        int x1 = (int) Math.min((long) toCell(maxX) - originX, columns - 1);
+        int y1 = (int) Math.min((long) toCell(maxY) - originY, rows - 1);
+
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                int cell = y * columns + x;
+                for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if ((mask & this.layerBits[i]) == 0 || (mutual && (masks[i] & layerBits) == 0)) {
+                        continue;
+                    }
+                    // 検索範囲とコライダーが共有するセルのうち、左上のセルでだけ報告して重複を除く
+                    if (x != Math.max(itemCellX[i], x0) || y != Math.max(itemCellY[i], y0)) {
+                        continue;
+                    }
+                    if (this.maxX[i] < minX || maxX < this.minX[i] || this.maxY[i] < minY || maxY < this.minY[i]) {
+                        continue;
+                    }
+                    if (!callback.report(i)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 焼き込んだコライダーの数
+     */
+    public int size() {
+        return size;
+    }
+
+    public Entity getEntity(int index) {
+        return entities[index];
+    }
+
+    public float getMinX(int index) {
+        return minX[index];
+    }
+
+    public float getMinY(int index) {
+        return minY[index];
+    }
+
+    public float getMaxX(int index) {
+        return maxX[index];
+    }
+
+    public float getMaxY(int index) {
+        return maxY[index];
+    }
+
+    public int getLayerBits(int index) {
+        return layerBits[index];
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    private int toCell(float value) {
+        return (int) Math.floor(value * inverseCellSize);
+    }
+
+    private static float averageSize(ColliderSet colliders) {
+        if (colliders.size == 0) {
+            return 64;
+        }
+        double total = 0;
+        for (int i = 0; i < colliders.size; i++) {
+            total += Math.max(colliders.maxX[i] - colliders.minX[i], colliders.maxY[i] - colliders.minY[i]);
+        }
+        return (float) Math.max(1.0, total / colliders.size);
+    }
+}
@@ -0,0 +1,330 @@
+package heroengine.physics;
+
+import heroengine.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * スイープ&プルーン ブロードフェーズ X軸とY軸の端点（最小・最大）をソート済みのままフレーム間で保持し、
+ * 挿入ソートで並べ直しながら、端点が入れ替わったときだけ重なりペアの集合を更新する
+ * 動きが小さく連続的なシーンではほぼO(n)で動作する
+ */
+public class SweepAndPruneBroadphase implements Broadphase {
+
+    private static final int NONE = -1;
+
+    // プロキシ（エンティティ1つにつき1つ、フレーム間で維持）
+    private final LongIntHashMap proxyByEntity;
+    private float[] proxyMinX;
+    private float[] proxyMinY;
+    private float[] proxyMaxX;
+    private float[] proxyMaxY;
+    private long[] proxyEntity;
+    private int[] proxyIndex; // 今フレームのColliderSet上のインデックス
+    private int[] proxyStamp;
+    private int[] freeProxies;
+    private int freeCount;
+    private int proxyCapacity;
+    private int[] activeProxies;
+    private int activeCount;
+    private int stamp;
+
+    private final Axis axisX;
+    private final Axis axisY;
+
+    // 重なっているペア（キー: プロキシ番号のペア）
+    private final LongIntHashMap overlaps;
+
+    // 全再構築時の作業領域
+    private int[] sweepActive;
+    private int[] sweepPosition;
+    private long[] sortKeys;
+
+    public SweepAndPruneBroadphase() {
+        this.proxyByEntity = new LongIntHashMap(256);
+        this.overlaps = new LongIntHashMap(256);
+        this.axisX = new Axis();
+        this.axisY = new Axis();
+        this.freeProxies = new int[64];
+        this.activeProxies = new int[64];
+        growProxies(64);
+    }
+
+    /**
+     * 現在の重なりペア数
+     */
+    public int getOverlapCount() {
+        return overlaps.size();
+    }
+
+    @Override
+    public void findPairs(ColliderSet colliders, PairBuffer pairs) {
+        boolean structural = syncProxies(colliders);
+
+        if (structural) {
+            // 追加・削除があったフレームは端点を作り直し、ペアも一度に求め直す
+            rebuildEndpoints(axisX, true);
+            rebuildEndpoints(axisY, false);
+            rebuildOverlaps();
+        } else {
+            refreshEndpoints(axisX, true);
+            refreshEndpoints(axisY, false);
+            insertionSort(axisX);
+            insertionSort(axisY);
+        }
+
+        // 重なりの集合はレイヤーに関係なく保持し（レイヤーが変わっても作り直さずに済むように）、出力時に除く
+        for (int slot = 0; slot < overlaps.capacity(); slot++) {
+            if (overlaps.isUsed(slot)) {
+                long key = overlaps.keyAt(slot);
+                int i = proxyIndex[(int) (key >>> 32)];
+                int j = proxyIndex[(int) key];
+                if (colliders.canCollide(i, j)) {
+                    pairs.add(i, j);
+                }
+            }
+        }
+    }
+
+    /**
+     * ColliderSetとプロキシを対応付ける
+     *
+     * @return プロキシの追加・削除があったらtrue
+     */
+    private boolean syncProxies(ColliderSet colliders) {
+        stamp++;
+        boolean structural = false;
+
+        for (int i = 0; i < colliders.size; i++) {
+            long id = colliders.entities[i].getId();
+            int proxy = proxyByEntity.get(id, NONE);
+            if (proxy == NONE) {
+                proxy = createProxy(id);
+                structural = true;
+            }
+            proxyMinX[proxy] = colliders.minX[i];
+            proxyMinY[proxy] = colliders.minY[i];
+            proxyMaxX[proxy] = colliders.maxX[i];
+            proxyMaxY[proxy] = colliders.maxY[i];
+            proxyIndex[proxy] = i;
+            proxyStamp[proxy] = stamp;
+        }
+
+        // 今フレームに存在しないプロキシを削除
+        for (int k = activeCount - 1; k >= 0; k--) {
+            int proxy = activeProxies[k];
+            if (proxyStamp[proxy] != stamp) {
+                proxyByEntity.remove(proxyEntity[proxy], NONE);
+                activeProxies[k] = activeProxies[--activeCount];
+                if (freeCount == freeProxies.length) {
+                    freeProxies = Arrays.copyOf(freeProxies, freeCount * 2);
+                }
+                freeProxies[freeCount++] = proxy;
+                structural = true;
+            }
+        }
+        return structural;
+    }
+
+    private int createProxy(long entityId) {
+        int proxy;
+        if (freeCount > 0) {
+            proxy = freeProxies[--freeCount];
+        } else {
+            proxy = activeCount;
+            if (proxy == proxyCapacity) {
+                growProxies(proxyCapacity * 2);
+            }
+        }
+        if (activeCount == activeProxies.length) {
+            activeProxies = Arrays.copyOf(activeProxies, activeCount * 2);
+        }
+        activeProxies[activeCount++] = proxy;
+        proxyEntity[proxy] = entityId;
+        proxyByEntity.put(entityId, proxy, NONE);
+        return proxy;
+    }
+
+    private void growProxies(int capacity) {
+        proxyCapacity = capacity;
+        proxyMinX = Arrays.copyOf(proxyMinX == null ? new float[0] : proxyMinX, capacity);
+        proxyMinY = Arrays.copyOf(proxyMinY == null ? new float[0] : proxyMinY, capacity);
+        proxyMaxX = Arrays.copyOf(proxyMaxX == null ? new float[0] : proxyMaxX, capacity);
+        proxyMaxY = Arrays.copyOf(proxyMaxY == null ? new float[0] : proxyMaxY, capacity);
+        proxyEntity = Arrays.copyOf(proxyEntity == null ? new long[0] : proxyEntity, capacity);
+        proxyIndex = Arrays.copyOf(proxyIndex == null ? new int[0] : proxyIndex, capacity);
+        proxyStamp = Arrays.copyOf(proxyStamp == null ? new int[0] : proxyStamp, capacity);
+    }
+
+    /**
+     * 端点配列を全プロキシから作り直してソート
+     */
+    private void rebuildEndpoints(Axis axis, boolean horizontal) {
+        int count = activeCount * 2;
+        axis.ensureCapacity(count);
+        if (sortKeys == null || sortKeys.length < count) {
+            sortKeys = new long[Math.max(count, 64)];
+        }
+
+        for (int k = 0; k < activeCount; k++) {
+            int proxy = activeProxies[k];
+            float min = horizontal ? proxyMinX[proxy] : proxyMinY[proxy];
+            float max = horizontal ? proxyMaxX[proxy] : proxyMaxY[proxy];
+            sortKeys[k * 2] = sortKey(min, proxy << 1);
+            sortKeys[k * 2 + 1] = sortKey(max, (proxy << 1) | 1);
+        }
+        Arrays.sort(sortKeys, 0, count);
+
+        for (int e = 0; e < count; e++) {
+            long key = sortKeys[e];
+            int proxy = (int) (key & 0x7FFFFFFF);
+            boolean isMax = ((key >>> 31) & 1) != 0;
+            axis.data[e] = (proxy << 1) | (isMax ? 1 : 0);
+            axis.values[e] = horizontal
+                    ? (isMax ? proxyMaxX[proxy] : proxyMinX[proxy])
+                    : (isMax ? proxyMaxY[proxy] : proxyMinY[proxy]);
+        }
+        axis.count = count;
+    }
+
+    /**
+     * 値が小さい順、同じ値なら最小端点が先になるキー（接している場合も重なりとして扱うため）
+     */
+    private static long sortKey(float value, int data) {
+        // -0.0fを0.0fにそろえ、浮動小数点の大小関係を保ったまま整数に変換
+        int bits = Float.floatToIntBits(value + 0.0f);
+        bits ^= (bits >> 31) & 0x7FFFFFFF;
+        return ((long) bits << 32) | ((long) (data & 1) << 31) | (data >>> 1);
+    }
+
+    /**
+     * X軸でスイープし、重なりペアを最初から求める
+     */
+    private void rebuildOverlaps() {
+        overlaps.clear();
+        if (sweepActive == null || sweepActive.length < proxyCapacity) {
+            sweepActive = new int[proxyCapacity];
+            sweepPosition = new int[proxyCapacity];
+        }
+
+        int active = 0;
+        for (int e = 0; e < axisX.count; e++) {
+            int data = axisX.data[e];
+            int proxy = data >>> 1;
+            if ((data & 1) == 0) {
+                for (int k = 0; k < active; k++) {
+                    int other = sweepActive[k];
+                    if (overlapsY(proxy, other)) {
+                        addOverlap(proxy, other);
+                    }
+                }
+                sweepPosition[proxy] = active;
+                sweepActive[active++] = proxy;
+            } else {
+                int position = sweepPosition[proxy];
+                int last = sweepActive[--active];
+                sweepActive[position] = last;
+                sweepPosition[last] = position;
+            }
+        }
+    }
+
+    /**
+     * 端点の値をプロキシの最新の値に更新（並び順はそのまま）
+     */
+    private void refreshEndpoints(Axis axis, boolean horizontal) {
+        for (int e = 0; e < axis.count; e++) {
+            int data = axis.data[e];
+            int proxy = data >>> 1;
+            boolean isMax = (data & 1) != 0;
+            axis.values[e] = horizontal
+                    ? (isMax ? proxyMaxX[proxy] : proxyMinX[proxy])
+                    : (isMax ? proxyMaxY[proxy] : proxyMinY[proxy]);
+        }
+    }
+
+    /**
+     * 挿入ソートで並べ直し、端点が入れ替わったペアの重なりを更新
+     */
+    private void insertionSort(Axis axis) {
+        float[] values = axis.values;
+        int[] data = axis.data;
+
+        for (int e = 1; e < axis.count; e++) {
+            float value = values[e];
+            int moving = data[e];
+            boolean movingIsMax = (moving & 1) != 0;
+            int movingProxy = moving >>> 1;
+
+            int f = e - 1;
+            while (f >= 0 && precedes(value, movingIsMax, values[f], data[f])) {
+                int passed = data[f];
+                int passedProxy = passed >>> 1;
+                boolean passedIsMax = (passed & 1) != 0;
+
+                if (!movingIsMax && passedIsMax) {
+                    // 最小端点が他の最大端点より前に来た → 重なり始めた可能性
+                    if (overlapsX(movingProxy, passedProxy) && overlapsY(movingProxy, passedProxy)) {
+                        addOverlap(movingProxy, passedProxy);
+                    }
+                } else if (movingIsMax && !passedIsMax) {
+                    // 最大端点が他の最小端点より前に来た → この軸で離れた
+                    removeOverlap(movingProxy, passedProxy);
+                }
+
+                values[f + 1] = values[f];
+                data[f + 1] = passed;
+                f--;
+            }
+            values[f + 1] = value;
+            data[f + 1] = moving;
+        }
+    }
+
+    /**
+     * 端点aが端点bより前に並ぶべきか
+     */
+    private static boolean precedes(float valueA, boolean aIsMax, float valueB, int dataB) {
+        if (valueA != valueB) {
+            return valueA < valueB;
+        }
+        return !aIsMax && (dataB & 1) != 0;
+    }
+
+    private boolean overlapsX(int a, int b) {
+        return !(proxyMaxX[a] < proxyMinX[b] || proxyMaxX[b] < proxyMinX[a]);
+    }
+
+    private boolean overlapsY(int a, int b) {
+        return !(proxyMaxY[a] < proxyMinY[b] || proxyMaxY[b] < proxyMinY[a]);
+    }
+
+    private void addOverlap(int a, int b) {
+        overlaps.put(pairKey(a, b), 1, 0);
+    }
+
+    private void removeOverlap(int a, int b) {
+        overlaps.remove(pairKey(a, b), 0);
+    }
+
+    private static long pairKey(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    /**
+     * 1軸分のソート済み端点
+     */
+    private static class Axis {
+
+        float[] values = new float[128];
+        int[] data = new int[128]; // プロキシ番号 << 1 | 最大端点なら1
+        int count;
+
+        void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                values = new float[capacity * 2];
+                data = new int[capacity * 2];
+            }
+        }
+    }
+}
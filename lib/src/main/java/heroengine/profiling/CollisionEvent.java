@@ -0,0 +1,33 @@
+package heroengine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 衝突判定イベント 判定したペア数と衝突したペア数を記録
+ */
+@Name("heroengine.Collision")
+@Label("Collision Pass")
+@Category({"Hero Engine", "Physics"})
+@Description("One CollisionSystem.update pass")
+@StackTrace(false)
+public class CollisionEvent extends Event {
+
+    @Label("Colliders")
+    public int colliders;
+
+    @Label("Tested Pairs")
+    @Description("Candidate pairs passed from the broadphase to the AABB test")
+    public long testedPairs;
+
+    @Label("Colliding Pairs")
+    public int collidingPairs;
+
+    @Label("Trigger Pairs")
+    @Description("Overlapping pairs where at least one collider is a trigger")
+    public int triggerPairs;
+}
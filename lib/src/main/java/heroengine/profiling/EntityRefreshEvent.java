@@ -0,0 +1,28 @@
+package heroengine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * エンティティ更新イベント EntityManager#refresh での追加・削除数を記録
+ */
+@Name("heroengine.EntityRefresh")
+@Label("Entity Refresh")
+@Category({"Hero Engine", "ECS"})
+@Description("Pending entity additions and removals applied by EntityManager.refresh")
+@StackTrace(false)
+public class EntityRefreshEvent extends Event {
+
+    @Label("Added")
+    public int added;
+
+    @Label("Removed")
+    public int removed;
+
+    @Label("Entity Count")
+    public int entityCount;
+}
@@ -0,0 +1,26 @@
+package heroengine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * フレームイベント 1フレーム分の更新処理（開始から終了まで）を記録
+ */
+@Name("heroengine.Frame")
+@Label("Frame")
+@Category({"Hero Engine", "Frame"})
+@Description("One engine tick from refresh to input reset")
+@StackTrace(false)
+public class FrameEvent extends Event {
+
+    @Label("Frame Number")
+    public long frame;
+
+    @Label("Delta Time")
+    @Description("Seconds simulated by this frame")
+    public float deltaTime;
+}
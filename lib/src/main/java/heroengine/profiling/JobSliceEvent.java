@@ -0,0 +1,31 @@
+package heroengine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ジョブ実行イベント 1フレーム内で1つのジョブに割り当てた時間を記録
+ */
+@Name("heroengine.JobSlice")
+@Label("Job Slice")
+@Category({"Hero Engine", "Jobs"})
+@Description("Time slice given to one incremental job within a frame")
+@StackTrace(false)
+public class JobSliceEvent extends Event {
+
+    @Label("Job")
+    public String job;
+
+    @Label("Steps")
+    public long steps;
+
+    @Label("Progress")
+    public float progress;
+
+    @Label("Completed")
+    public boolean completed;
+}
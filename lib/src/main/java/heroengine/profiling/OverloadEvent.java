@@ -0,0 +1,29 @@
+package heroengine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 過負荷イベント OverloadControllerのレベル変化を記録
+ */
+@Name("heroengine.Overload")
+@Label("Overload Level Change")
+@Category({"Hero Engine", "Frame"})
+@Description("Load shedding level changed by OverloadController")
+@StackTrace(false)
+public class OverloadEvent extends Event {
+
+    @Label("Old Level")
+    public int oldLevel;
+
+    @Label("New Level")
+    public int newLevel;
+
+    @Label("Load")
+    @Description("Smoothed tick cost divided by the tick budget")
+    public float load;
+}
@@ -0,0 +1,37 @@
+package heroengine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 描画イベント RenderSystem#render 1回分の描画パスを記録
+ */
+@Name("heroengine.Render")
+@Label("Render Pass")
+@Category({"Hero Engine", "Render"})
+@Description("One RenderSystem.render pass")
+@StackTrace(false)
+public class RenderEvent extends Event {
+
+    @Label("Sprites Drawn")
+    public int sprites;
+
+    @Label("Sprites Culled")
+    @Description("Sprites outside every camera view, skipped without being visited")
+    public int culled;
+
+    @Label("Texts Drawn")
+    public int texts;
+
+    @Label("Repainted Pixels")
+    @Description("Pixels redrawn in this pass; smaller than the render area when only dirty rectangles were repainted")
+    public int repaintedPixels;
+
+    @Label("Layers Redrawn")
+    @Description("Cached layers re-rendered into their offscreen images because a member changed")
+    public int layersRedrawn;
+}
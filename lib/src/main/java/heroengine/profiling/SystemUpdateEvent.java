@@ -0,0 +1,28 @@
+package heroengine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * システム更新イベント GameSystem#update 1回分の処理時間を記録
+ */
+@Name("heroengine.SystemUpdate")
+@Label("System Update")
+@Category({"Hero Engine", "Frame"})
+@Description("One GameSystem.update call")
+@StackTrace(false)
+public class SystemUpdateEvent extends Event {
+
+    @Label("System")
+    public String system;
+
+    @Label("Frame Number")
+    public long frame;
+
+    @Label("Delta Time")
+    public float deltaTime;
+}
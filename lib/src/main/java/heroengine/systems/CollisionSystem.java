@@ -1,60 +1,859 @@
 package heroengine.systems;
 
 import heroengine.components.BoxCollider;
+import heroengine.components.Bullet;
+import heroengine.components.SleepState;
 import heroengine.components.Transform;
 import heroengine.ecs.Entity;
 import heroengine.ecs.GameSystem;
+import heroengine.physics.Broadphase;
+import heroengine.physics.BruteForceBroadphase;
+import heroengine.physics.ColliderSet;
+import heroengine.physics.CollisionMatrix;
+import heroengine.physics.StaticAabbIndex;
+import heroengine.physics.PairBuffer;
+import heroengine.physics.ParallelNarrowphase;
+import heroengine.physics.QueryCallback;
+import heroengine.physics.SpatialQuery;
+import heroengine.profiling.CollisionEvent;
+import heroengine.util.LongIntHashMap;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * コリジョンシステム 矩形の衝突判定を実行
+ * ブロードフェーズで候補ペアを絞り込んでからAABBで判定する（デフォルトは総当たり）
+ * 接触しているペアをフレーム間で保持し、接触の開始・継続・終了を通知する
+ * レイヤー表とコライダーのマスクで衝突しない組み合わせはブロードフェーズの段階で除き、
+ * どちらかがトリガーのペアは onTrigger〜 に、それ以外は onCollision〜 に通知する
+ * isStatic のコライダーとスリープ中（SleepState）のコライダーは索引に焼き込み、
+ * 動的同士・動的対静的・動的対スリープ中のペアだけを判定する（スリープ中同士の接触は判定せずに維持する）
+ * Bullet を持つエンティティは今ティックの移動を掃引し、最初に当たる位置まで戻してすり抜けを防ぐ（連続衝突判定）
  */
 public class CollisionSystem extends GameSystem {
 
+    private static final int NONE = -1;
+
+    // 連続衝突判定で止めた弾のAABBを広げる量（接した状態を確実に重なりとして判定するため）
+    private static final float CONTACT_SKIN = 0.01f;
+
+    private final ColliderSet colliders;
+    private final PairBuffer pairs;
+    private Broadphase broadphase;
+    private final CollisionMatrix matrix;
+    private final SpatialQuery spatialQuery;
+
+    // 静的コライダーとスリープ中のコライダー（追加・削除があったときだけ焼き直す）
+    private final BakedColliders statics;
+    private final BakedColliders sleepers;
+    private final BakedPairCollector bakedCollector;
+
+    // 焼き込み済みのコライダーとのペアをエンティティの順番に並べ直すための作業用配列
+    private long[] sortIds = new long[64];
+    private long[] sortKeys = new long[32];
+    private int[] rankPairs = new int[64];
+
+    // 接触中のペア（キー: エンティティIDのペア → 下の配列のインデックス）
+    private final LongIntHashMap contactIndex;
+    private long[] contactKeys;
+    private Entity[] contactA;
+    private Entity[] contactB;
+    private boolean[] contactTriggers;
+    private int[] contactStamps;
+    private int contactCount;
+    private int stamp;
+    private int collidingPairs;
+    private int triggerPairs;
+
+    // 連続衝突判定の対象（動的コライダーのうち、Bulletに移動前の位置が記録されているもの）
+    private boolean continuousCollision = true;
+    private int[] bulletSlots = new int[64]; // ColliderSetのインデックス → 弾の番号（NONEなら弾ではない）
+    private int[] bulletColliders = new int[16];
+    private Transform[] bulletTransforms = new Transform[16];
+    private float[] bulletDx = new float[16];
+    private float[] bulletDy = new float[16];
+    private float[] bulletToi = new float[16];
+    private int bulletCount;
+
+    // 並列ナローフェーズ（nullなら呼び出し元のスレッドだけで判定）
+    private ParallelNarrowphase narrowphase;
+    private int minPairsPerThread = 2048;
+
+    public CollisionSystem() {
+        this(new BruteForceBroadphase());
+    }
+
+    public CollisionSystem(Broadphase broadphase) {
+        this.colliders = new ColliderSet();
+        this.pairs = new PairBuffer();
+        this.broadphase = broadphase;
+        this.matrix = new CollisionMatrix();
+        this.spatialQuery = new SpatialQuery();
+        this.statics = new BakedColliders();
+        this.sleepers = new BakedColliders();
+        this.bakedCollector = new BakedPairCollector();
+        this.contactIndex = new LongIntHashMap(64);
+        this.contactKeys = new long[64];
+        this.contactA = new Entity[64];
+        this.contactB = new Entity[64];
+        this.contactTriggers = new boolean[64];
+        this.contactStamps = new int[64];
+    }
+
+    public Broadphase getBroadphase() {
+        return broadphase;
+    }
+
+    /**
+     * ブロードフェーズを変更（例: new SpatialHashBroadphase(64)）
+     */
+    public void setBroadphase(Broadphase broadphase) {
+        this.broadphase = broadphase;
+    }
+
+    /**
+     * レイヤー同士が衝突するかの表（例: getCollisionMatrix().setCollides(WALL, WALL, false)）
+     */
+    public CollisionMatrix getCollisionMatrix() {
+        return matrix;
+    }
+
+    /**
+     * 範囲・点・レイ・近傍の検索（直前の更新時点の位置に基づく）
+     */
+    public SpatialQuery getSpatialQuery() {
+        return spatialQuery;
+    }
+
+    public boolean isContinuousCollision() {
+        return continuousCollision;
+    }
+
+    /**
+     * 連続衝突判定の有効・無効を設定（デフォルトは有効、Bulletを持つエンティティだけが対象）
+     * 弾は Bullet に記録された移動前の位置（MovementSystemが記録する）から、今の位置までを掃引する
+     */
+    public void setContinuousCollision(boolean continuousCollision) {
+        this.continuousCollision = continuousCollision;
+    }
+
+    /**
+     * AABB判定に使うスレッド数を設定（1なら並列化しない）
+     * 候補ペアを区間に分けて判定し、結果は1スレッドの場合と同じ順番で通知される
+     */
+    public void setNarrowphaseThreads(int threads) {
+        if (narrowphase != null) {
+            narrowphase.close();
+            narrowphase = null;
+        }
+        if (threads > 1) {
+            narrowphase = new ParallelNarrowphase(threads);
+            narrowphase.setMinPairsPerThread(minPairsPerThread);
+        }
+    }
+
+    public int getNarrowphaseThreads() {
+        return narrowphase != null ? narrowphase.getThreads() : 1;
+    }
+
+    /**
+     * 並列化する場合の1スレッドあたりの最小ペア数（候補が少ないフレームはスレッド数を減らす）
+     */
+    public void setMinPairsPerThread(int minPairsPerThread) {
+        this.minPairsPerThread = minPairsPerThread;
+        if (narrowphase != null) {
+            narrowphase.setMinPairsPerThread(minPairsPerThread);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        setNarrowphaseThreads(1);
+    }
+
+    /**
+     * 静的コライダーを次のフレームで焼き直す（静的コライダーの位置や大きさ、レイヤーを変更したときに呼ぶ）
+     * 追加・削除とレイヤー表の変更は自動で検出される
+     */
+    public void markStaticsDirty() {
+        statics.bakedCount = -1;
+    }
+
+    /**
+     * 焼き込まれている静的コライダーの数
+     */
+    public int getStaticColliderCount() {
+        return statics.index.size();
+    }
+
+    /**
+     * 焼き込まれているスリープ中のコライダーの数
+     */
+    public int getSleepingColliderCount() {
+        return sleepers.index.size();
+    }
+
     @Override
     public void update(float deltaTime) {
+        CollisionEvent event = new CollisionEvent();
+        event.begin();
+
         List<Entity> entities = entityManager.getEntitiesWith(Transform.class, BoxCollider.class);
+        collectColliders(entities);
+        collectBullets();
+        if (statics.isDirty(matrix.getVersion())) {
+            bake(statics, entities, false);
+        }
+        if (sleepers.isDirty(matrix.getVersion())) {
+            bake(sleepers, entities, true);
+        }
 
-        // 総当たりで衝突判定
-        for (int i = 0; i < entities.size(); i++) {
-            for (int j = i + 1; j < entities.size(); j++) {
-                Entity entityA = entities.get(i);
-                Entity entityB = entities.get(j);
+        // 候補ペアを収集し、総当たりと同じ順番（エンティティの順番）に並べる
+        // 動的同士はブロードフェーズで、動的対静的・動的対スリープ中は索引で求める（焼き込み済み同士は調べない）
+        // 焼き込み済みのコライダーのインデックスは、動的コライダー数・静的コライダー数だけずらして追加する
+        statics.offset = colliders.size;
+        sleepers.offset = colliders.size + statics.set.size;
+        pairs.clear();
+        broadphase.findPairs(colliders, pairs);
+        int dynamicPairs = pairs.size();
+        collectBakedPairs(statics);
+        collectBakedPairs(sleepers);
+        if (pairs.size() == dynamicPairs) {
+            pairs.sort();
+        } else {
+            sortPairsByEntity();
+        }
+        if (bulletCount > 0) {
+            resolveBullets();
+        }
 
-                if (checkCollision(entityA, entityB)) {
-                    onCollision(entityA, entityB);
+        stamp++;
+        collidingPairs = 0;
+        triggerPairs = 0;
+        if (narrowphase != null) {
+            // ワーカーで判定し、結果は1スレッドの場合と同じ順番でこのスレッドから通知する
+            int count = narrowphase.test(colliders, pairs);
+            for (int n = 0; n < count; n++) {
+                int k = narrowphase.result(n);
+                dispatchPair(pairs.first(k), pairs.second(k));
+            }
+        } else {
+            for (int k = 0; k < pairs.size(); k++) {
+                int i = pairs.first(k);
+                int j = pairs.second(k);
+                // 焼き込み済みのコライダーとのペアは索引で重なりを確認済み
+                if (j >= colliders.size || colliders.overlaps(i, j)) {
+                    dispatchPair(i, j);
                 }
             }
         }
+        removeEndedContacts();
+        spatialQuery.update(colliders, broadphase, statics.index, sleepers.index);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.colliders = colliders.size + statics.set.size + sleepers.set.size;
+            event.testedPairs = pairs.size();
+            event.collidingPairs = collidingPairs;
+            event.triggerPairs = triggerPairs;
+            event.commit();
+        }
+    }
+
+    /**
+     * 重なっているペアを通知（jは焼き込み済みのコライダーの場合ずらしたインデックス）
+     */
+    private void dispatchPair(int i, int j) {
+        ColliderSet otherSet = pairSet(j);
+        j = pairIndex(j);
+        boolean trigger = colliders.triggers[i] || otherSet.triggers[j];
+        if (trigger) {
+            triggerPairs++;
+        } else {
+            collidingPairs++;
+        }
+        Entity a = colliders.entities[i];
+        Entity b = otherSet.entities[j];
+        // 焼き込み済みのコライダーの方が先のエンティティなら、総当たりと同じく先のエンティティを a にする
+        if (b.getId() < a.getId()) {
+            dispatchContact(b, a, trigger);
+        } else {
+            dispatchContact(a, b, trigger);
+        }
+    }
+
+    /**
+     * ペアをエンティティの順番（総当たりでのインデックスの順、つまりIDの順）に並べる
+     * 動的コライダーのインデックスと焼き込み済みのコライダーのずらしたインデックスは別々に振られているため、
+     * ペアに現れるコライダーをIDで順位付けし、順位の組で並べてからペアのインデックスに戻す
+     */
+    private void sortPairsByEntity() {
+        int size = pairs.size();
+        if (sortIds.length < size * 2) {
+            sortIds = new long[Math.max(size * 2, sortIds.length * 2)];
+            rankPairs = new int[sortIds.length];
+        }
+        if (sortKeys.length < size) {
+            sortKeys = new long[Math.max(size, sortKeys.length * 2)];
+        }
+
+        int count = 0;
+        for (int k = 0; k < size; k++) {
+            sortIds[count++] = pairEntity(pairs.first(k)).getId();
+            sortIds[count++] = pairEntity(pairs.second(k)).getId();
+        }
+        Arrays.sort(sortIds, 0, count);
+        int unique = 0;
+        for (int n = 0; n < count; n++) {
+            if (unique == 0 || sortIds[unique - 1] != sortIds[n]) {
+                sortIds[unique++] = sortIds[n];
+            }
+        }
+
+        for (int k = 0; k < size; k++) {
+            int first = pairs.first(k);
+            int second = pairs.second(k);
+            int rankFirst = Arrays.binarySearch(sortIds, 0, unique, pairEntity(first).getId());
+            int rankSecond = Arrays.binarySearch(sortIds, 0, unique, pairEntity(second).getId());
+            rankPairs[rankFirst] = first;
+            rankPairs[rankSecond] = second;
+            sortKeys[k] = ((long) Math.min(rankFirst, rankSecond) << 32) | Math.max(rankFirst, rankSecond);
+        }
+        Arrays.sort(sortKeys, 0, size);
+
+        pairs.clear();
+        for (int k = 0; k < size; k++) {
+            pairs.add(rankPairs[(int) (sortKeys[k] >>> 32)], rankPairs[(int) sortKeys[k]]);
+        }
+    }
+
+    /**
+     * ペアのインデックス（焼き込み済みのコライダーはずらしたインデックス）のエンティティ
+     */
+    private Entity pairEntity(int index) {
+        return pairSet(index).entities[pairIndex(index)];
+    }
+
+    /**
+     * ペアのインデックスが属するコライダー集合
+     */
+    private ColliderSet pairSet(int j) {
+        if (j < statics.offset) {
+            return colliders;
+        }
+        return j < sleepers.offset ? statics.set : sleepers.set;
+    }
+
+    /**
+     * ペアのインデックスを、属するコライダー集合上のインデックスに戻す
+     */
+    private int pairIndex(int j) {
+        if (j < statics.offset) {
+            return j;
+        }
+        return j < sleepers.offset ? j - statics.offset : j - sleepers.offset;
+    }
+
+    /**
+     * 接触しているペアを記録し、開始または継続を通知
+     */
+    private void dispatchContact(Entity a, Entity b, boolean trigger) {
+        long key = contactKey(a, b);
+        int index = contactIndex.get(key, NONE);
+        if (index == NONE) {
+            addContact(key, a, b, trigger);
+            if (trigger) {
+                onTriggerEnter(a, b);
+            } else {
+                onCollisionEnter(a, b);
+            }
+        } else {
+            contactStamps[index] = stamp;
+            if (contactTriggers[index]) {
+                onTriggerStay(a, b);
+            } else {
+                onCollisionStay(a, b);
+            }
+        }
+        if (!trigger) {
+            onCollision(a, b);
+        }
+    }
+
+    private void addContact(long key, Entity a, Entity b, boolean trigger) {
+        if (contactCount == contactKeys.length) {
+            int capacity = contactCount * 2;
+            contactKeys = Arrays.copyOf(contactKeys, capacity);
+            contactA = Arrays.copyOf(contactA, capacity);
+            contactB = Arrays.copyOf(contactB, capacity);
+            contactTriggers = Arrays.copyOf(contactTriggers, capacity);
+            contactStamps = Arrays.copyOf(contactStamps, capacity);
+        }
+        int index = contactCount++;
+        contactKeys[index] = key;
+        contactA[index] = a;
+        contactB[index] = b;
+        contactTriggers[index] = trigger;
+        contactStamps[index] = stamp;
+        contactIndex.put(key, index, NONE);
+    }
+
+    /**
+     * 今フレームで接触していなかったペアを削除して終了を通知（残りは順番を保って詰める）
+     */
+    private void removeEndedContacts() {
+        int count = contactCount;
+        int write = 0;
+        for (int read = 0; read < count; read++) {
+            // 焼き込み済み同士（スリープ中同士、スリープ中と静的）のペアは判定していないので維持する
+            if (contactStamps[read] == stamp || (isBaked(contactA[read]) && isBaked(contactB[read]))) {
+                if (read != write) {
+                    contactKeys[write] = contactKeys[read];
+                    contactA[write] = contactA[read];
+                    contactB[write] = contactB[read];
+                    contactTriggers[write] = contactTriggers[read];
+                    contactStamps[write] = contactStamps[read];
+                    contactIndex.put(contactKeys[write], write, NONE);
+                }
+                write++;
+            } else {
+                Entity a = contactA[read];
+                Entity b = contactB[read];
+                contactIndex.remove(contactKeys[read], NONE);
+                if (contactTriggers[read]) {
+                    onTriggerExit(a, b);
+                } else {
+                    onCollisionExit(a, b);
+                }
+            }
+        }
+        Arrays.fill(contactA, write, count, null);
+        Arrays.fill(contactB, write, count, null);
+        contactCount = write;
+    }
+
+    /**
+     * 静的またはスリープ中のコライダーか（削除されたエンティティはコンポーネントが外れているのでfalse）
+     */
+    private static boolean isBaked(Entity entity) {
+        BoxCollider collider = entity.getComponent(BoxCollider.class).orElse(null);
+        return collider != null && (collider.isStatic || isAsleep(entity));
+    }
+
+    private static boolean isAsleep(Entity entity) {
+        SleepState sleep = entity.getComponent(SleepState.class).orElse(null);
+        return sleep != null && sleep.asleep;
+    }
+
+    /**
+     * エンティティIDのペアのキー（IDの下位32ビットを使う）
+     */
+    private static long contactKey(Entity a, Entity b) {
+        long idA = a.getId();
+        long idB = b.getId();
+        long low = Math.min(idA, idB);
+        long high = Math.max(idA, idB);
+        return (low << 32) | (high & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 2つのエンティティが現在接触しているか
+     */
+    public boolean isTouching(Entity a, Entity b) {
+        return contactIndex.containsKey(contactKey(a, b));
+    }
+
+    /**
+     * 現在接触しているペアの数
+     */
+    public int getContactCount() {
+        return contactCount;
+    }
+
+    /**
+     * index番目の接触ペアの一方（0 〜 getContactCount() - 1）
+     */
+    public Entity getContactA(int index) {
+        return contactA[index];
+    }
+
+    /**
+     * index番目の接触ペアのもう一方
+     */
+    public Entity getContactB(int index) {
+        return contactB[index];
+    }
+
+    /**
+     * 動的コライダーのAABBを収集し、静的・スリープ中のコライダーの数とIDのチェックサムを求める
+     */
+    private void collectColliders(List<Entity> entities) {
+        colliders.clear();
+        statics.beginCount();
+        sleepers.beginCount();
+        for (Entity entity : entities) {
+            BoxCollider collider = entity.getComponent(BoxCollider.class).get();
+            if (collider.isStatic) {
+                statics.count(entity);
+            } else if (isAsleep(entity)) {
+                sleepers.count(entity);
+            } else {
+                addCollider(colliders, entity, collider);
+            }
+        }
+    }
+
+    /**
+     * 弾を集め、AABBを移動前の位置からの移動全体を覆う大きさに広げる（ブロードフェーズが掃引範囲の候補を返すように）
+     * 記録された移動前の位置は、連続衝突判定が無効でも毎回消費する（有効に戻したときに古い位置から掃引しないように）
+     */
+    private void collectBullets() {
+        bulletCount = 0;
+        int n = colliders.size;
+        if (bulletSlots.length < n) {
+            bulletSlots = new int[Math.max(n, bulletSlots.length * 2)];
+        }
+        for (int i = 0; i < n; i++) {
+            Entity entity = colliders.entities[i];
+            bulletSlots[i] = NONE;
+            Bullet bullet = entity.getComponent(Bullet.class).orElse(null);
+            if (bullet == null || !bullet.moved) {
+                continue;
+            }
+            bullet.moved = false;
+            Transform transform = entity.getComponent(Transform.class).get();
+            float dx = transform.x - bullet.startX;
+            float dy = transform.y - bullet.startY;
+            if (!continuousCollision || (dx == 0 && dy == 0)) {
+                continue;
+            }
+
+            if (bulletCount == bulletColliders.length) {
+                int capacity = bulletCount * 2;
+                bulletColliders = Arrays.copyOf(bulletColliders, capacity);
+                bulletTransforms = Arrays.copyOf(bulletTransforms, capacity);
+                bulletDx = Arrays.copyOf(bulletDx, capacity);
+                bulletDy = Arrays.copyOf(bulletDy, capacity);
+                bulletToi = Arrays.copyOf(bulletToi, capacity);
+            }
+            int slot = bulletCount++;
+            bulletSlots[i] = slot;
+            bulletColliders[slot] = i;
+            bulletTransforms[slot] = transform;
+            bulletDx[slot] = dx;
+            bulletDy[slot] = dy;
+            bulletToi[slot] = 1;
+
+            // 移動前の位置まで広げる
+            if (dx > 0) {
+                colliders.minX[i] -= dx;
+            } else {
+                colliders.maxX[i] -= dx;
+            }
+            if (dy > 0) {
+                colliders.minY[i] -= dy;
+            } else {
+                colliders.maxY[i] -= dy;
+            }
+        }
     }
 
     /**
-     * 2つのエンティティの衝突判定
+     * 弾ごとに最初に当たる時刻を求め、その位置まで戻す
+     * 戻した後のAABBで通常の判定を行うので、当たった相手には通常どおりコールバックが呼ばれる
      */
-    private boolean checkCollision(Entity a, Entity b) {
-        Transform transA = a.getComponent(Transform.class).get();
-        Transform transB = b.getComponent(Transform.class).get();
-        BoxCollider colA = a.getComponent(BoxCollider.class).get();
-        BoxCollider colB = b.getComponent(BoxCollider.class).get();
+    private void resolveBullets() {
+        int n = colliders.size;
+        for (int k = 0; k < pairs.size(); k++) {
+            int i = pairs.first(k);
+            int j = pairs.second(k);
+            if (bulletSlots[i] != NONE) {
+                sweepBullet(bulletSlots[i], j);
+            }
+            if (j < n && bulletSlots[j] != NONE) {
+                sweepBullet(bulletSlots[j], i);
+            }
+        }
 
-        float leftA = transA.x + colA.offsetX - colA.width / 2;
-        float rightA = transA.x + colA.offsetX + colA.width / 2;
-        float topA = transA.y + colA.offsetY - colA.height / 2;
-        float bottomA = transA.y + colA.offsetY + colA.height / 2;
+        for (int slot = 0; slot < bulletCount; slot++) {
+            int i = bulletColliders[slot];
+            float toi = bulletToi[slot];
+            float dx = bulletDx[slot];
+            float dy = bulletDy[slot];
 
-        float leftB = transB.x + colB.offsetX - colB.width / 2;
-        float rightB = transB.x + colB.offsetX + colB.width / 2;
-        float topB = transB.y + colB.offsetY - colB.height / 2;
-        float bottomB = transB.y + colB.offsetY + colB.height / 2;
+            // 掃引範囲から、時刻toiでのAABBに戻す
+            float startMinX = dx > 0 ? colliders.minX[i] : colliders.minX[i] - dx;
+            float startMinY = dy > 0 ? colliders.minY[i] : colliders.minY[i] - dy;
+            float width = colliders.maxX[i] - colliders.minX[i] - Math.abs(dx);
+            float height = colliders.maxY[i] - colliders.minY[i] - Math.abs(dy);
+            float minX = startMinX + dx * toi;
+            float minY = startMinY + dy * toi;
 
-        return !(rightA < leftB || rightB < leftA || bottomA < topB || bottomB < topA);
+            if (toi < 1) {
+                Transform transform = bulletTransforms[slot];
+                transform.x -= dx * (1 - toi);
+                transform.y -= dy * (1 - toi);
+                colliders.minX[i] = minX - CONTACT_SKIN;
+                colliders.minY[i] = minY - CONTACT_SKIN;
+                colliders.maxX[i] = minX + width + CONTACT_SKIN;
+                colliders.maxY[i] = minY + height + CONTACT_SKIN;
+            } else {
+                colliders.minX[i] = minX;
+                colliders.minY[i] = minY;
+                colliders.maxX[i] = minX + width;
+                colliders.maxY[i] = minY + height;
+            }
+            bulletTransforms[slot] = null;
+        }
+        bulletCount = 0;
+
+        // 焼き込み済みのコライダーとのペアは掃引範囲で集めたので、戻した後のAABBで重なるものだけを残す
+        // （動的なコライダーとのペアは判定のときに今のAABBで確かめられる）
+        int write = 0;
+        for (int k = 0; k < pairs.size(); k++) {
+            int i = pairs.first(k);
+            int j = pairs.second(k);
+            if (j >= n && bulletSlots[i] != NONE && !overlapsBaked(i, j)) {
+                continue;
+            }
+            pairs.move(k, write++);
+        }
+        pairs.truncate(write);
+    }
+
+    /**
+     * 動的コライダーと焼き込み済みのコライダー（ずらしたインデックス）のAABBが重なるか
+     */
+    private boolean overlapsBaked(int i, int j) {
+        ColliderSet otherSet = pairSet(j);
+        j = pairIndex(j);
+        return !(colliders.maxX[i] < otherSet.minX[j] || otherSet.maxX[j] < colliders.minX[i]
+                || colliders.maxY[i] < otherSet.minY[j] || otherSet.maxY[j] < colliders.minY[i]);
     }
 
     /**
-     * 衝突時の処理（オーバーライド可能）
+     * 弾と相手（jは焼き込み済みのコライダーの場合ずらしたインデックス）の掃引判定を行い、当たる時刻を更新
+     * 相手は今ティックの位置で止まっているものとして扱い、トリガーと、開始時点で既に重なっている相手は対象外
+     */
+    private void sweepBullet(int slot, int j) {
+        int i = bulletColliders[slot];
+        ColliderSet otherSet = pairSet(j);
+        j = pairIndex(j);
+        if (colliders.triggers[i] || otherSet.triggers[j]) {
+            return;
+        }
+
+        float dx = bulletDx[slot];
+        float dy = bulletDy[slot];
+        float startMinX = dx > 0 ? colliders.minX[i] : colliders.minX[i] - dx;
+        float startMinY = dy > 0 ? colliders.minY[i] : colliders.minY[i] - dy;
+        float startMaxX = dx > 0 ? colliders.maxX[i] - dx : colliders.maxX[i];
+        float startMaxY = dy > 0 ? colliders.maxY[i] - dy : colliders.maxY[i];
+
+        // 相手も弾なら、移動後のAABBを使う
+        float otherMinX = otherSet.minX[j];
+        float otherMinY = otherSet.minY[j];
+        float otherMaxX = otherSet.maxX[j];
+        float otherMaxY = otherSet.maxY[j];
+        if (otherSet == colliders && bulletSlots[j] != NONE) {
+            int other = bulletSlots[j];
+            if (bulletDx[other] > 0) {
+                otherMinX += bulletDx[other];
+            } else {
+                otherMaxX += bulletDx[other];
+            }
+            if (bulletDy[other] > 0) {
+                otherMinY += bulletDy[other];
+            } else {
+                otherMaxY += bulletDy[other];
+            }
+        }
+
+        float entryX;
+        float exitX;
+        if (dx > 0) {
+            entryX = (otherMinX - startMaxX) / dx;
+            exitX = (otherMaxX - startMinX) / dx;
+        } else if (dx < 0) {
+            entryX = (otherMaxX - startMinX) / dx;
+            exitX = (otherMinX - startMaxX) / dx;
+        } else if (startMaxX < otherMinX || otherMaxX < startMinX) {
+            return;
+        } else {
+            entryX = Float.NEGATIVE_INFINITY;
+            exitX = Float.POSITIVE_INFINITY;
+        }
+
+        float entryY;
+        float exitY;
+        if (dy > 0) {
+            entryY = (otherMinY - startMaxY) / dy;
+            exitY = (otherMaxY - startMinY) / dy;
+        } else if (dy < 0) {
+            entryY = (otherMaxY - startMinY) / dy;
+            exitY = (otherMinY - startMaxY) / dy;
+        } else if (startMaxY < otherMinY || otherMaxY < startMinY) {
+            return;
+        } else {
+            entryY = Float.NEGATIVE_INFINITY;
+            exitY = Float.POSITIVE_INFINITY;
+        }
+
+        float entry = Math.max(entryX, entryY);
+        float exit = Math.min(exitX, exitY);
+        if (entry >= 0 && entry <= exit && entry < bulletToi[slot]) {
+            bulletToi[slot] = entry;
+        }
+    }
+
+    /**
+     * 静的コライダーまたはスリープ中のコライダーを集め直して索引を作る
+     */
+    private void bake(BakedColliders group, List<Entity> entities, boolean sleeping) {
+        group.set.clear();
+        for (Entity entity : entities) {
+            BoxCollider collider = entity.getComponent(BoxCollider.class).get();
+            boolean member = sleeping ? !collider.isStatic && isAsleep(entity) : collider.isStatic;
+            if (member) {
+                addCollider(group.set, entity, collider);
+            }
+        }
+        group.index = new StaticAabbIndex(group.set);
+        group.bakedCount = group.count;
+        group.bakedChecksum = group.checksum;
+        group.bakedMatrixVersion = matrix.getVersion();
+    }
+
+    /**
+     * 動的コライダーごとに焼き込み済みの索引を検索し、ずらしたインデックスでペアに追加
+     * （ソートすると動的同士・動的対静的・動的対スリープ中の順に並ぶ）
+     */
+    private void collectBakedPairs(BakedColliders group) {
+        if (group.index.size() == 0) {
+            return;
+        }
+        bakedCollector.offset = group.offset;
+        for (int i = 0; i < colliders.size; i++) {
+            bakedCollector.index = i;
+            group.index.query(colliders.minX[i], colliders.minY[i], colliders.maxX[i], colliders.maxY[i],
+                    colliders.layerBits[i], colliders.masks[i], bakedCollector);
+        }
+    }
+
+    private static long mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private void addCollider(ColliderSet set, Entity entity, BoxCollider collider) {
+        Transform transform = entity.getComponent(Transform.class).get();
+
+        float left = transform.x + collider.offsetX - collider.width / 2;
+        float right = transform.x + collider.offsetX + collider.width / 2;
+        float top = transform.y + collider.offsetY - collider.height / 2;
+        float bottom = transform.y + collider.offsetY + collider.height / 2;
+
+        // コライダーのマスクとレイヤー表の両方で許可された相手とだけ衝突する
+        int mask = collider.mask & matrix.getMask(collider.layer);
+        set.add(entity, left, top, right, bottom, collider.layer, mask, collider.isTrigger);
+    }
+
+    /**
+     * 衝突時の処理（オーバーライド可能） 重なっている間は毎フレーム呼ばれる（トリガーを除く）
      */
     protected void onCollision(Entity a, Entity b) {
         // 派生クラスでオーバーライドして使用
     }
+
+    /**
+     * 接触が始まったフレームに1回だけ呼ばれる（オーバーライド可能）
+     */
+    protected void onCollisionEnter(Entity a, Entity b) {
+        // 派生クラスでオーバーライドして使用
+    }
+
+    /**
+     * 接触が続いている2フレーム目以降に毎フレーム呼ばれる（オーバーライド可能）
+     */
+    protected void onCollisionStay(Entity a, Entity b) {
+        // 派生クラスでオーバーライドして使用
+    }
+
+    /**
+     * 接触が終わったフレームに1回だけ呼ばれる（オーバーライド可能）
+     * エンティティが削除されて接触が終わった場合、コンポーネントは既に削除されている
+     */
+    protected void onCollisionExit(Entity a, Entity b) {
+        // 派生クラスでオーバーライドして使用
+    }
+
+    /**
+     * トリガーとの接触が始まったフレームに1回だけ呼ばれる（オーバーライド可能）
+     */
+    protected void onTriggerEnter(Entity a, Entity b) {
+        // 派生クラスでオーバーライドして使用
+    }
+
+    /**
+     * トリガーとの接触が続いている2フレーム目以降に毎フレーム呼ばれる（オーバーライド可能）
+     */
+    protected void onTriggerStay(Entity a, Entity b) {
+        // 派生クラスでオーバーライドして使用
+    }
+
+    /**
+     * トリガーとの接触が終わったフレームに1回だけ呼ばれる（オーバーライド可能）
+     */
+    protected void onTriggerExit(Entity a, Entity b) {
+        // 派生クラスでオーバーライドして使用
+    }
+
+    /**
+     * 焼き込み済みの索引の検索結果をペアとして追加
+     */
+    private class BakedPairCollector implements QueryCallback {
+
+        int index;
+        int offset;
+
+        @Override
+        public boolean report(int bakedIndex) {
+            pairs.add(index, offset + bakedIndex);
+            return true;
+        }
+    }
+
+    /**
+     * 焼き込み済みのコライダー（静的・スリープ中） 数とIDのチェックサムが変わったときだけ焼き直す
+     */
+    private static class BakedColliders {
+
+        final ColliderSet set = new ColliderSet();
+        StaticAabbIndex index = new StaticAabbIndex(set);
+        int offset; // PairBuffer上でのインデックスのずらし量
+
+        // 今フレームの数とチェックサム
+        int count;
+        long checksum;
+
+        // 焼き込んだときの数とチェックサム
+        int bakedCount = -1;
+        long bakedChecksum;
+        int bakedMatrixVersion;
+
+        void beginCount() {
+            count = 0;
+            checksum = 0;
+        }
+
+        void count(Entity entity) {
+            count++;
+            checksum += mix(entity.getId());
+        }
+
+        boolean isDirty(int matrixVersion) {
+            return count != bakedCount || checksum != bakedChecksum || matrixVersion != bakedMatrixVersion;
+        }
+    }
 }
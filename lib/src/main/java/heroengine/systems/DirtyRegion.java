@@ -0,0 +1,127 @@
+package heroengine.systems;
+
+/**
+ * 部分再描画で描き直す範囲 いくつかの矩形のまま保持する
+ * 重なる矩形や近い矩形はまとめ、上限の数を超えるときは広がりが最も小さくなる矩形にまとめる
+ * 離れた場所の変化（左右のパドルとボールなど）を1つの大きな矩形にしないため
+ */
+final class DirtyRegion {
+
+    /**
+     * 保持する矩形の数の上限
+     */
+    static final int MAX_RECTS = 8;
+
+    private final float mergeDistance;
+    private final float[] minX = new float[MAX_RECTS];
+    private final float[] minY = new float[MAX_RECTS];
+    private final float[] maxX = new float[MAX_RECTS];
+    private final float[] maxY = new float[MAX_RECTS];
+    private int count;
+
+    /**
+     * @param mergeDistance この距離より近い矩形はまとめる
+     */
+    DirtyRegion(float mergeDistance) {
+        this.mergeDistance = mergeDistance;
+    }
+
+    int size() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    float minX(int k) {
+        return minX[k];
+    }
+
+    float minY(int k) {
+        return minY[k];
+    }
+
+    float maxX(int k) {
+        return maxX[k];
+    }
+
+    float maxY(int k) {
+        return maxY[k];
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * 矩形を加える（空の矩形は無視する）
+     */
+    void add(float x0, float y0, float x1, float y1) {
+        if (!(x0 <= x1 && y0 <= y1)) {
+            return;
+        }
+        // 重なる・近い矩形を取り込み、広がった分でさらに重なるものがなくなるまで繰り返す
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int k = 0; k < count; k++) {
+                if (x0 - mergeDistance <= maxX[k] && minX[k] <= x1 + mergeDistance
+                        && y0 - mergeDistance <= maxY[k] && minY[k] <= y1 + mergeDistance) {
+                    x0 = Math.min(x0, minX[k]);
+                    y0 = Math.min(y0, minY[k]);
+                    x1 = Math.max(x1, maxX[k]);
+                    y1 = Math.max(y1, maxY[k]);
+                    remove(k);
+                    merged = true;
+                    break;
+                }
+            }
+        }
+        if (count == MAX_RECTS) {
+            // 上限なら、まとめたときに増える面積が最も小さい矩形に取り込む
+            int best = 0;
+            double bestGrowth = Double.POSITIVE_INFINITY;
+            for (int k = 0; k < count; k++) {
+                double union = (double) (Math.max(x1, maxX[k]) - Math.min(x0, minX[k]))
+                        * (Math.max(y1, maxY[k]) - Math.min(y0, minY[k]));
+                double growth = union - (double) (maxX[k] - minX[k]) * (maxY[k] - minY[k]);
+                if (growth < bestGrowth) {
+                    bestGrowth = growth;
+                    best = k;
+                }
+            }
+            float bx0 = Math.min(x0, minX[best]);
+            float by0 = Math.min(y0, minY[best]);
+            float bx1 = Math.max(x1, maxX[best]);
+            float by1 = Math.max(y1, maxY[best]);
+            remove(best);
+            add(bx0, by0, bx1, by1);
+            return;
+        }
+        minX[count] = x0;
+        minY[count] = y0;
+        maxX[count] = x1;
+        maxY[count] = y1;
+        count++;
+    }
+
+    /**
+     * 矩形の面積の合計
+     */
+    double area() {
+        double area = 0;
+        for (int k = 0; k < count; k++) {
+            area += (double) (maxX[k] - minX[k]) * (maxY[k] - minY[k]);
+        }
+        return area;
+    }
+
+    private void remove(int k) {
+        count--;
+        minX[k] = minX[count];
+        minY[k] = minY[count];
+        maxX[k] = maxX[count];
+        maxY[k] = maxY[count];
+    }
+}
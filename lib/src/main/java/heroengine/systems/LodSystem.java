@@ -0,0 +1,153 @@
+package heroengine.systems;
+
+import heroengine.components.SimulationLod;
+import heroengine.components.Transform;
+import heroengine.ecs.Component;
+import heroengine.ecs.Entity;
+import heroengine.ecs.GameSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LODシステム 注目点（カメラやプレイヤーなど）からの距離でSimulationLodのバケットを決め、
+ * 遠いエンティティほど低い頻度でだけ「このティックで更新する」状態にする
+ * LODを参照するシステムより先に追加し、毎ティック更新すること
+ */
+public class LodSystem extends GameSystem {
+
+    private final List<Entity> focusEntities;
+    private final List<float[]> focusPoints;
+    private float[] bucketDistancesSq;
+    private long tick;
+
+    public LodSystem() {
+        this.focusEntities = new ArrayList<>();
+        this.focusPoints = new ArrayList<>();
+        setBucketDistances(800, 1600, 3200);
+    }
+
+    /**
+     * バケットの境界距離を設定（昇順） 境界をk個越えるとバケットk（1/2^kの頻度）になる
+     */
+    public final void setBucketDistances(float... distances) {
+        float[] squared = new float[distances.length];
+        for (int i = 0; i < distances.length; i++) {
+            if (i > 0 && distances[i] < distances[i - 1]) {
+                throw new IllegalArgumentException("distances must be ascending");
+            }
+            squared[i] = distances[i] * distances[i];
+        }
+        this.bucketDistancesSq = squared;
+    }
+
+    /**
+     * Transformを持つエンティティを注目点として登録
+     */
+    public void addFocus(Entity entity) {
+        focusEntities.add(entity);
+    }
+
+    public void removeFocus(Entity entity) {
+        focusEntities.remove(entity);
+    }
+
+    /**
+     * 固定座標を注目点として登録
+     */
+    public void addFocusPoint(float x, float y) {
+        focusPoints.add(new float[]{x, y});
+    }
+
+    /**
+     * すべての注目点を削除
+     */
+    public void clearFocus() {
+        focusEntities.clear();
+        focusPoints.clear();
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        List<Entity> entities = entityManager.getEntitiesWith(Transform.class, SimulationLod.class);
+
+        for (Entity entity : entities) {
+            Transform transform = entity.getComponent(Transform.class).get();
+            SimulationLod lod = entity.getComponent(SimulationLod.class).get();
+
+            lod.bucket = bucketFor(nearestFocusDistanceSq(transform.x, transform.y));
+            lod.pendingTime += deltaTime;
+
+            // IDで位相をずらし、同じバケットのエンティティが同じティックに集中しないようにする
+            int mask = lod.getInterval() - 1;
+            lod.due = ((tick + entity.getId()) & mask) == 0;
+            if (lod.due) {
+                lod.deltaTime = lod.pendingTime;
+                lod.pendingTime = 0;
+            }
+        }
+        tick++;
+    }
+
+    /**
+     * 指定したコンポーネントを持ち、このティックで更新すべきエンティティを取得
+     * SimulationLodを持たないエンティティは常に対象になる
+     */
+    @SafeVarargs
+    public final List<Entity> getDueEntities(Class<? extends Component>... componentClasses) {
+        List<Entity> due = new ArrayList<>();
+        for (Entity entity : entityManager.getEntitiesWith(componentClasses)) {
+            if (isDue(entity)) {
+                due.add(entity);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * エンティティがこのティックで更新すべきか
+     */
+    public static boolean isDue(Entity entity) {
+        SimulationLod lod = entity.getComponent(SimulationLod.class).orElse(null);
+        return lod == null || lod.due;
+    }
+
+    /**
+     * エンティティに渡すべき経過時間（LODで間引かれた分を含む）
+     * LodSystemが更新されたティックの値なので、LodSystemと同じ頻度で毎ティック更新されるシステムから使う
+     * 頻度の違うシステムでは MovementSystem のように自分の経過時間を溜めて、isDue のときに使う
+     */
+    public static float getDeltaTime(Entity entity, float deltaTime) {
+        SimulationLod lod = entity.getComponent(SimulationLod.class).orElse(null);
+        return lod == null ? deltaTime : lod.deltaTime;
+    }
+
+    private float nearestFocusDistanceSq(float x, float y) {
+        float best = Float.MAX_VALUE;
+        for (Entity focus : focusEntities) {
+            Transform t = focus.getComponent(Transform.class).orElse(null);
+            if (t != null) {
+                best = Math.min(best, distanceSq(x, y, t.x, t.y));
+            }
+        }
+        for (float[] point : focusPoints) {
+            best = Math.min(best, distanceSq(x, y, point[0], point[1]));
+        }
+        // 注目点がなければ間引かない
+        return best == Float.MAX_VALUE ? 0 : best;
+    }
+
+    private int bucketFor(float distanceSq) {
+        int bucket = 0;
+        while (bucket < bucketDistancesSq.length && distanceSq > bucketDistancesSq[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static float distanceSq(float x1, float y1, float x2, float y2) {
+        float dx = x1 - x2;
+        float dy = y1 - y2;
+        return dx * dx + dy * dy;
+    }
+}
@@ -1,5 +1,8 @@
 package heroengine.systems;
 
+import heroengine.components.Bullet;
+import heroengine.components.SimulationLod;
+import heroengine.components.SleepState;
 import heroengine.components.Transform;
 import heroengine.components.Velocity;
 import heroengine.ecs.Entity;
@@ -9,6 +12,11 @@ import java.util.List;
 
 /**
  * 移動システム VelocityコンポーネントをもとにTransformを更新
+ * SimulationLodを持つエンティティは、LodSystemが更新対象とした時だけ間引かれた時間分まとめて動かす
+ * 間引かれた時間はこのシステムが自分の経過時間から数えるため、LodSystemの更新頻度や順序によって移動量がずれることはない
+ * （LodSystemをこのシステムより後に追加すると、更新対象の判定が1ティック遅れる）
+ * スリープ中（SleepState）のエンティティは動かさない
+ * Bulletを持つエンティティは、CollisionSystemが掃引できるように移動前の位置を記録する
  */
 public class MovementSystem extends GameSystem {
 
@@ -20,8 +28,29 @@ public class MovementSystem extends GameSystem {
             Transform transform = entity.getComponent(Transform.class).get();
             Velocity velocity = entity.getComponent(Velocity.class).get();
 
-            transform.x += velocity.vx * deltaTime;
-            transform.y += velocity.vy * deltaTime;
+            SleepState sleep = entity.getComponent(SleepState.class).orElse(null);
+            if (sleep != null && sleep.asleep) {
+                continue;
+            }
+
+            float dt = deltaTime;
+            SimulationLod lod = entity.getComponent(SimulationLod.class).orElse(null);
+            if (lod != null) {
+                lod.movementTime += deltaTime;
+                if (!lod.due) {
+                    continue;
+                }
+                dt = lod.movementTime;
+                lod.movementTime = 0;
+            }
+
+            Bullet bullet = entity.getComponent(Bullet.class).orElse(null);
+            if (bullet != null) {
+                bullet.recordStart(transform.x, transform.y);
+            }
+
+            transform.x += velocity.vx * dt;
+            transform.y += velocity.vy * dt;
         }
     }
 }
@@ -0,0 +1,950 @@
+package heroengine.systems;
+
+import heroengine.components.Camera;
+import heroengine.components.ImageSprite;
+import heroengine.components.Sprite;
+import heroengine.components.Text;
+import heroengine.components.Transform;
+import heroengine.ecs.Entity;
+import heroengine.ecs.EntityListener;
+import heroengine.ecs.EntityManager;
+import heroengine.physics.DynamicAabbTree;
+import heroengine.physics.QueryCallback;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 描画リスト 描画対象とそのコンポーネントをフレーム間で保持し、zOrder順に並べておく
+ * EntityManagerのリスナーで構成の変化を受け取り、変わったエンティティの描画対象だけを追加・削除する
+ * zOrderや構成が変わったときだけ並べ直す（基数ソートで安定、同じzOrderなら種類 → エンティティの順）
+ * 描画範囲はAABBツリーに入れておき、画面に映る範囲と重なるものだけを取り出す
+ * 変化のないフレームではメモリを確保しない
+ * 変化の記録を有効にすると、描画範囲や見た目が変わった描画対象の変化前後の範囲をまとめて記録する（部分再描画用）
+ * レイヤー（zOrderの範囲）を登録すると、範囲内の描画対象が変わったレイヤーを記録する（キャッシュしたレイヤーの描き直し用）
+ */
+class RenderList {
+
+    static final int SPRITE = 0;
+    static final int IMAGE_SPRITE = 1;
+
+    // 描画範囲のツリーの余白（この範囲内の移動では入れ直さない）
+    private static final float BOUNDS_MARGIN = 16f;
+
+    // 変化した範囲で、この距離より近い矩形はまとめる（ワールド座標）
+    private static final float DIRTY_MERGE_DISTANCE = 16f;
+
+    // カメラ1つ分の記録する値の数（x, y, zoom, ビューポート）
+    private static final int CAMERA_STATE_SIZE = 7;
+
+    // 構成の変化を受け取るマネージャー（最初の update() で登録し、全体を集める）
+    private EntityManager entityManager;
+    private final Listener listener = new Listener();
+
+    // 描画対象（番号は追加・削除で入れ替わる、削除すると最後の描画対象がその番号に移る）
+    private int count;
+    private Entity[] entities = new Entity[64];
+    private final Map<Entity, Integer> spriteSlots = new IdentityHashMap<>();
+    private final Map<Entity, Integer> imageSlots = new IdentityHashMap<>();
+    private int[] types = new int[64];
+    private Transform[] transforms = new Transform[64];
+    private Sprite[] sprites = new Sprite[64];
+    private ImageSprite[] imageSprites = new ImageSprite[64];
+    private int[] zOrders = new int[64];
+
+    // 種類 → エンティティの順の並び（追加・削除のときに挿入・削除して保つ、同じzOrderの中での順番）
+    private int[] baseOrder = new int[64];
+    private boolean resort;
+
+    // zOrder順の並び（rankは番号 → 並びの位置）
+    private int[] order = new int[64];
+    private int[] ranks = new int[64];
+    private int[] scratch = new int[64];
+    private final int[] buckets = new int[256];
+
+    // 描画範囲（ワールド座標のAABB）と、それを計算したときのトランスフォームと大きさ
+    private DynamicAabbTree tree = new DynamicAabbTree(BOUNDS_MARGIN);
+    private int[] proxies = new int[64];
+    private float[] minX = new float[64];
+    private float[] minY = new float[64];
+    private float[] maxX = new float[64];
+    private float[] maxY = new float[64];
+    private float[] lastX = new float[64];
+    private float[] lastY = new float[64];
+    private float[] lastRotation = new float[64];
+    private float[] lastScaleX = new float[64];
+    private float[] lastScaleY = new float[64];
+    private int[] lastWidth = new int[64];
+    private int[] lastHeight = new int[64];
+
+    // 画面に映る描画対象（描画順）
+    private int visibleCount;
+    private int[] visible = new int[64];
+    private final VisibleCollector visibleCollector = new VisibleCollector();
+
+    // バッチのキー（同じzOrderの中で、同じ画像・同じ透明度の描画をまとめる）
+    // 画像の番号はまとめるための区別にしか使わないので、使われなくなった画像が溜まったら振り直す
+    private int[] batchKeys = new int[64];
+    private final Map<BufferedImage, Integer> imageIds = new IdentityHashMap<>();
+
+    // テキスト（エンティティの順）
+    private int textCount;
+    private Entity[] textEntities = new Entity[16];
+    private Transform[] textTransforms = new Transform[16];
+    private Text[] texts = new Text[16];
+    private TextCache[] textCaches = new TextCache[16];
+
+    // カメラ（エンティティの順）
+    private int cameraCount;
+    private Entity[] cameraEntities = new Entity[4];
+    private Camera[] cameras = new Camera[4];
+
+    // 変化の記録（部分再描画用）
+    private boolean trackChanges;
+    private Object[] lastPaints = new Object[64]; // 色または画像
+    private Object[] lastRegions = new Object[64];
+    private float[] lastAlphas = new float[64];
+    private boolean[] lastVisibles = new boolean[64];
+    private float[] cameraStates = new float[4 * CAMERA_STATE_SIZE];
+    private boolean allDirty = true;
+    private final DirtyRegion dirtyRegion = new DirtyRegion(DIRTY_MERGE_DISTANCE);
+
+    // レイヤー（zOrderの範囲が重ならないように登録する）
+    private int layerCount;
+    private int[] layerMinZ = new int[4];
+    private int[] layerMaxZ = new int[4];
+    private boolean[] layerDirty = new boolean[4];
+
+    /**
+     * 構成の変化、zOrderの変化、描画範囲の変化を反映
+     */
+    void update(EntityManager entityManager) {
+        if (entityManager != this.entityManager) {
+            attach(entityManager);
+        }
+
+        for (int i = 0; i < count; i++) {
+            int z;
+            int width;
+            int height;
+            if (types[i] == SPRITE) {
+                Sprite sprite = sprites[i];
+                z = sprite.zOrder;
+                width = sprite.width;
+                height = sprite.height;
+            } else {
+                ImageSprite imageSprite = imageSprites[i];
+                z = imageSprite.zOrder;
+                width = imageSprite.width;
+                height = imageSprite.height;
+            }
+            if (z != zOrders[i]) {
+                markDirty(i); // 変化前のzOrderのレイヤー
+                zOrders[i] = z;
+                resort = true;
+                markDirty(i);
+            }
+            Transform transform = transforms[i];
+            if (transform.x != lastX[i] || transform.y != lastY[i] || transform.rotation != lastRotation[i]
+                    || transform.scaleX != lastScaleX[i] || transform.scaleY != lastScaleY[i]
+                    || width != lastWidth[i] || height != lastHeight[i]) {
+                markDirty(i); // 変化前の範囲
+                updateBounds(i, transform, width, height);
+                tree.moveProxy(proxies[i], minX[i], minY[i], maxX[i], maxY[i]);
+                markDirty(i); // 変化後の範囲
+            }
+            if (tracking() && updateAppearance(i)) {
+                markDirty(i);
+            }
+        }
+        if (resort) {
+            resort = false;
+            sort();
+        }
+        if (tracking()) {
+            updateCameraStates();
+        }
+    }
+
+    /**
+     * マネージャーのリスナーの登録を解除し、描画対象を空にする（RenderSystemを使い終わったときに呼ぶ）
+     */
+    void detach() {
+        attach(null);
+    }
+
+    /**
+     * 見た目とカメラの変化を調べるか（部分再描画またはレイヤーのため）
+     */
+    private boolean tracking() {
+        return trackChanges || layerCount > 0;
+    }
+
+    /**
+     * 変化の記録を有効にする（有効にした直後は全体が変化したものとする）
+     */
+    void setTrackChanges(boolean trackChanges) {
+        if (trackChanges && !tracking()) {
+            snapshot();
+        }
+        if (trackChanges && !this.trackChanges) {
+            markAllDirty();
+        }
+        this.trackChanges = trackChanges;
+    }
+
+    /**
+     * レイヤーを登録（登録した直後は変化したものとする）
+     *
+     * @return レイヤーの番号
+     * @throws IllegalArgumentException 範囲が逆の場合、または登録済みのレイヤーと範囲が重なる場合
+     */
+    int addLayer(int minZOrder, int maxZOrder) {
+        if (minZOrder > maxZOrder) {
+            throw new IllegalArgumentException("minZOrder > maxZOrder: " + minZOrder + " > " + maxZOrder);
+        }
+        for (int l = 0; l < layerCount; l++) {
+            if (minZOrder <= layerMaxZ[l] && maxZOrder >= layerMinZ[l]) {
+                throw new IllegalArgumentException("layer [" + minZOrder + ", " + maxZOrder
+                        + "] overlaps [" + layerMinZ[l] + ", " + layerMaxZ[l] + "]");
+            }
+        }
+        if (!tracking()) {
+            snapshot();
+        }
+        if (layerCount == layerMinZ.length) {
+            layerMinZ = Arrays.copyOf(layerMinZ, layerCount * 2);
+            layerMaxZ = Arrays.copyOf(layerMaxZ, layerCount * 2);
+            layerDirty = Arrays.copyOf(layerDirty, layerCount * 2);
+        }
+        int l = layerCount++;
+        layerMinZ[l] = minZOrder;
+        layerMaxZ[l] = maxZOrder;
+        layerDirty[l] = true;
+        return l;
+    }
+
+    /**
+     * レイヤーの登録を解除（後ろのレイヤーの番号は1つずつ詰まる）
+     */
+    void removeLayer(int l) {
+        int moved = layerCount - l - 1;
+        System.arraycopy(layerMinZ, l + 1, layerMinZ, l, moved);
+        System.arraycopy(layerMaxZ, l + 1, layerMaxZ, l, moved);
+        System.arraycopy(layerDirty, l + 1, layerDirty, l, moved);
+        layerCount--;
+    }
+
+    int layerCount() {
+        return layerCount;
+    }
+
+    int layerMinZ(int l) {
+        return layerMinZ[l];
+    }
+
+    int layerMaxZ(int l) {
+        return layerMaxZ[l];
+    }
+
+    /**
+     * zOrderを含むレイヤーの番号（なければ-1）
+     */
+    int layerAt(int zOrder) {
+        for (int l = 0; l < layerCount; l++) {
+            if (zOrder >= layerMinZ[l] && zOrder <= layerMaxZ[l]) {
+                return l;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 前回の clearLayerDirty() 以降に、レイヤー内の描画対象が変化したか
+     */
+    boolean isLayerDirty(int l) {
+        return layerDirty[l];
+    }
+
+    void markLayerDirty(int l) {
+        layerDirty[l] = true;
+    }
+
+    void clearLayerDirty(int l) {
+        layerDirty[l] = false;
+    }
+
+    /**
+     * 今の見た目とカメラを記録（記録を始めるときに呼ぶ）
+     */
+    private void snapshot() {
+        for (int i = 0; i < count; i++) {
+            updateAppearance(i);
+        }
+        updateCameraStates();
+    }
+
+    /**
+     * 次の記録の確認で、全体が変化したものとする
+     */
+    void markAllDirty() {
+        allDirty = true;
+        Arrays.fill(layerDirty, 0, layerCount, true);
+    }
+
+    /**
+     * 前回の clearDirty() 以降に、全体が変化したか（構成・カメラの変化など）
+     */
+    boolean isAllDirty() {
+        return allDirty;
+    }
+
+    /**
+     * 前回の clearDirty() 以降に、変化した範囲があるか
+     */
+    boolean hasDirty() {
+        return allDirty || !dirtyRegion.isEmpty();
+    }
+
+    /**
+     * 変化した範囲（ワールド座標、離れた変化は別の矩形のまま）
+     */
+    DirtyRegion dirtyRegion() {
+        return dirtyRegion;
+    }
+
+    /**
+     * 変化の記録を空にする（描画し終えたときに呼ぶ）
+     */
+    void clearDirty() {
+        allDirty = false;
+        dirtyRegion.clear();
+    }
+
+    /**
+     * 描画対象の今の描画範囲を変化した範囲に加え、今のzOrderを含むレイヤーを変化したものとする
+     */
+    private void markDirty(int i) {
+        if (layerCount > 0) {
+            int l = layerAt(zOrders[i]);
+            if (l >= 0) {
+                layerDirty[l] = true;
+            }
+        }
+        if (!trackChanges) {
+            return;
+        }
+        dirtyRegion.add(minX[i], minY[i], maxX[i], maxY[i]);
+    }
+
+    /**
+     * 見た目（表示・色・画像・透明度）の記録を更新
+     *
+     * @return 前回の記録から変わった場合はtrue
+     */
+    private boolean updateAppearance(int i) {
+        boolean visible;
+        Object paint;
+        Object region = null;
+        float alpha = 1.0f;
+        if (types[i] == SPRITE) {
+            Sprite sprite = sprites[i];
+            visible = sprite.visible;
+            paint = sprite.color;
+        } else {
+            ImageSprite imageSprite = imageSprites[i];
+            visible = imageSprite.visible;
+            paint = imageSprite.image;
+            region = imageSprite.region;
+            alpha = imageSprite.alpha;
+        }
+        if (visible == lastVisibles[i] && paint == lastPaints[i] && region == lastRegions[i]
+                && alpha == lastAlphas[i]) {
+            return false;
+        }
+        lastVisibles[i] = visible;
+        lastPaints[i] = paint;
+        lastRegions[i] = region;
+        lastAlphas[i] = alpha;
+        return true;
+    }
+
+    /**
+     * カメラの記録を更新し、変わっていれば全体が変化したものとする
+     */
+    private void updateCameraStates() {
+        if (cameraStates.length < cameraCount * CAMERA_STATE_SIZE) {
+            cameraStates = new float[cameraCount * CAMERA_STATE_SIZE];
+        }
+        boolean changed = false;
+        for (int c = 0; c < cameraCount; c++) {
+            Camera camera = cameras[c];
+            int base = c * CAMERA_STATE_SIZE;
+            changed |= setState(base, camera.x) | setState(base + 1, camera.y) | setState(base + 2, camera.zoom)
+                    | setState(base + 3, camera.viewportX) | setState(base + 4, camera.viewportY)
+                    | setState(base + 5, camera.viewportWidth) | setState(base + 6, camera.viewportHeight);
+        }
+        if (changed) {
+            markAllDirty();
+        }
+    }
+
+    private boolean setState(int index, float value) {
+        if (cameraStates[index] == value) {
+            return false;
+        }
+        cameraStates[index] = value;
+        return true;
+    }
+
+    /**
+     * 登録するマネージャーを替え、今のエンティティから描画対象を集め直す
+     */
+    private void attach(EntityManager entityManager) {
+        if (this.entityManager != null) {
+            this.entityManager.removeEntityListener(listener);
+        }
+        Arrays.fill(entities, 0, count, null);
+        Arrays.fill(transforms, 0, count, null);
+        Arrays.fill(sprites, 0, count, null);
+        Arrays.fill(imageSprites, 0, count, null);
+        Arrays.fill(lastPaints, 0, count, null);
+        Arrays.fill(lastRegions, 0, count, null);
+        Arrays.fill(textEntities, 0, textCount, null);
+        Arrays.fill(textTransforms, 0, textCount, null);
+        Arrays.fill(texts, 0, textCount, null);
+        Arrays.fill(textCaches, 0, textCount, null);
+        Arrays.fill(cameraEntities, 0, cameraCount, null);
+        Arrays.fill(cameras, 0, cameraCount, null);
+        count = 0;
+        textCount = 0;
+        cameraCount = 0;
+        spriteSlots.clear();
+        imageSlots.clear();
+        tree = new DynamicAabbTree(BOUNDS_MARGIN);
+        imageIds.clear();
+        markAllDirty();
+        resort = true;
+
+        this.entityManager = entityManager;
+        if (entityManager == null) {
+            return;
+        }
+        entityManager.addEntityListener(listener, Set.of(Transform.class, Sprite.class, ImageSprite.class, Text.class,
+                Camera.class));
+        for (Entity entity : entityManager.getEntities()) {
+            reconcile(entity, true);
+        }
+    }
+
+    /**
+     * エンティティの今のコンポーネントに合わせて、描画対象・テキスト・カメラを追加・削除する
+     *
+     * @param present エンティティがマネージャーに含まれていて有効か
+     */
+    private void reconcile(Entity entity, boolean present) {
+        Transform transform = present ? entity.getComponent(Transform.class).orElse(null) : null;
+        Sprite sprite = transform != null ? entity.getComponent(Sprite.class).orElse(null) : null;
+        ImageSprite imageSprite = transform != null ? entity.getComponent(ImageSprite.class).orElse(null) : null;
+        Text text = transform != null ? entity.getComponent(Text.class).orElse(null) : null;
+        Camera camera = present ? entity.getComponent(Camera.class).orElse(null) : null;
+
+        Integer slot = spriteSlots.get(entity);
+        if (slot == null || sprites[slot] != sprite || transforms[slot] != transform) {
+            if (slot != null) {
+                removeSlot(slot);
+            }
+            if (sprite != null) {
+                addSlot(entity, SPRITE, transform, sprite, null, sprite.zOrder, sprite.width, sprite.height);
+            }
+        }
+        slot = imageSlots.get(entity);
+        if (slot == null || imageSprites[slot] != imageSprite || transforms[slot] != transform) {
+            if (slot != null) {
+                removeSlot(slot);
+            }
+            if (imageSprite != null) {
+                addSlot(entity, IMAGE_SPRITE, transform, null, imageSprite,
+                        imageSprite.zOrder, imageSprite.width, imageSprite.height);
+            }
+        }
+        reconcileText(entity, transform, text);
+        reconcileCamera(entity, camera);
+    }
+
+    private void addSlot(Entity entity, int type, Transform transform, Sprite sprite, ImageSprite imageSprite,
+                         int zOrder, int width, int height) {
+        ensureCapacity(count + 1);
+        int i = count;
+        entities[i] = entity;
+        types[i] = type;
+        transforms[i] = transform;
+        sprites[i] = sprite;
+        imageSprites[i] = imageSprite;
+        zOrders[i] = zOrder;
+        updateBounds(i, transform, width, height);
+        proxies[i] = tree.createProxy(minX[i], minY[i], maxX[i], maxY[i], i);
+        lastPaints[i] = null;
+        lastRegions[i] = null;
+        lastVisibles[i] = false;
+        if (tracking()) {
+            updateAppearance(i);
+        }
+
+        int position = basePosition(i, count);
+        System.arraycopy(baseOrder, position, baseOrder, position + 1, count - position);
+        baseOrder[position] = i;
+        count++;
+        (type == SPRITE ? spriteSlots : imageSlots).put(entity, i);
+        markDirty(i);
+        resort = true;
+    }
+
+    /**
+     * 描画対象を削除し、最後の描画対象をその番号に移す
+     */
+    private void removeSlot(int i) {
+        markDirty(i);
+        tree.destroyProxy(proxies[i]);
+        (types[i] == SPRITE ? spriteSlots : imageSlots).remove(entities[i]);
+        int position = basePosition(i, count);
+        System.arraycopy(baseOrder, position + 1, baseOrder, position, count - position - 1);
+
+        int last = count - 1;
+        if (i != last) {
+            baseOrder[basePosition(last, last)] = i;
+            entities[i] = entities[last];
+            types[i] = types[last];
+            transforms[i] = transforms[last];
+            sprites[i] = sprites[last];
+            imageSprites[i] = imageSprites[last];
+            zOrders[i] = zOrders[last];
+            proxies[i] = proxies[last];
+            minX[i] = minX[last];
+            minY[i] = minY[last];
+            maxX[i] = maxX[last];
+            maxY[i] = maxY[last];
+            lastX[i] = lastX[last];
+            lastY[i] = lastY[last];
+            lastRotation[i] = lastRotation[last];
+            lastScaleX[i] = lastScaleX[last];
+            lastScaleY[i] = lastScaleY[last];
+            lastWidth[i] = lastWidth[last];
+            lastHeight[i] = lastHeight[last];
+            lastPaints[i] = lastPaints[last];
+            lastRegions[i] = lastRegions[last];
+            lastAlphas[i] = lastAlphas[last];
+            lastVisibles[i] = lastVisibles[last];
+            tree.setUserData(proxies[i], i);
+            (types[i] == SPRITE ? spriteSlots : imageSlots).put(entities[i], i);
+        }
+        entities[last] = null;
+        transforms[last] = null;
+        sprites[last] = null;
+        imageSprites[last] = null;
+        lastPaints[last] = null;
+        lastRegions[last] = null;
+        count = last;
+        resort = true;
+    }
+
+    /**
+     * baseOrder[0, n) のうち、描画対象iより前に並ぶものの数（種類 → エンティティのIDの順）
+     */
+    private int basePosition(int i, int n) {
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int j = baseOrder[mid];
+            boolean before = types[j] != types[i] ? types[j] < types[i]
+                    : entities[j].getId() < entities[i].getId();
+            if (before) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void reconcileText(Entity entity, Transform transform, Text text) {
+        int t = search(textEntities, textCount, entity);
+        boolean found = t < textCount && textEntities[t] == entity;
+        if (found ? texts[t] == text && textTransforms[t] == transform : text == null) {
+            return;
+        }
+        TextCache cache = found && texts[t] == text ? textCaches[t] : new TextCache();
+        if (found) {
+            int moved = textCount - t - 1;
+            System.arraycopy(textEntities, t + 1, textEntities, t, moved);
+            System.arraycopy(textTransforms, t + 1, textTransforms, t, moved);
+            System.arraycopy(texts, t + 1, texts, t, moved);
+            System.arraycopy(textCaches, t + 1, textCaches, t, moved);
+            textCount--;
+            textEntities[textCount] = null;
+            textTransforms[textCount] = null;
+            texts[textCount] = null;
+            textCaches[textCount] = null;
+        }
+        if (text != null) {
+            if (textCount == texts.length) {
+                int capacity = textCount * 2;
+                textEntities = Arrays.copyOf(textEntities, capacity);
+                textTransforms = Arrays.copyOf(textTransforms, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+                textCaches = Arrays.copyOf(textCaches, capacity);
+            }
+            int moved = textCount - t;
+            System.arraycopy(textEntities, t, textEntities, t + 1, moved);
+            System.arraycopy(textTransforms, t, textTransforms, t + 1, moved);
+            System.arraycopy(texts, t, texts, t + 1, moved);
+            System.arraycopy(textCaches, t, textCaches, t + 1, moved);
+            textEntities[t] = entity;
+            textTransforms[t] = transform;
+            texts[t] = text;
+            textCaches[t] = cache;
+            textCount++;
+        }
+        // テキストの範囲は描画時に求めるので、追加・削除は全体の変化にする
+        markAllDirty();
+    }
+
+    private void reconcileCamera(Entity entity, Camera camera) {
+        int c = search(cameraEntities, cameraCount, entity);
+        boolean found = c < cameraCount && cameraEntities[c] == entity;
+        if (found ? cameras[c] == camera : camera == null) {
+            return;
+        }
+        if (found) {
+            System.arraycopy(cameraEntities, c + 1, cameraEntities, c, cameraCount - c - 1);
+            System.arraycopy(cameras, c + 1, cameras, c, cameraCount - c - 1);
+            cameraCount--;
+            cameraEntities[cameraCount] = null;
+            cameras[cameraCount] = null;
+        }
+        if (camera != null) {
+            if (cameraCount == cameras.length) {
+                cameraEntities = Arrays.copyOf(cameraEntities, cameraCount * 2);
+                cameras = Arrays.copyOf(cameras, cameraCount * 2);
+            }
+            System.arraycopy(cameraEntities, c, cameraEntities, c + 1, cameraCount - c);
+            System.arraycopy(cameras, c, cameras, c + 1, cameraCount - c);
+            cameraEntities[c] = entity;
+            cameras[c] = camera;
+            cameraCount++;
+        }
+        // カメラの記録は番号順なので、追加・削除は全体の変化にして記録し直す
+        if (tracking()) {
+            updateCameraStates();
+        }
+        markAllDirty();
+    }
+
+    /**
+     * エンティティのIDの順に並んだ配列の [0, n) で、entity以降が始まる位置
+     */
+    private static int search(Entity[] sorted, int n, Entity entity) {
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].getId() < entity.getId()) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 中心を基準に、拡大縮小してから回転した矩形を囲むAABBを計算
+     */
+    private void updateBounds(int i, Transform transform, int width, int height) {
+        lastX[i] = transform.x;
+        lastY[i] = transform.y;
+        lastRotation[i] = transform.rotation;
+        lastScaleX[i] = transform.scaleX;
+        lastScaleY[i] = transform.scaleY;
+        lastWidth[i] = width;
+        lastHeight[i] = height;
+
+        float halfWidth = Math.abs(width * transform.scaleX) * 0.5f;
+        float halfHeight = Math.abs(height * transform.scaleY) * 0.5f;
+        float extentX = halfWidth;
+        float extentY = halfHeight;
+        if (transform.rotation != 0) {
+            float cos = Math.abs((float) Math.cos(transform.rotation));
+            float sin = Math.abs((float) Math.sin(transform.rotation));
+            extentX = cos * halfWidth + sin * halfHeight;
+            extentY = sin * halfWidth + cos * halfHeight;
+        }
+        minX[i] = transform.x - extentX;
+        minY[i] = transform.y - extentY;
+        maxX[i] = transform.x + extentX;
+        maxY[i] = transform.y + extentY;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (types.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, types.length * 2);
+        entities = Arrays.copyOf(entities, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        transforms = Arrays.copyOf(transforms, newCapacity);
+        sprites = Arrays.copyOf(sprites, newCapacity);
+        imageSprites = Arrays.copyOf(imageSprites, newCapacity);
+        zOrders = Arrays.copyOf(zOrders, newCapacity);
+        baseOrder = Arrays.copyOf(baseOrder, newCapacity);
+        order = Arrays.copyOf(order, newCapacity);
+        ranks = Arrays.copyOf(ranks, newCapacity);
+        scratch = new int[newCapacity];
+        proxies = Arrays.copyOf(proxies, newCapacity);
+        minX = Arrays.copyOf(minX, newCapacity);
+        minY = Arrays.copyOf(minY, newCapacity);
+        maxX = Arrays.copyOf(maxX, newCapacity);
+        maxY = Arrays.copyOf(maxY, newCapacity);
+        lastX = Arrays.copyOf(lastX, newCapacity);
+        lastY = Arrays.copyOf(lastY, newCapacity);
+        lastRotation = Arrays.copyOf(lastRotation, newCapacity);
+        lastScaleX = Arrays.copyOf(lastScaleX, newCapacity);
+        lastScaleY = Arrays.copyOf(lastScaleY, newCapacity);
+        lastWidth = Arrays.copyOf(lastWidth, newCapacity);
+        lastHeight = Arrays.copyOf(lastHeight, newCapacity);
+        visible = new int[newCapacity];
+        batchKeys = new int[newCapacity];
+        lastPaints = Arrays.copyOf(lastPaints, newCapacity);
+        lastRegions = Arrays.copyOf(lastRegions, newCapacity);
+        lastAlphas = Arrays.copyOf(lastAlphas, newCapacity);
+        lastVisibles = Arrays.copyOf(lastVisibles, newCapacity);
+    }
+
+    /**
+     * zOrderの小さい順に並べる（同じzOrderなら種類 → エンティティの順）
+     */
+    private void sort() {
+        System.arraycopy(baseOrder, 0, order, 0, count);
+        radixSort(order, count, zOrders);
+        for (int k = 0; k < count; k++) {
+            ranks[order[k]] = k;
+        }
+    }
+
+    /**
+     * 範囲と重なる描画対象を描画順に集める
+     *
+     * @return 集めた数（at(k) で取り出す）
+     */
+    int collectVisible(float minX, float minY, float maxX, float maxY) {
+        return collectVisible(minX, minY, maxX, maxY, false);
+    }
+
+    /**
+     * 範囲と重なる描画対象を描画順に集める
+     *
+     * @param batch trueなら同じzOrderの中で、同じ画像（アトラスのページ）・同じ透明度のものが続くように並べ替える
+     * @return 集めた数（at(k) で取り出す）
+     */
+    int collectVisible(float minX, float minY, float maxX, float maxY, boolean batch) {
+        visibleCount = 0;
+        if (count == 0) {
+            return 0;
+        }
+        visibleCollector.set(minX, minY, maxX, maxY);
+        tree.query(minX, minY, maxX, maxY, visibleCollector);
+
+        // 並びの位置を描画順に並べ直して番号に戻す
+        radixSort(visible, visibleCount, null);
+        for (int k = 0; k < visibleCount; k++) {
+            visible[k] = order[visible[k]];
+        }
+
+        if (batch && visibleCount > 1) {
+            // 描画対象の数より多くの画像に番号が振られていたら、今回の画像だけで振り直す
+            if (imageIds.size() > count * 2 + 64) {
+                imageIds.clear();
+            }
+            // バッチのキー順に並べてから、zOrder順に並べ直す（どちらも安定なので、zOrder → キー → 元の順になる）
+            for (int k = 0; k < visibleCount; k++) {
+                int i = visible[k];
+                batchKeys[i] = batchKey(i);
+            }
+            radixSort(visible, visibleCount, batchKeys);
+            radixSort(visible, visibleCount, zOrders);
+        }
+        return visibleCount;
+    }
+
+    /**
+     * 描画状態のキー（画像の番号と透明度、色付きの矩形は0）
+     */
+    private int batchKey(int i) {
+        if (types[i] == SPRITE) {
+            return 0;
+        }
+        ImageSprite imageSprite = imageSprites[i];
+        Integer id = imageIds.get(imageSprite.image);
+        if (id == null) {
+            id = imageIds.size() + 1;
+            imageIds.put(imageSprite.image, id);
+        }
+        int alpha = Math.round(Math.max(0f, Math.min(1f, imageSprite.alpha)) * 255);
+        return (id << 8) | alpha;
+    }
+
+    /**
+     * バッチのキーのために番号を振っている画像の数
+     */
+    int imageIdCount() {
+        return imageIds.size();
+    }
+
+    /**
+     * 符号ビットを反転したキーを下位から8ビットずつ計数ソートする（安定、全員の桁が同じ回は飛ばす）
+     *
+     * @param keys 要素ごとのキー（nullなら要素の値そのものをキーにする）
+     */
+    private void radixSort(int[] values, int n, int[] keys) {
+        int[] from = values;
+        int[] to = scratch;
+        for (int shift = 0; shift < 32; shift += 8) {
+            Arrays.fill(buckets, 0);
+            for (int k = 0; k < n; k++) {
+                buckets[digit(from[k], keys, shift)]++;
+            }
+            if (n == 0 || buckets[digit(from[0], keys, shift)] == n) {
+                continue;
+            }
+            int sum = 0;
+            for (int d = 0; d < buckets.length; d++) {
+                int c = buckets[d];
+                buckets[d] = sum;
+                sum += c;
+            }
+            for (int k = 0; k < n; k++) {
+                int v = from[k];
+                to[buckets[digit(v, keys, shift)]++] = v;
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != values) {
+            System.arraycopy(from, 0, values, 0, n);
+        }
+    }
+
+    private static int digit(int value, int[] keys, int shift) {
+        int key = keys == null ? value : keys[value];
+        return ((key ^ Integer.MIN_VALUE) >>> shift) & 0xFF;
+    }
+
+    /**
+     * 描画対象の数（非表示のものを含む）
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * collectVisible で集めたうちk番目に描画する対象の番号
+     */
+    int at(int k) {
+        return visible[k];
+    }
+
+    int type(int i) {
+        return types[i];
+    }
+
+    int zOrder(int i) {
+        return zOrders[i];
+    }
+
+    Transform transform(int i) {
+        return transforms[i];
+    }
+
+    Sprite sprite(int i) {
+        return sprites[i];
+    }
+
+    ImageSprite imageSprite(int i) {
+        return imageSprites[i];
+    }
+
+    int textCount() {
+        return textCount;
+    }
+
+    Transform textTransform(int t) {
+        return textTransforms[t];
+    }
+
+    Text text(int t) {
+        return texts[t];
+    }
+
+    TextCache textCache(int t) {
+        return textCaches[t];
+    }
+
+    int cameraCount() {
+        return cameraCount;
+    }
+
+    Camera camera(int c) {
+        return cameras[c];
+    }
+
+    /**
+     * マネージャーからの構成の変化を、変わったエンティティの分だけ反映する
+     * 通知は構成を変えたスレッド（通常はゲームスレッドの更新中）で来て、描画リストの配列やツリーを書き換える
+     * GameEngine は更新中と描画中（パッシブレンダリングの paintComponent、アクティブレンダリングの描画スレッド）に
+     * 同じロックを保持するため、描画の途中で書き換わることはない
+     */
+    private class Listener implements EntityListener {
+
+        @Override
+        public void onEntityChanged(Entity entity) {
+            reconcile(entity, entity.isActive());
+        }
+
+        @Override
+        public void onEntityRemoved(Entity entity) {
+            reconcile(entity, false);
+        }
+    }
+
+    /**
+     * ツリーの検索結果のうち、実際の描画範囲が重なるものの並びの位置を集める
+     */
+    private class VisibleCollector implements QueryCallback {
+
+        private float qMinX;
+        private float qMinY;
+        private float qMaxX;
+        private float qMaxY;
+
+        void set(float minX, float minY, float maxX, float maxY) {
+            this.qMinX = minX;
+            this.qMinY = minY;
+            this.qMaxX = maxX;
+            this.qMaxY = maxY;
+        }
+
+        @Override
+        public boolean report(int proxyId) {
+            int i = tree.getUserData(proxyId);
+            if (maxX[i] >= qMinX && minX[i] <= qMaxX && maxY[i] >= qMinY && minY[i] <= qMaxY) {
+                visible[visibleCount++] = ranks[i];
+            }
+            return true;
+        }
+    }
+}
@@ -1,161 +1,798 @@
 package heroengine.systems;
 
+import heroengine.components.Camera;
 import heroengine.components.ImageSprite;
 import heroengine.components.Sprite;
 import heroengine.components.Text;
 import heroengine.components.Transform;
-import heroengine.ecs.Entity;
 import heroengine.ecs.GameSystem;
+import heroengine.graphics.AtlasRegion;
+import heroengine.graphics.ImageCache;
+import heroengine.profiling.RenderEvent;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 /**
  * レンダリングシステム Swingを使用してエンティティを描画
+ * Cameraがあればカメラごとにビューポートへ描画し、映る範囲と重なるスプライトだけを描画する
+ * テキストはカメラに関係なく画面座標で描画する
+ * 部分再描画を有効にすると、前回の描画結果を保持するバッファに変化した範囲だけを描き直して転送する
+ * キャッシュしたレイヤー（zOrderの範囲）は画像に描いておき、範囲内の描画対象が変わったときだけ描き直す
  */
 public class RenderSystem extends GameSystem {
 
+    // 描き直す範囲で、この距離より近い矩形はまとめる（画面座標）
+    private static final float DIRTY_MERGE_DISTANCE = 16f;
+
     private JPanel renderPanel;
+    private Runnable frameRequester;
+    private final RenderList renderList = new RenderList();
+    private final AffineTransform localTransform = new AffineTransform();
+    private final AffineTransform viewTransform = new AffineTransform();
+    private final Rectangle renderArea = new Rectangle();
+    private AlphaComposite cachedComposite;
+    private boolean batching;
+    private ImageCache imageCache = new ImageCache();
+    private final Rectangle viewport = new Rectangle();
+    private int spriteCount;
+    private int textCount;
+
+    // 部分再描画
+    private boolean dirtyRectangles;
+    private float fullRedrawThreshold = 0.5f;
+    private BufferedImage backBuffer;
+    private Graphics2D backGraphics;
+    private final DirtyRegion dirtyRegion = new DirtyRegion(DIRTY_MERGE_DISTANCE);
+    private final Rectangle dirtyRect = new Rectangle();
+
+    // キャッシュしたレイヤー（[ビュー][レイヤー]、ビューはカメラの番号（カメラがなければ0）、レイヤーはRenderListと同じ番号）
+    private int layerCapacity = 4;
+    private BufferedImage[][] layerImages = new BufferedImage[1][layerCapacity];
+    private Graphics2D[][] layerGraphics = new Graphics2D[1][layerCapacity];
+    private boolean[] layerBlitted = new boolean[layerCapacity];
+    private int layerPass = -1; // レイヤーを描き直している間はその番号
+    private int viewPass; // 描画中のビューの番号
+    private final Rectangle viewArea = new Rectangle(); // 描画中のビューが描く範囲（画面座標、レイヤーの画像はこの範囲だけ転送する）
+    private AffineTransform screenTransform; // スプライトを描画する前の変換（レイヤーの画像はこの変換で転送する）
+    private int cachedCount;
+    private int layersRedrawn;
 
     public RenderSystem(JPanel renderPanel) {
         this.renderPanel = renderPanel;
     }
 
+    /**
+     * 描画の要求方法を変更（nullならパネルのrepaint、アクティブレンダリングではGameEngineが設定する）
+     */
+    public void setFrameRequester(Runnable frameRequester) {
+        this.frameRequester = frameRequester;
+    }
+
+    /**
+     * 同じzOrderの中で、同じ画像（アトラスのページ）・同じ透明度の描画をまとめるか（デフォルトはfalse）
+     * 有効な場合、同じzOrderの間の描画順は追加した順とは限らない（重なるスプライトの前後が変わりうる）
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * 拡大縮小済みの画像のキャッシュ（メモリの上限の変更などに使う）
+     */
+    public ImageCache getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * 拡大縮小済みの画像のキャッシュを変更（複数のRenderSystemで共有する場合など）
+     */
+    public void setImageCache(ImageCache imageCache) {
+        this.imageCache = imageCache;
+    }
+
+    /**
+     * 部分再描画を有効にするか（デフォルトはfalse）
+     * 有効な場合、描画結果を保持するバッファに、位置・大きさ・見た目（表示、色、画像、透明度、zOrder）が変わった
+     * 描画対象の変化前と変化後の範囲だけを描き直す（近い範囲はまとめ、離れた範囲は別々の矩形のまま描き直す）
+     * 画像の中身を直接書き換えた場合など、検出できない変化の後は invalidate() を呼ぶ
+     */
+    public void setDirtyRectangles(boolean dirtyRectangles) {
+        this.dirtyRectangles = dirtyRectangles;
+        renderList.setTrackChanges(dirtyRectangles);
+        if (!dirtyRectangles && backGraphics != null) {
+            backGraphics.dispose();
+            backGraphics = null;
+            backBuffer = null;
+        }
+    }
+
+    public boolean isDirtyRectangles() {
+        return dirtyRectangles;
+    }
+
+    /**
+     * 部分再描画で、描き直す矩形の面積の合計が描画領域のこの割合を超えたら全体を描き直す（0.0f-1.0f、デフォルトは0.5f）
+     */
+    public void setFullRedrawThreshold(float fullRedrawThreshold) {
+        if (!(fullRedrawThreshold >= 0f && fullRedrawThreshold <= 1f)) {
+            throw new IllegalArgumentException("fullRedrawThreshold must be in [0, 1]: " + fullRedrawThreshold);
+        }
+        this.fullRedrawThreshold = fullRedrawThreshold;
+    }
+
+    /**
+     * 部分再描画で次のフレームは全体を描き直し、キャッシュしたレイヤーもすべて描き直す
+     * 拡大縮小済みの画像のキャッシュも捨てる（画像の中身を直接書き換えたときに呼ぶ）
+     */
+    public void invalidate() {
+        imageCache.clear();
+        renderList.markAllDirty();
+    }
+
+    /**
+     * zOrderの範囲をキャッシュしたレイヤーにする
+     * 範囲内のスプライトはカメラごとに描画領域と同じ大きさの画像にまとめて描いておき、
+     * 毎フレームその画像のカメラが描く範囲（ビューポートと描き直す範囲の重なり）だけを、カメラごとに1回転送する
+     * カメラが重なっていても、カメラの描画順とレイヤーの前後関係はキャッシュしない場合と同じになる
+     * 範囲内のスプライトの位置・大きさ・見た目・zOrderが変わったとき、構成やカメラが変わったときだけ画像を描き直す
+     * 背景やタイルマップ、HUDの枠など、ほとんど変わらない描画対象に使う（テキストは含まない）
+     *
+     * @throws IllegalArgumentException 範囲が逆の場合、またはキャッシュしたレイヤーと範囲が重なる場合
+     */
+    public void addCachedLayer(int minZOrder, int maxZOrder) {
+        int l = renderList.addLayer(minZOrder, maxZOrder);
+        if (l == layerCapacity) {
+            layerCapacity = l * 2;
+            for (int v = 0; v < layerImages.length; v++) {
+                layerImages[v] = Arrays.copyOf(layerImages[v], layerCapacity);
+                layerGraphics[v] = Arrays.copyOf(layerGraphics[v], layerCapacity);
+            }
+            layerBlitted = new boolean[layerCapacity];
+        }
+    }
+
+    /**
+     * キャッシュしたレイヤーを元に戻す（範囲が一致するものがなければ何もしない）
+     */
+    public void removeCachedLayer(int minZOrder, int maxZOrder) {
+        for (int l = 0; l < renderList.layerCount(); l++) {
+            if (renderList.layerMinZ(l) == minZOrder && renderList.layerMaxZ(l) == maxZOrder) {
+                int moved = renderList.layerCount() - l - 1;
+                for (int v = 0; v < layerImages.length; v++) {
+                    if (layerGraphics[v][l] != null) {
+                        layerGraphics[v][l].dispose();
+                    }
+                    System.arraycopy(layerImages[v], l + 1, layerImages[v], l, moved);
+                    System.arraycopy(layerGraphics[v], l + 1, layerGraphics[v], l, moved);
+                    layerImages[v][l + moved] = null;
+                    layerGraphics[v][l + moved] = null;
+                }
+                renderList.removeLayer(l);
+                // 転送していた画像の代わりに、範囲内のスプライトを直接描画する
+                renderList.markAllDirty();
+                return;
+            }
+        }
+    }
+
     @Override
     public void update(float deltaTime) {
-        renderPanel.repaint();
+        if (frameRequester != null) {
+            frameRequester.run();
+        } else {
+            renderPanel.repaint();
+        }
     }
 
     /**
-     * 描画処理（JPanel#paintComponent から呼ばれる）
+     * エンティティマネージャーへのリスナーの登録を解除
+     */
+    @Override
+    public void shutdown() {
+        renderList.detach();
+    }
+
+    /**
+     * 描画処理（JPanel#paintComponent またはアクティブレンダリングの描画スレッドから呼ばれる）
      */
     public void render(Graphics2D g2d) {
-        // すべての描画対象エンティティを収集してzOrderでソート
-        List<RenderableEntity> renderables = new ArrayList<>();
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        spriteCount = 0;
+        textCount = 0;
+        cachedCount = 0;
+        layersRedrawn = 0;
+
+        // 構成やzOrderが変わったときだけ描画リストを作り直す・並べ直す
+        renderList.update(entityManager);
 
-        // 通常のスプライトを追加
-        List<Entity> spriteEntities = entityManager.getEntitiesWith(Transform.class, Sprite.class);
-        for (Entity entity : spriteEntities) {
-            Sprite sprite = entity.getComponent(Sprite.class).get();
-            if (sprite.visible) {
-                renderables.add(new RenderableEntity(entity, sprite.zOrder, RenderType.SPRITE));
+        Rectangle area = renderArea(g2d);
+        if (renderList.layerCount() > 0) {
+            renderLayers(g2d, area);
+        }
+        int repainted;
+        if (dirtyRectangles) {
+            repainted = renderDirty(g2d, area);
+        } else {
+            drawScene(g2d, area, area);
+            repainted = area.width * area.height;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.sprites = spriteCount;
+            event.texts = textCount;
+            event.culled = Math.max(0, renderList.size() - spriteCount - cachedCount);
+            event.repaintedPixels = repainted;
+            event.layersRedrawn = layersRedrawn;
+            event.commit();
+        }
+    }
+
+    /**
+     * 変化した範囲だけをバッファに描き直し、バッファ全体を転送する
+     *
+     * @return 描き直したピクセル数
+     */
+    private int renderDirty(Graphics2D g2d, Rectangle area) {
+        if (area.width <= 0 || area.height <= 0) {
+            return 0;
+        }
+        Graphics2D g = backGraphics(g2d, area);
+
+        // テキストは画面座標なので、変化前と変化後の描画範囲をそのまま加える
+        DirtyRegion dirty = dirtyRegion;
+        dirty.clear();
+        for (int t = 0; t < renderList.textCount(); t++) {
+            Text text = renderList.text(t);
+            TextCache cache = renderList.textCache(t);
+            boolean relaidOut = false;
+            if (text.visible) {
+                relaidOut = cache.validate(text, g);
+                cache.place(renderList.textTransform(t));
             }
+            cache.updateShown(text.visible, text.color, relaidOut, dirty);
         }
 
-        // 画像スプライトを追加
-        List<Entity> imageSpriteEntities = entityManager.getEntitiesWith(Transform.class, ImageSprite.class);
-        for (Entity entity : imageSpriteEntities) {
-            ImageSprite imageSprite = entity.getComponent(ImageSprite.class).get();
-            if (imageSprite.visible) {
-                renderables.add(new RenderableEntity(entity, imageSprite.zOrder, RenderType.IMAGE_SPRITE));
+        boolean full = renderList.isAllDirty();
+        if (!full && renderList.hasDirty()) {
+            addWorldDirty(dirty, area);
+        }
+        renderList.clearDirty();
+
+        // アンチエイリアスのにじみの分だけ広げて、描画領域に収める
+        if (!full) {
+            long pixels = 0;
+            for (int k = 0; k < dirty.size(); k++) {
+                Rectangle rect = dirtyRect(dirty, k, area);
+                pixels += (long) rect.width * rect.height;
+            }
+            full = pixels > fullRedrawThreshold * area.width * area.height;
+        }
+        int repainted = 0;
+        if (full) {
+            repainted = repaint(g, area, area);
+        } else {
+            // 離れた範囲はそれぞれの矩形だけを描き直す
+            for (int k = 0; k < dirty.size(); k++) {
+                Rectangle rect = dirtyRect(dirty, k, area);
+                if (!rect.isEmpty()) {
+                    repainted += repaint(g, area, rect);
+                }
             }
         }
+        g2d.drawImage(backBuffer, area.x, area.y, null);
+        return repainted;
+    }
 
-        // zOrderでソート（小さい順=奥から描画）
-        renderables.sort(Comparator.comparingInt(r -> r.zOrder));
+    /**
+     * 描き直す範囲の k 番目の矩形を、にじみの分だけ広げて描画領域に収めた矩形
+     */
+    private Rectangle dirtyRect(DirtyRegion dirty, int k, Rectangle area) {
+        Rectangle rect = dirtyRect;
+        int left = (int) Math.floor(dirty.minX(k));
+        int top = (int) Math.floor(dirty.minY(k));
+        rect.setBounds(left, top, (int) Math.ceil(dirty.maxX(k)) - left, (int) Math.ceil(dirty.maxY(k)) - top);
+        rect.grow(2, 2);
+        SwingUtilities.computeIntersection(area.x, area.y, area.width, area.height, rect);
+        return rect;
+    }
 
-        // 描画
-        for (RenderableEntity renderable : renderables) {
-            Transform transform = renderable.entity.getComponent(Transform.class).get();
+    /**
+     * バッファの矩形を消して描き直す
+     *
+     * @return 描き直したピクセル数
+     */
+    private int repaint(Graphics2D g, Rectangle area, Rectangle rect) {
+        g.setClip(rect);
+        Composite composite = g.getComposite();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(rect.x, rect.y, rect.width, rect.height);
+        g.setComposite(composite);
+        drawScene(g, area, rect);
+        g.setClip(null);
+        return rect.width * rect.height;
+    }
+
+    /**
+     * 描画結果を保持するバッファ（描画領域の大きさが変わったら作り直し、全体を描き直す）
+     */
+    private Graphics2D backGraphics(Graphics2D g2d, Rectangle area) {
+        if (backBuffer == null || backBuffer.getWidth() != area.width || backBuffer.getHeight() != area.height) {
+            if (backGraphics != null) {
+                backGraphics.dispose();
+            }
+            backBuffer = ImageCache.createCompatibleImage(area.width, area.height, Transparency.TRANSLUCENT);
+            backGraphics = backBuffer.createGraphics();
+            backGraphics.translate(-area.x, -area.y);
+            renderList.markAllDirty();
+        }
+        Object antialiasing = g2d.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        if (antialiasing != null && antialiasing != backGraphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING)) {
+            backGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+        }
+        return backGraphics;
+    }
+
+    /**
+     * ワールド座標で変化した範囲を、カメラごとに画面座標へ変換して加える
+     */
+    private void addWorldDirty(DirtyRegion dirty, Rectangle area) {
+        DirtyRegion world = renderList.dirtyRegion();
+        for (int k = 0; k < world.size(); k++) {
+            float minX = world.minX(k);
+            float minY = world.minY(k);
+            float maxX = world.maxX(k);
+            float maxY = world.maxY(k);
+            if (renderList.cameraCount() == 0) {
+                dirty.add(minX, minY, maxX, maxY);
+                continue;
+            }
+            for (int c = 0; c < renderList.cameraCount(); c++) {
+                Camera camera = renderList.camera(c);
+                if (!viewport(camera, area)) {
+                    continue;
+                }
+                float centerX = viewport.x + viewport.width * 0.5f;
+                float centerY = viewport.y + viewport.height * 0.5f;
+                dirty.add(Math.max(viewport.x, (minX - camera.x) * camera.zoom + centerX),
+                        Math.max(viewport.y, (minY - camera.y) * camera.zoom + centerY),
+                        Math.min(viewport.x + viewport.width, (maxX - camera.x) * camera.zoom + centerX),
+                        Math.min(viewport.y + viewport.height, (maxY - camera.y) * camera.zoom + centerY));
+            }
+        }
+    }
 
-            // 変換行列を保存
-            AffineTransform oldTransform = g2d.getTransform();
-            Composite oldComposite = g2d.getComposite();
+    /**
+     * 描画範囲と重なるスプライトとテキストを描画
+     *
+     * @param area 描画領域全体
+     * @param clip 描画する範囲（描画領域全体または部分再描画の範囲）
+     */
+    private void drawScene(Graphics2D g2d, Rectangle area, Rectangle clip) {
+        spriteCount += drawSprites(g2d, area, clip);
 
-            // 変換を適用
-            AffineTransform newTransform = new AffineTransform();
-            newTransform.translate(transform.x, transform.y);
-            newTransform.rotate(transform.rotation);
-            newTransform.scale(transform.scaleX, transform.scaleY);
-            g2d.transform(newTransform);
+        // テキストの描画（内容やフォントが変わったときだけ字形を並べ直す）
+        for (int t = 0; t < renderList.textCount(); t++) {
+            Text text = renderList.text(t);
+            if (!text.visible) {
+                continue;
+            }
+            TextCache cache = renderList.textCache(t);
+            cache.validate(text, g2d);
 
-            if (renderable.type == RenderType.SPRITE) {
+            // 中心基準で描画（描画する範囲の外なら描画しない）
+            cache.place(renderList.textTransform(t));
+            if (!cache.intersects(clip)) {
+                continue;
+            }
+
+            g2d.setColor(text.color);
+            g2d.drawGlyphVector(cache.glyphs, cache.x, cache.y);
+            textCount++;
+        }
+    }
+
+    /**
+     * 描画範囲と重なるスプライトを、カメラごとに（カメラがなければそのまま）描画
+     *
+     * @return 描画したスプライトの数
+     */
+    private int drawSprites(Graphics2D g2d, Rectangle area, Rectangle clip) {
+        AffineTransform oldTransform = g2d.getTransform();
+        Composite oldComposite = g2d.getComposite();
+
+        int drawn = 0;
+        for (int v = 0; v < viewCount(); v++) {
+            drawn += drawView(g2d, oldTransform, oldComposite, v, area, clip);
+        }
+        return drawn;
+    }
+
+    /**
+     * ビューの数（カメラの数、カメラがなければ描画領域全体を1つのビューとする）
+     */
+    private int viewCount() {
+        return Math.max(1, renderList.cameraCount());
+    }
+
+    /**
+     * ビュー1つの、描画範囲と重なるスプライトを描画
+     *
+     * @return 描画したスプライトの数
+     */
+    private int drawView(Graphics2D g2d, AffineTransform base, Composite oldComposite,
+                         int v, Rectangle area, Rectangle clip) {
+        screenTransform = base;
+        viewPass = v;
+        int drawn;
+        if (renderList.cameraCount() == 0) {
+            // カメラがなければワールド座標をそのまま画面座標として描画
+            viewArea.setBounds(clip);
+            drawn = renderView(g2d, base, oldComposite,
+                    clip.x, clip.y, clip.x + clip.width, clip.y + clip.height);
+        } else {
+            drawn = renderCamera(g2d, base, oldComposite, renderList.camera(v), area, clip);
+        }
+
+        // 変換を元に戻す
+        g2d.setTransform(base);
+        return drawn;
+    }
+
+    /**
+     * 変化したレイヤー（または描画領域の大きさが変わったレイヤー）を、ビューごとの画像に描き直す
+     */
+    private void renderLayers(Graphics2D g2d, Rectangle area) {
+        if (area.width <= 0 || area.height <= 0) {
+            return;
+        }
+        int views = viewCount();
+        ensureLayerViews(views);
+        Object antialiasing = g2d.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        for (int l = 0; l < renderList.layerCount(); l++) {
+            for (int v = 0; v < views; v++) {
+                BufferedImage image = layerImages[v][l];
+                if (image == null || image.getWidth() != area.width || image.getHeight() != area.height) {
+                    if (layerGraphics[v][l] != null) {
+                        layerGraphics[v][l].dispose();
+                    }
+                    layerImages[v][l] = ImageCache.createCompatibleImage(area.width, area.height, Transparency.TRANSLUCENT);
+                    layerGraphics[v][l] = layerImages[v][l].createGraphics();
+                    layerGraphics[v][l].translate(-area.x, -area.y);
+                    renderList.markLayerDirty(l);
+                }
+            }
+            if (!renderList.isLayerDirty(l)) {
+                continue;
+            }
+            layerPass = l;
+            try {
+                for (int v = 0; v < views; v++) {
+                    Graphics2D g = layerGraphics[v][l];
+                    if (antialiasing != null) {
+                        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+                    }
+                    Composite composite = g.getComposite();
+                    g.setComposite(AlphaComposite.Clear);
+                    g.fillRect(area.x, area.y, area.width, area.height);
+                    g.setComposite(composite);
+                    drawView(g, g.getTransform(), composite, v, area, area);
+                }
+            } finally {
+                layerPass = -1;
+            }
+            renderList.clearLayerDirty(l);
+            layersRedrawn++;
+        }
+    }
+
+    /**
+     * レイヤーの画像をビューの数だけ用意し、減ったカメラの分は捨てる
+     * （カメラの増減は全体の変化になるので、用意した画像は描き直される）
+     */
+    private void ensureLayerViews(int views) {
+        if (layerImages.length < views) {
+            int old = layerImages.length;
+            layerImages = Arrays.copyOf(layerImages, views);
+            layerGraphics = Arrays.copyOf(layerGraphics, views);
+            for (int v = old; v < views; v++) {
+                layerImages[v] = new BufferedImage[layerCapacity];
+                layerGraphics[v] = new Graphics2D[layerCapacity];
+            }
+        } else if (layerImages.length > views) {
+            for (int v = views; v < layerImages.length; v++) {
+                for (Graphics2D g : layerGraphics[v]) {
+                    if (g != null) {
+                        g.dispose();
+                    }
+                }
+            }
+            layerImages = Arrays.copyOf(layerImages, views);
+            layerGraphics = Arrays.copyOf(layerGraphics, views);
+        }
+    }
+
+    /**
+     * カメラのビューポートに、カメラが映す範囲を描画
+     *
+     * @return 描画したスプライトの数
+     */
+    private int renderCamera(Graphics2D g2d, AffineTransform base, Composite oldComposite,
+                             Camera camera, Rectangle area, Rectangle drawArea) {
+        if (!viewport(camera, area)) {
+            return 0;
+        }
+        int x = viewport.x;
+        int y = viewport.y;
+        int width = viewport.width;
+        int height = viewport.height;
+        boolean clip = camera.viewportWidth > 0 && camera.viewportHeight > 0;
+
+        // 描画する範囲とビューポートの重なり
+        int left = Math.max(x, drawArea.x);
+        int top = Math.max(y, drawArea.y);
+        int right = Math.min(x + width, drawArea.x + drawArea.width);
+        int bottom = Math.min(y + height, drawArea.y + drawArea.height);
+        if (left >= right || top >= bottom) {
+            return 0;
+        }
+
+        // ワールド座標 → 画面座標: (world - camera) * zoom + ビューポートの中央
+        AffineTransform view = viewTransform;
+        view.setTransform(base);
+        view.translate(x + width * 0.5, y + height * 0.5);
+        view.scale(camera.zoom, camera.zoom);
+        view.translate(-camera.x, -camera.y);
+
+        float centerX = x + width * 0.5f;
+        float centerY = y + height * 0.5f;
+        viewArea.setBounds(left, top, right - left, bottom - top);
+        Shape oldClip = null;
+        if (clip) {
+            oldClip = g2d.getClip();
+            g2d.setTransform(base);
+            g2d.clipRect(x, y, width, height);
+        }
+        int drawn = renderView(g2d, view, oldComposite,
+                camera.x + (left - centerX) / camera.zoom, camera.y + (top - centerY) / camera.zoom,
+                camera.x + (right - centerX) / camera.zoom, camera.y + (bottom - centerY) / camera.zoom);
+        if (clip) {
+            g2d.setTransform(base);
+            g2d.setClip(oldClip);
+        }
+        return drawn;
+    }
+
+    /**
+     * カメラのビューポート（画面座標、大きさが0なら描画領域全体）を viewport に設定
+     *
+     * @return 描画できるビューポートならtrue
+     */
+    private boolean viewport(Camera camera, Rectangle area) {
+        if (camera.viewportWidth > 0 && camera.viewportHeight > 0) {
+            viewport.setBounds(camera.viewportX, camera.viewportY, camera.viewportWidth, camera.viewportHeight);
+        } else {
+            viewport.setBounds(area);
+        }
+        return camera.zoom > 0 && viewport.width > 0 && viewport.height > 0;
+    }
+
+    /**
+     * ワールド座標の範囲と重なるスプライトをzOrderの小さい順（奥から）に描画
+     *
+     * @param view ワールド座標を画面座標に変換する行列
+     * @return 描画したスプライトの数
+     */
+    private int renderView(Graphics2D g2d, AffineTransform view, Composite oldComposite,
+                           float minX, float minY, float maxX, float maxY) {
+        int drawn = 0;
+        float currentAlpha = 1.0f; // 透明度が変わったときだけCompositeを切り替える
+        boolean atView = false; // 描画先の変換が view のままか（移動だけの描画が続く間は変換を設定し直さない）
+        boolean integerView = isIntegerTranslation(view);
+        // アンチエイリアスや補間が有効なら、小数の位置はそのまま描画しないと端のにじみが変わる
+        boolean snapFills = g2d.getRenderingHint(RenderingHints.KEY_ANTIALIASING) != RenderingHints.VALUE_ANTIALIAS_ON;
+        Object interpolation = g2d.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        boolean snapImages = interpolation == null || interpolation == RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+        boolean layered = renderList.layerCount() > 0;
+        if (layered && layerPass < 0) {
+            Arrays.fill(layerBlitted, false);
+        }
+        int visibleCount = renderList.collectVisible(minX, minY, maxX, maxY, batching);
+        for (int k = 0; k < visibleCount; k++) {
+            int i = renderList.at(k);
+            if (layered) {
+                int layer = renderList.layerAt(renderList.zOrder(i));
+                if (layerPass >= 0) {
+                    // レイヤーの描き直しでは範囲内のものだけを描画
+                    if (layer != layerPass) {
+                        continue;
+                    }
+                } else if (layer >= 0) {
+                    // レイヤーの最初の描画対象の位置で、このビューのレイヤーの画像のビューが描く範囲を1回だけ転送する
+                    if (!layerBlitted[layer]) {
+                        layerBlitted[layer] = true;
+                        g2d.setTransform(screenTransform);
+                        atView = false;
+                        if (currentAlpha != 1.0f) {
+                            g2d.setComposite(oldComposite);
+                            currentAlpha = 1.0f;
+                        }
+                        Rectangle r = viewArea;
+                        int sx = r.x - renderArea.x;
+                        int sy = r.y - renderArea.y;
+                        g2d.drawImage(layerImages[viewPass][layer], r.x, r.y, r.x + r.width, r.y + r.height,
+                                sx, sy, sx + r.width, sy + r.height, null);
+                    }
+                    cachedCount++;
+                    continue;
+                }
+            }
+            Transform transform = renderList.transform(i);
+
+            // 回転も拡大縮小もなく、view が整数の平行移動だけなら、変換を設定せずに位置をずらして描画する
+            // （ワールド座標と画面座標のずれが整数なので、位置を整数に丸めても画面上の丸めと同じになる）
+            // 丸めで見た目が変わらないのは、位置が整数か、アンチエイリアス（画像は補間）が無効な場合だけ
+            int offsetX = 0;
+            int offsetY = 0;
+            boolean translateOnly = integerView
+                    && transform.rotation == 0 && transform.scaleX == 1 && transform.scaleY == 1;
+            boolean integerPosition = transform.x == Math.rint(transform.x) && transform.y == Math.rint(transform.y);
+
+            if (renderList.type(i) == RenderList.SPRITE) {
                 // 通常のスプライトを描画
-                Sprite sprite = renderable.entity.getComponent(Sprite.class).get();
+                Sprite sprite = renderList.sprite(i);
+                if (!sprite.visible) {
+                    continue;
+                }
+                if (translateOnly && (snapFills || integerPosition)) {
+                    if (!atView) {
+                        g2d.setTransform(view);
+                        atView = true;
+                    }
+                    offsetX = Math.round(transform.x);
+                    offsetY = Math.round(transform.y);
+                } else {
+                    applyTransform(g2d, view, transform);
+                    atView = false;
+                }
                 g2d.setColor(sprite.color);
                 g2d.fillRect(
-                        -sprite.width / 2,
-                        -sprite.height / 2,
+                        offsetX - sprite.width / 2,
+                        offsetY - sprite.height / 2,
                         sprite.width,
                         sprite.height
                 );
-            } else if (renderable.type == RenderType.IMAGE_SPRITE) {
+            } else {
                 // 画像スプライトを描画
-                ImageSprite imageSprite = renderable.entity.getComponent(ImageSprite.class).get();
+                ImageSprite imageSprite = renderList.imageSprite(i);
+                if (!imageSprite.visible || imageSprite.image == null) {
+                    continue;
+                }
+                if (translateOnly && (snapImages || integerPosition)) {
+                    if (!atView) {
+                        g2d.setTransform(view);
+                        atView = true;
+                    }
+                    offsetX = Math.round(transform.x);
+                    offsetY = Math.round(transform.y);
+                } else {
+                    applyTransform(g2d, view, transform);
+                    atView = false;
+                }
 
                 // 透明度を設定
-                if (imageSprite.alpha < 1.0f) {
-                    g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, imageSprite.alpha));
+                float alpha = Math.min(imageSprite.alpha, 1.0f);
+                if (alpha != currentAlpha) {
+                    g2d.setComposite(alpha < 1.0f ? alphaComposite(alpha) : oldComposite);
+                    currentAlpha = alpha;
                 }
 
-                g2d.drawImage(
-                        imageSprite.image,
-                        -imageSprite.width / 2,
-                        -imageSprite.height / 2,
-                        imageSprite.width,
-                        imageSprite.height,
-                        null
-                );
+                drawImage(g2d, imageSprite, offsetX, offsetY);
             }
-
-            // 変換を元に戻す
+            drawn++;
+        }
+        if (currentAlpha != 1.0f) {
             g2d.setComposite(oldComposite);
-            g2d.setTransform(oldTransform);
         }
+        return drawn;
+    }
 
-        // テキストの描画
-        List<Entity> textEntities = entityManager.getEntitiesWith(Transform.class, Text.class);
+    /**
+     * 恒等変換か整数の平行移動だけの変換か（拡大したカメラや、中心が半端なビューポートではfalse）
+     */
+    private static boolean isIntegerTranslation(AffineTransform view) {
+        if ((view.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0) {
+            return false;
+        }
+        double tx = view.getTranslateX();
+        double ty = view.getTranslateY();
+        return tx == Math.rint(tx) && ty == Math.rint(ty);
+    }
 
-        for (Entity entity : textEntities) {
-            Transform transform = entity.getComponent(Transform.class).get();
-            Text text = entity.getComponent(Text.class).get();
+    /**
+     * 画像スプライトを (centerX, centerY) を中心に描画
+     * 表示サイズが元の大きさと違う場合は、拡大縮小済みの画像をキャッシュから取り出して描画する
+     */
+    private void drawImage(Graphics2D g2d, ImageSprite imageSprite, int centerX, int centerY) {
+        int width = imageSprite.width;
+        int height = imageSprite.height;
+        int x = centerX - width / 2;
+        int y = centerY - height / 2;
+        AtlasRegion region = imageSprite.region;
+        BufferedImage source = region != null ? region.page : imageSprite.image;
+        int srcX = region != null ? region.x : 0;
+        int srcY = region != null ? region.y : 0;
+        int srcWidth = region != null ? region.width : source.getWidth();
+        int srcHeight = region != null ? region.height : source.getHeight();
 
-            if (!text.visible) {
-                continue;
+        if (width == srcWidth && height == srcHeight) {
+            if (region == null) {
+                g2d.drawImage(source, x, y, null);
+            } else {
+                // アトラスのページから領域だけを描画
+                g2d.drawImage(source, x, y, x + width, y + height, srcX, srcY, srcX + srcWidth, srcY + srcHeight, null);
             }
-
-            // フォントと色を設定
-            g2d.setFont(text.font);
-            g2d.setColor(text.color);
-
-            // テキストのサイズを取得
-            FontMetrics fm = g2d.getFontMetrics();
-            int textWidth = fm.stringWidth(text.text);
-            int textHeight = fm.getHeight();
-
-            // 中心基準で描画
-            int x = (int) (transform.x - textWidth / 2);
-            int y = (int) (transform.y + textHeight / 2 - fm.getDescent());
-
-            g2d.drawString(text.text, x, y);
+            return;
+        }
+        BufferedImage scaled = imageCache.getScaled(source, srcX, srcY, srcWidth, srcHeight, width, height);
+        if (scaled != null) {
+            g2d.drawImage(scaled, x, y, null);
+        } else {
+            // キャッシュに収まらない大きさなら毎回拡大縮小して描画
+            g2d.drawImage(source, x, y, x + width, y + height, srcX, srcY, srcX + srcWidth, srcY + srcHeight, null);
         }
     }
 
     /**
-     * 描画可能なエンティティの情報を保持
+     * 描画領域（パネルの大きさ、パネルがなければ描画先のクリップ、クリップもなければ描画先の大きさ）
      */
-    private static class RenderableEntity {
+    private Rectangle renderArea(Graphics2D g2d) {
+        if (renderPanel != null) {
+            renderArea.setBounds(0, 0, renderPanel.getWidth(), renderPanel.getHeight());
+        } else if (g2d.getClip() != null) {
+            g2d.getClipBounds(renderArea);
+        } else {
+            renderArea.setBounds(g2d.getDeviceConfiguration().getBounds());
+        }
+        return renderArea;
+    }
 
-        Entity entity;
-        int zOrder;
-        RenderType type;
+    /**
+     * 元の変換にエンティティの変換（移動 → 回転 → 拡大縮小）を重ねて設定
+     * 変換行列は使い回し、回転が0・拡大率が1の場合はその計算を省く
+     */
+    private void applyTransform(Graphics2D g2d, AffineTransform base, Transform transform) {
+        AffineTransform local = localTransform;
+        local.setTransform(base);
+        local.translate(transform.x, transform.y);
+        if (transform.rotation != 0) {
+            local.rotate(transform.rotation);
+        }
+        if (transform.scaleX != 1 || transform.scaleY != 1) {
+            local.scale(transform.scaleX, transform.scaleY);
+        }
+        g2d.setTransform(local);
+    }
 
-        RenderableEntity(Entity entity, int zOrder, RenderType type) {
-            this.entity = entity;
-            this.zOrder = zOrder;
-            this.type = type;
+    /**
+     * 透明度ごとのAlphaCompositeを使い回す
+     */
+    private AlphaComposite alphaComposite(float alpha) {
+        if (cachedComposite == null || cachedComposite.getAlpha() != alpha) {
+            cachedComposite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha);
         }
+        return cachedComposite;
     }
 
     /**
-     * 描画タイプ
+     * 直前の部分再描画で描き直す範囲に加えた矩形（画面座標、テスト用）
      */
-    private enum RenderType {
-        SPRITE,
-        IMAGE_SPRITE
+    DirtyRegion dirtyRegion() {
+        return dirtyRegion;
     }
 }
@@ -0,0 +1,248 @@
+package heroengine.systems;
+
+import heroengine.components.BoxCollider;
+import heroengine.components.SleepState;
+import heroengine.components.Transform;
+import heroengine.components.Velocity;
+import heroengine.ecs.Entity;
+import heroengine.ecs.GameSystem;
+import heroengine.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * スリープシステム 速度がしきい値未満のまま一定フレーム続いたエンティティをスリープさせる
+ * CollisionSystemの接触ペアで、接触しているエンティティをアイランドにまとめ、全員が止まっているときだけまとめてスリープさせる
+ * スリープ中のエンティティは、次のいずれかでアイランドごと起きる
+ * 動いているエンティティとの接触、VelocityやTransformの外部からの書き換え、SleepState.wake()
+ * CollisionSystemより後に追加すること
+ */
+public class SleepSystem extends GameSystem {
+
+    private static final int NONE = -1;
+
+    private final CollisionSystem collisionSystem;
+    private float velocityThreshold;
+    private int framesToSleep;
+
+    // 今フレームの対象（エンティティID → 番号）
+    private final LongIntHashMap bodyIndex;
+    private Entity[] bodies;
+    private SleepState[] states;
+    private Velocity[] velocities;
+    private Transform[] transforms;
+    private int[] parents; // アイランドを求めるUnion-Find
+    private boolean[] canSleep;
+    private int bodyCount;
+
+    // 起こすアイランドの番号
+    private final LongIntHashMap wokenIslands;
+
+    public SleepSystem(CollisionSystem collisionSystem) {
+        this.collisionSystem = collisionSystem;
+        this.velocityThreshold = 5f;
+        this.framesToSleep = 60;
+        this.bodyIndex = new LongIntHashMap(256);
+        this.wokenIslands = new LongIntHashMap(64);
+        allocate(64);
+    }
+
+    /**
+     * 止まっているとみなす速さ（これ未満）
+     */
+    public void setVelocityThreshold(float velocityThreshold) {
+        this.velocityThreshold = velocityThreshold;
+    }
+
+    /**
+     * スリープするまでに止まっている必要があるフレーム数
+     */
+    public void setFramesToSleep(int framesToSleep) {
+        this.framesToSleep = Math.max(1, framesToSleep);
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        List<Entity> entities = entityManager.getEntitiesWith(SleepState.class, Velocity.class, Transform.class);
+        collectBodies(entities);
+        processContacts();
+        sleepIslands();
+        wakeIslands();
+
+        Arrays.fill(bodies, 0, bodyCount, null);
+        Arrays.fill(states, 0, bodyCount, null);
+        Arrays.fill(velocities, 0, bodyCount, null);
+        Arrays.fill(transforms, 0, bodyCount, null);
+    }
+
+    /**
+     * 対象を集め、止まっているフレーム数を更新し、外部から書き換えられたスリープ中のエンティティを起こす
+     */
+    private void collectBodies(List<Entity> entities) {
+        bodyIndex.clear();
+        wokenIslands.clear();
+        bodyCount = 0;
+        if (bodies.length < entities.size()) {
+            allocate(Math.max(entities.size(), bodies.length * 2));
+        }
+        float thresholdSq = velocityThreshold * velocityThreshold;
+
+        for (Entity entity : entities) {
+            SleepState state = entity.getComponent(SleepState.class).get();
+            Velocity velocity = entity.getComponent(Velocity.class).get();
+            Transform transform = entity.getComponent(Transform.class).get();
+
+            if (state.asleep) {
+                boolean written = velocity.vx != 0 || velocity.vy != 0
+                        || transform.x != state.sleepX || transform.y != state.sleepY;
+                if (state.wakeRequested || written) {
+                    wokenIslands.put(state.island, 1, 0);
+                }
+            } else if (state.wakeRequested || velocity.vx * velocity.vx + velocity.vy * velocity.vy >= thresholdSq) {
+                state.stillFrames = 0;
+            } else {
+                state.stillFrames++;
+            }
+            state.wakeRequested = false;
+
+            int k = bodyCount++;
+            bodies[k] = entity;
+            states[k] = state;
+            velocities[k] = velocity;
+            transforms[k] = transform;
+            parents[k] = k;
+            bodyIndex.put(entity.getId(), k, NONE);
+        }
+    }
+
+    /**
+     * 接触ペアから、起きているエンティティ同士をアイランドにまとめ、動いている相手と接触したアイランドを起こす
+     */
+    private void processContacts() {
+        int count = collisionSystem.getContactCount();
+        for (int c = 0; c < count; c++) {
+            Entity a = collisionSystem.getContactA(c);
+            Entity b = collisionSystem.getContactB(c);
+            int ka = bodyIndex.get(a.getId(), NONE);
+            int kb = bodyIndex.get(b.getId(), NONE);
+
+            boolean movingA = isMoving(a, ka);
+            boolean movingB = isMoving(b, kb);
+            if (movingB) {
+                disturb(ka);
+            }
+            if (movingA) {
+                disturb(kb);
+            }
+
+            if (ka != NONE && kb != NONE && !states[ka].asleep && !states[kb].asleep) {
+                union(ka, kb);
+            }
+        }
+    }
+
+    /**
+     * 動いている相手と接触した場合の処理（スリープ中ならアイランドごと起こし、起きていれば止まっているフレーム数を戻す）
+     */
+    private void disturb(int k) {
+        if (k == NONE) {
+            return;
+        }
+        if (states[k].asleep) {
+            wokenIslands.put(states[k].island, 1, 0);
+        } else {
+            states[k].stillFrames = 0;
+        }
+    }
+
+    /**
+     * 動いているエンティティか（静的コライダーとスリープ中は動いていない）
+     */
+    private boolean isMoving(Entity entity, int k) {
+        if (k != NONE) {
+            return !states[k].asleep && states[k].stillFrames == 0;
+        }
+        BoxCollider collider = entity.getComponent(BoxCollider.class).orElse(null);
+        if (collider != null && collider.isStatic) {
+            return false;
+        }
+        Velocity velocity = entity.getComponent(Velocity.class).orElse(null);
+        return velocity != null
+                && velocity.vx * velocity.vx + velocity.vy * velocity.vy >= velocityThreshold * velocityThreshold;
+    }
+
+    /**
+     * 全員が十分に止まっているアイランドをスリープさせる
+     */
+    private void sleepIslands() {
+        for (int k = 0; k < bodyCount; k++) {
+            canSleep[k] = true;
+        }
+        for (int k = 0; k < bodyCount; k++) {
+            if (!states[k].asleep && states[k].stillFrames < framesToSleep) {
+                canSleep[find(k)] = false;
+            }
+        }
+        for (int k = 0; k < bodyCount; k++) {
+            SleepState state = states[k];
+            if (state.asleep) {
+                continue;
+            }
+            int root = find(k);
+            if (canSleep[root]) {
+                state.asleep = true;
+                state.island = bodies[root].getId();
+                velocities[k].set(0, 0);
+                state.sleepX = transforms[k].x;
+                state.sleepY = transforms[k].y;
+            }
+        }
+    }
+
+    /**
+     * 起こすアイランドに属するエンティティをすべて起こす
+     */
+    private void wakeIslands() {
+        if (wokenIslands.size() == 0) {
+            return;
+        }
+        for (int k = 0; k < bodyCount; k++) {
+            SleepState state = states[k];
+            if (state.asleep && wokenIslands.containsKey(state.island)) {
+                state.asleep = false;
+                state.stillFrames = 0;
+            }
+        }
+    }
+
+    private int find(int k) {
+        while (parents[k] != k) {
+            parents[k] = parents[parents[k]];
+            k = parents[k];
+        }
+        return k;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB) {
+            // 番号の小さい方を根にして、アイランドの番号を決定的にする
+            if (rootA < rootB) {
+                parents[rootB] = rootA;
+            } else {
+                parents[rootA] = rootB;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        bodies = new Entity[capacity];
+        states = new SleepState[capacity];
+        velocities = new Velocity[capacity];
+        transforms = new Transform[capacity];
+        parents = new int[capacity];
+        canSleep = new boolean[capacity];
+    }
+}
@@ -0,0 +1,116 @@
+package heroengine.systems;
+
+import heroengine.components.Text;
+import heroengine.components.Transform;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.Arrays;
+
+/**
+ * テキストの描画キャッシュ 1つのTextについて、字形を並べた結果（GlyphVector）と寸法を保持する
+ * 内容・フォント・描画先の設定（FontRenderContext）が変わったときだけ並べ直す
+ */
+class TextCache {
+
+    private String text;
+    private int version = -1;
+    private Font font;
+    private FontRenderContext fontRenderContext;
+
+    GlyphVector glyphs;
+    int width;
+    int height;
+    int ascent;
+    int descent;
+
+    // 中心基準で置いたときのベースラインの左端（place で計算）
+    int x;
+    int y;
+
+    // 部分再描画用に、前回の描画範囲と色を記録する
+    boolean shown;
+    Color shownColor;
+    int shownMinX;
+    int shownMinY;
+    int shownMaxX;
+    int shownMaxY;
+
+    /**
+     * 変化があれば並べ直す
+     *
+     * @return 並べ直した場合はtrue
+     */
+    boolean validate(Text source, Graphics2D g2d) {
+        FontRenderContext frc = g2d.getFontRenderContext();
+        if (glyphs != null && source.getVersion() == version && source.text == text && source.font == font
+                && frc.equals(fontRenderContext)) {
+            return false;
+        }
+        version = source.getVersion();
+        text = source.text;
+        font = source.font;
+        fontRenderContext = frc;
+
+        // 文字バッファはこの後も書き換えられるため、コピーを渡す
+        char[] chars;
+        if (source.isBuffered()) {
+            chars = Arrays.copyOf(source.getBuffer(), source.getLength());
+        } else {
+            chars = text != null ? text.toCharArray() : new char[0];
+        }
+        FontMetrics fm = g2d.getFontMetrics(font);
+        glyphs = font.createGlyphVector(frc, chars);
+        width = fm.charsWidth(chars, 0, chars.length);
+        height = fm.getHeight();
+        ascent = fm.getAscent();
+        descent = fm.getDescent();
+        return true;
+    }
+
+    /**
+     * トランスフォームの位置を中心として描画位置を計算
+     */
+    void place(Transform transform) {
+        x = (int) (transform.x - width / 2);
+        y = (int) (transform.y + height / 2 - descent);
+    }
+
+    /**
+     * 描画範囲と矩形が重なるか
+     */
+    boolean intersects(Rectangle rect) {
+        return x + width >= rect.x && x <= rect.x + rect.width
+                && y + descent >= rect.y && y - ascent <= rect.y + rect.height;
+    }
+
+    /**
+     * 表示状態・色・描画範囲の記録を更新
+     *
+     * @param relaidOut 並べ直した場合はtrue
+     * @param dirty 変わっていれば、変化前と変化後の描画範囲を加える範囲（画面座標）
+     */
+    void updateShown(boolean visible, Color color, boolean relaidOut, DirtyRegion dirty) {
+        int minX = x;
+        int minY = y - ascent;
+        int maxX = x + width;
+        int maxY = y + descent;
+        if (visible == shown && color == shownColor && !relaidOut && (!visible
+                || (minX == shownMinX && minY == shownMinY && maxX == shownMaxX && maxY == shownMaxY))) {
+            return;
+        }
+        if (shown) {
+            dirty.add(shownMinX, shownMinY, shownMaxX, shownMaxY);
+        }
+        if (visible) {
+            dirty.add(minX, minY, maxX, maxY);
+        }
+        shown = visible;
+        shownColor = color;
+        shownMinX = minX;
+        shownMinY = minY;
+        shownMaxX = maxX;
+        shownMaxY = maxY;
+    }
+}
@@ -4,12 +4,16 @@
 package heroengine;
 
 import heroengine.ecs.Entity;
+import heroengine.ecs.EntityListener;
 import heroengine.ecs.EntityManager;
 import heroengine.components.Transform;
 import heroengine.components.Sprite;
 import org.junit.jupiter.api.Test;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -52,4 +56,42 @@ class LibraryTest {
         assertEquals(2, entityManager.getEntities().size());
         assertEquals(1, entityManager.getEntitiesWith(Transform.class, Sprite.class).size());
     }
+
+    @Test
+    void testEntityListenerIsFilteredAndVersionIsPerManager() {
+        EntityManager entityManager = new EntityManager();
+        EntityManager other = new EntityManager();
+        List<String> events = new ArrayList<>();
+        entityManager.addEntityListener(new EntityListener() {
+            @Override
+            public void onEntityChanged(Entity entity) {
+                events.add("changed");
+            }
+
+            @Override
+            public void onEntityRemoved(Entity entity) {
+                events.add("removed");
+            }
+        }, Set.of(Sprite.class));
+
+        Entity plain = entityManager.spawn(new Transform(0, 0));
+        Entity sprite = entityManager.spawn(new Transform(0, 0), new Sprite(10, 10, Color.RED));
+        entityManager.refresh();
+        assertEquals(List.of("changed"), events);
+
+        long version = entityManager.getStructureVersion();
+        other.spawn(new Sprite(10, 10, Color.RED));
+        other.refresh();
+        assertEquals(version, entityManager.getStructureVersion());
+
+        plain.addComponents(new Transform(1, 1));
+        assertEquals(List.of("changed"), events);
+        assertNotEquals(version, entityManager.getStructureVersion());
+
+        plain.addComponents(new Sprite(10, 10, Color.RED));
+        sprite.setActive(false);
+        entityManager.removeEntity(plain);
+        entityManager.refresh();
+        assertEquals(List.of("changed", "changed", "removed", "removed"), events);
+    }
 }
@@ -0,0 +1,172 @@
+package heroengine.assets;
+
+import heroengine.components.ImageSprite;
+import heroengine.components.Transform;
+import heroengine.ecs.Entity;
+import heroengine.ecs.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AssetManagerTest {
+
+    @Test
+    void testSharesOneDecodedImageAcrossHandles() throws IOException {
+        Path dir = Files.createTempDirectory("assets");
+        Path png = writePng(dir.resolve("enemy.png"), 6, 4);
+
+        try (AssetManager manager = new AssetManager(2)) {
+            List<AssetHandle<BufferedImage>> handles = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                handles.add(manager.loadImage(png.toString()));
+            }
+            handles.add(manager.loadImage(dir.resolve("sub/../enemy.png").toString()));
+
+            BufferedImage image = handles.get(0).join();
+            assertEquals(6, image.getWidth());
+            for (AssetHandle<BufferedImage> handle : handles) {
+                assertSame(image, handle.join());
+            }
+            assertEquals(1, manager.size());
+            assertEquals(501, manager.getReferenceCount(png.toString()));
+
+            // 完了の通知は update() で実行される
+            List<BufferedImage> notified = new ArrayList<>();
+            handles.get(1).whenReady(notified::add);
+            assertEquals(List.of(image), notified);
+
+            handles.get(0).release();
+            handles.get(0).release();
+            assertEquals(500, manager.getReferenceCount(png.toString()));
+        }
+    }
+
+    @Test
+    void testPreloadEvictionAndFailures() throws IOException {
+        Path dir = Files.createTempDirectory("assets");
+        Path a = writePng(dir.resolve("a.png"), 10, 10);
+        Path b = writePng(dir.resolve("b.png"), 10, 10);
+
+        try (AssetManager manager = new AssetManager(1)) {
+            AssetGroup level = manager.preloadImages(a.toString(), b.toString());
+            level.getHandles().forEach(AssetHandle::join);
+            assertTrue(level.isReady());
+            assertEquals(1.0f, level.getProgress());
+
+            // 参照がなくなっても上限内なら保持し、再び要求されれば同じ画像を返す
+            BufferedImage imageA = (BufferedImage) level.getHandles().get(0).get();
+            level.release();
+            assertEquals(2, manager.size());
+            assertSame(imageA, manager.loadImage(a.toString()).join());
+
+            // 上限を超えた分は使われていない順に捨てる（参照されているaは残る）
+            manager.setUnreferencedBudgetBytes(0);
+            assertTrue(manager.contains(a.toString()));
+            assertFalse(manager.contains(b.toString()));
+
+            AssetHandle<BufferedImage> missing = manager.loadImage(dir.resolve("missing.png").toString());
+            assertThrows(UncheckedIOException.class, missing::join);
+            assertTrue(missing.isFailed());
+            assertNull(missing.get());
+            assertNotNull(missing.getFailure());
+        }
+    }
+
+    @Test
+    void testWhenReadyRunsOnUpdate() throws Exception {
+        Path png = writePng(Files.createTempDirectory("assets").resolve("late.png"), 3, 3);
+        try (AssetManager manager = new AssetManager(1)) {
+            AssetHandle<BufferedImage> handle = manager.loadImage(png.toString());
+            List<BufferedImage> notified = new ArrayList<>();
+            handle.whenReady(notified::add);
+            handle.join();
+            for (int i = 0; i < 100 && notified.isEmpty(); i++) {
+                manager.update();
+                Thread.sleep(1);
+            }
+            assertEquals(1, notified.size());
+            assertSame(handle.get(), notified.get(0));
+        }
+    }
+
+    @Test
+    void testImageSpriteReleasesHandleWhenRemoved() throws IOException {
+        Path png = writePng(Files.createTempDirectory("assets").resolve("sprite.png"), 4, 4);
+        try (AssetManager manager = new AssetManager(1)) {
+            EntityManager entityManager = new EntityManager();
+
+            // エンティティの削除で解放される
+            Entity removed = entityManager.spawn(new Transform(0, 0), new ImageSprite(manager.loadImage(png.toString())));
+            entityManager.refresh();
+            assertEquals(1, manager.getReferenceCount(png.toString()));
+            entityManager.removeEntity(removed);
+            entityManager.refresh();
+            assertEquals(0, manager.getReferenceCount(png.toString()));
+
+            // コンポーネントを外しても、同じ型で置き換えても解放される
+            Entity entity = entityManager.spawn(new Transform(0, 0), new ImageSprite(manager.loadImage(png.toString())));
+            entityManager.refresh();
+            entity.removeComponent(ImageSprite.class);
+            assertEquals(0, manager.getReferenceCount(png.toString()));
+            entity.addComponents(new ImageSprite(manager.loadImage(png.toString())));
+            entity.addComponents(new ImageSprite(new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB)));
+            assertEquals(0, manager.getReferenceCount(png.toString()));
+
+            // 画像を差し替えたら読み込み中のハンドルは解放し、後から届いた画像で上書きしない
+            ImageSprite replaced = new ImageSprite(manager.loadImage(png.toString()));
+            BufferedImage other = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+            replaced.setImage(other);
+            assertNull(replaced.asset);
+            assertEquals(0, manager.getReferenceCount(png.toString()));
+            manager.loadImage(png.toString()).join();
+            manager.update();
+            assertSame(other, replaced.image);
+        }
+    }
+
+    @Test
+    void testImageSpriteKeepsSizeSetBeforeLoad() throws Exception {
+        Path png = writePng(Files.createTempDirectory("assets").resolve("sized.png"), 6, 4);
+        try (AssetManager manager = new AssetManager(1)) {
+            AssetHandle<BufferedImage> sizedHandle = manager.loadImage(png.toString());
+            AssetHandle<BufferedImage> naturalHandle = manager.loadImage(png.toString());
+            ImageSprite sized = new ImageSprite(sizedHandle);
+            sized.setSize(20, 20);
+            ImageSprite natural = new ImageSprite(naturalHandle);
+            sizedHandle.join();
+            naturalHandle.join();
+            // 読み込み済みなら、通知はすぐに update() へ渡される
+            for (int i = 0; i < 1000 && (sized.image == null || natural.image == null); i++) {
+                manager.update();
+                Thread.sleep(1);
+            }
+            assertNotNull(sized.image);
+            assertEquals(20, sized.width);
+            assertEquals(20, sized.height);
+            assertEquals(6, sized.getOriginalWidth());
+            assertEquals(6, natural.width);
+            assertEquals(4, natural.height);
+
+            // 画像を変えても指定したサイズのまま
+            sized.setImage(new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB));
+            assertEquals(20, sized.width);
+            assertEquals(8, sized.getOriginalWidth());
+        }
+    }
+
+    private static Path writePng(Path path, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xFF00FF00);
+        ImageIO.write(image, "png", path.toFile());
+        return path;
+    }
+}
@@ -0,0 +1,39 @@
+package heroengine.core;
+
+import heroengine.systems.RenderSystem;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActiveRendererTest {
+
+    @Test
+    void testRenderThreadSurvivesFailedFrames() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<RenderSystem> renderSystem = () -> {
+            if (calls.incrementAndGet() <= 2) {
+                throw new IllegalStateException("render failed");
+            }
+            return null;
+        };
+        ActiveRenderer renderer = new ActiveRenderer(new Canvas(), renderSystem, new FrameTimeStats(),
+                new OverloadController(), new Object());
+        renderer.startThread();
+        try {
+            for (int frame = 1; frame <= 3; frame++) {
+                renderer.requestFrame();
+                for (int i = 0; i < 1000 && calls.get() < frame; i++) {
+                    Thread.sleep(1);
+                }
+                assertEquals(frame, calls.get());
+            }
+            assertEquals(2, renderer.getFailedFrames());
+        } finally {
+            renderer.stop();
+        }
+    }
+}
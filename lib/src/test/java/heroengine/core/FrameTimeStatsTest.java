@@ -0,0 +1,51 @@
+package heroengine.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameTimeStatsTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void testSummarizesIntervalsBetweenFrames() {
+        FrameTimeStats stats = new FrameTimeStats();
+        long time = 0;
+        stats.record(time);
+        for (int i = 0; i < 99; i++) {
+            time += 16 * MS;
+            stats.record(time);
+        }
+        time += 116 * MS;
+        stats.record(time);
+
+        assertEquals(100, stats.getSampleCount());
+        assertEquals(17.0, stats.getAverageMillis(), 1e-9);
+        assertEquals(116.0, stats.getMaxMillis(), 1e-9);
+        assertEquals(16.0, stats.getPercentileMillis(99), 1e-9);
+        assertEquals(116.0, stats.getPercentileMillis(100), 1e-9);
+        assertEquals(Math.sqrt(99.0), stats.getStandardDeviationMillis(), 1e-9);
+    }
+
+    @Test
+    void testKeepsOnlyRecentFramesAndResets() {
+        FrameTimeStats stats = new FrameTimeStats(4);
+        long time = 0;
+        stats.record(time);
+        for (int i = 0; i < 10; i++) {
+            time += (i < 6 ? 50 : 10) * MS;
+            stats.record(time);
+        }
+        assertEquals(4, stats.getSampleCount());
+        assertEquals(10.0, stats.getMaxMillis(), 1e-9);
+        assertEquals(0.0, stats.getStandardDeviationMillis(), 1e-9);
+
+        // 消去後は最初の記録から測り直す
+        stats.reset();
+        stats.record(time + 1000 * MS);
+        assertEquals(0, stats.getSampleCount());
+        stats.record(time + 1020 * MS);
+        assertEquals(20.0, stats.getAverageMillis(), 1e-9);
+    }
+}
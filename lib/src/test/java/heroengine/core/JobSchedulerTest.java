@@ -0,0 +1,113 @@
+package heroengine.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobSchedulerTest {
+
+    @Test
+    void testJobIsSpreadAcrossFrames() {
+        JobScheduler scheduler = new JobScheduler();
+        scheduler.setFrameBudgetMillis(0);
+        CountdownJob job = new CountdownJob(3);
+        JobHandle handle = scheduler.submit(job);
+
+        scheduler.run();
+        assertFalse(handle.isDone());
+        assertEquals(1, handle.getSteps());
+
+        scheduler.run();
+        scheduler.run();
+        assertTrue(handle.isCompleted());
+        assertTrue(job.completed);
+        assertEquals(3, handle.getFrames());
+        assertEquals(1.0f, handle.getProgress());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    void testJobsTakeTurnsWhenBudgetIsExhausted() {
+        JobScheduler scheduler = new JobScheduler();
+        scheduler.setFrameBudgetMillis(0);
+        CountdownJob a = new CountdownJob(10);
+        CountdownJob b = new CountdownJob(10);
+        scheduler.submit(a);
+        scheduler.submit(b);
+
+        scheduler.run();
+        scheduler.run();
+
+        assertEquals(9, a.remaining);
+        assertEquals(9, b.remaining);
+    }
+
+    @Test
+    void testCancelledJobIsNotRun() {
+        JobScheduler scheduler = new JobScheduler();
+        CountdownJob job = new CountdownJob(5);
+        JobHandle handle = scheduler.submit(job);
+        handle.cancel();
+
+        scheduler.run();
+
+        assertTrue(handle.isCancelled());
+        assertEquals(5, job.remaining);
+    }
+
+    @Test
+    void testFrameDeadlineLimitsBudget() {
+        JobScheduler scheduler = new JobScheduler();
+        scheduler.setFrameBudgetMillis(1000);
+        JobHandle handle = scheduler.submit(new CountdownJob(1_000_000));
+
+        // フレームの期限を過ぎていれば予算が残っていても1ステップだけ進める
+        scheduler.run(System.nanoTime() - 1);
+
+        assertEquals(1, handle.getSteps());
+    }
+
+    @Test
+    void testOnCompleteFailureIsRecorded() {
+        JobScheduler scheduler = new JobScheduler();
+        JobHandle handle = scheduler.submit(new CountdownJob(1) {
+            @Override
+            public void onComplete() {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        scheduler.run();
+
+        assertTrue(handle.isCompleted());
+        assertInstanceOf(IllegalStateException.class, handle.getFailure());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    private static class CountdownJob implements IncrementalJob {
+
+        final int total;
+        int remaining;
+        boolean completed;
+
+        CountdownJob(int total) {
+            this.total = total;
+            this.remaining = total;
+        }
+
+        @Override
+        public boolean step() {
+            return --remaining == 0;
+        }
+
+        @Override
+        public float getProgress() {
+            return 1.0f - (float) remaining / total;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
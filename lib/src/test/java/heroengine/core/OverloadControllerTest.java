@@ -0,0 +1,103 @@
+package heroengine.core;
+
+import heroengine.ecs.GameSystem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverloadControllerTest {
+
+    private static final long BUDGET = 16_000_000L;
+
+    @Test
+    void testEscalatesInConfiguredOrderAndRecovers() {
+        OverloadController controller = new OverloadController();
+        controller.setDegradationOrder(OverloadController.Step.CAP_CATCH_UP, OverloadController.Step.SKIP_RENDER);
+        controller.setEscalation(1.0f, 5);
+        controller.setRecovery(0.5f, 5);
+        List<Integer> levels = new ArrayList<>();
+        controller.addListener((oldLevel, newLevel, c) -> levels.add(newLevel));
+
+        for (int i = 0; i < 200; i++) {
+            controller.recordTick(BUDGET * 3, BUDGET);
+        }
+        assertEquals(2, controller.getLevel());
+        assertTrue(controller.isActive(OverloadController.Step.CAP_CATCH_UP));
+        assertTrue(controller.isActive(OverloadController.Step.SKIP_RENDER));
+        assertFalse(controller.isActive(OverloadController.Step.THROTTLE_LOW_PRIORITY));
+
+        for (int i = 0; i < 200; i++) {
+            controller.recordTick(0, BUDGET);
+        }
+        assertEquals(0, controller.getLevel());
+        assertEquals(List.of(1, 2, 1, 0), levels);
+    }
+
+    @Test
+    void testSkippingRenderLowersLoadAndDeescalates() {
+        OverloadController controller = new OverloadController();
+        controller.setDegradationOrder(OverloadController.Step.SKIP_RENDER,
+                OverloadController.Step.THROTTLE_LOW_PRIORITY);
+        controller.setRenderSkipInterval(2);
+
+        // 描画が重いと、更新が軽くても描画を間引き始める
+        long[] renderCost = {BUDGET * 14 / 10};
+        runFrames(controller, renderCost, 1000);
+        assertEquals(1, controller.getLevel());
+        assertTrue(controller.isActive(OverloadController.Step.SKIP_RENDER));
+        // 間引いた分だけ負荷が下がるので、それ以上は上がらない
+        assertTrue(controller.getAverageLoad() < 1.0f);
+        assertFalse(controller.isActive(OverloadController.Step.THROTTLE_LOW_PRIORITY));
+
+        // 描画が軽くなれば元に戻る
+        renderCost[0] = BUDGET * 8 / 10;
+        runFrames(controller, renderCost, 1000);
+        assertEquals(0, controller.getLevel());
+    }
+
+    /**
+     * GameEngineと同じく、SKIP_RENDER中は描画を間引きながら更新と描画の時間を記録する
+     */
+    private static void runFrames(OverloadController controller, long[] renderCost, int frames) {
+        for (int frame = 0; frame < frames; frame++) {
+            boolean skip = controller.isActive(OverloadController.Step.SKIP_RENDER)
+                    && frame % controller.getRenderSkipInterval() != 0;
+            if (!skip) {
+                controller.recordRender(renderCost[0]);
+            }
+            controller.recordTick(BUDGET / 10, BUDGET);
+        }
+    }
+
+    @Test
+    void testLowPriorityThrottleSlowsScheduler() {
+        SystemScheduler scheduler = new SystemScheduler();
+        int[] counts = new int[2];
+        GameSystem normal = new GameSystem() {
+            @Override
+            public void update(float deltaTime) {
+                counts[0]++;
+            }
+        };
+        GameSystem low = new GameSystem() {
+            @Override
+            public void update(float deltaTime) {
+                counts[1]++;
+            }
+        };
+        low.setLowPriority(true);
+        scheduler.add(normal);
+        scheduler.add(low);
+        scheduler.setLowPriorityThrottle(4);
+
+        for (int i = 0; i < 40; i++) {
+            scheduler.tick(1f / 60f, (system, dt) -> system.update(dt));
+        }
+
+        assertEquals(40, counts[0]);
+        assertEquals(10, counts[1]);
+    }
+}
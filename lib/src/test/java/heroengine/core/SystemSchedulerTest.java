@@ -0,0 +1,139 @@
+package heroengine.core;
+
+import heroengine.ecs.GameSystem;
+import heroengine.ecs.TickRate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SystemSchedulerTest {
+
+    private static final float DT = 1f / 60f;
+
+    @Test
+    void testEveryTickRunsEachTick() {
+        SystemScheduler scheduler = new SystemScheduler();
+        CountingSystem system = new CountingSystem();
+        scheduler.add(system);
+
+        runTicks(scheduler, 10);
+
+        assertEquals(10, system.deltas.size());
+        assertEquals(DT, system.deltas.get(0), 1e-6f);
+    }
+
+    @Test
+    void testEveryNTicksCoversElapsedTimeAndIsStaggered() {
+        SystemScheduler scheduler = new SystemScheduler();
+        CountingSystem a = new CountingSystem();
+        CountingSystem b = new CountingSystem();
+        a.setTickRate(TickRate.everyTicks(4));
+        b.setTickRate(TickRate.everyTicks(4));
+        scheduler.add(a);
+        scheduler.add(b);
+
+        runTicks(scheduler, 12);
+
+        assertEquals(List.of(0L, 4L, 8L), a.ticks);
+        assertEquals(List.of(1L, 5L, 9L), b.ticks);
+        assertEquals(4 * DT, a.deltas.get(1), 1e-6f);
+        assertEquals(2 * DT, b.deltas.get(0), 1e-6f);
+    }
+
+    @Test
+    void testFixedHzAccumulatesDelta() {
+        SystemScheduler scheduler = new SystemScheduler();
+        CountingSystem system = new CountingSystem();
+        system.setTickRate(TickRate.hz(10));
+        scheduler.add(system);
+
+        runTicks(scheduler, 60);
+
+        assertTrue(system.deltas.size() >= 9 && system.deltas.size() <= 10);
+        assertEquals(0.1f, system.deltas.get(1), 1e-4f);
+    }
+
+    @Test
+    void testOnDemandRunsOnlyWhenRequested() {
+        SystemScheduler scheduler = new SystemScheduler();
+        CountingSystem system = new CountingSystem();
+        system.setTickRate(TickRate.onDemand());
+        scheduler.add(system);
+
+        runTicks(scheduler, 5);
+        assertTrue(system.deltas.isEmpty());
+
+        system.requestUpdate();
+        runTicks(scheduler, 1);
+        assertEquals(1, system.deltas.size());
+        assertEquals(6 * DT, system.deltas.get(0), 1e-6f);
+    }
+
+    @Test
+    void testUpdateRequestIsConsumedOnceAndNullRateIsRejected() {
+        CountingSystem system = new CountingSystem();
+        system.requestUpdate();
+        system.requestUpdate();
+        assertTrue(system.consumeUpdateRequest());
+        assertFalse(system.consumeUpdateRequest());
+
+        assertThrows(IllegalArgumentException.class, () -> system.setTickRate(null));
+        assertNotNull(system.getTickRate());
+    }
+
+    @Test
+    void testRemoveAndRateChangeReleaseIntervalCount() {
+        SystemScheduler scheduler = new SystemScheduler();
+        CountingSystem a = new CountingSystem();
+        CountingSystem b = new CountingSystem();
+        a.setTickRate(TickRate.everyTicks(4));
+        b.setTickRate(TickRate.everyTicks(4));
+        scheduler.add(a);
+        scheduler.add(b);
+        assertEquals(2, scheduler.getIntervalCount(4));
+
+        assertTrue(scheduler.remove(a));
+        assertFalse(scheduler.remove(a));
+        assertEquals(1, scheduler.getIntervalCount(4));
+
+        // 間隔を変えると前の間隔からは外れる
+        b.setTickRate(TickRate.everyTicks(3));
+        runTicks(scheduler, 1);
+        assertEquals(0, scheduler.getIntervalCount(4));
+        assertEquals(1, scheduler.getIntervalCount(3));
+
+        // 削除と追加を繰り返しても数はずれない
+        for (int i = 0; i < 5; i++) {
+            scheduler.add(a);
+            scheduler.remove(a);
+        }
+        assertEquals(0, scheduler.getIntervalCount(4));
+        runTicks(scheduler, 12);
+        assertTrue(a.deltas.isEmpty());
+    }
+
+    private static void runTicks(SystemScheduler scheduler, int count) {
+        for (int i = 0; i < count; i++) {
+            scheduler.tick(DT, (system, dt) -> {
+                ((CountingSystem) system).tick = scheduler.getTick();
+                system.update(dt);
+            });
+        }
+    }
+
+    private static class CountingSystem extends GameSystem {
+
+        final List<Float> deltas = new ArrayList<>();
+        final List<Long> ticks = new ArrayList<>();
+        long tick;
+
+        @Override
+        public void update(float deltaTime) {
+            deltas.add(deltaTime);
+            ticks.add(tick);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package heroengine.graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageCacheTest {
+
+    @Test
+    void testConvertsToCompatibleFormatInHeadlessMode() {
+        BufferedImage loaded = new BufferedImage(3, 2, BufferedImage.TYPE_3BYTE_BGR);
+        loaded.setRGB(1, 1, 0xFF336699);
+
+        BufferedImage compatible = ImageCache.toCompatible(loaded);
+        assertEquals(BufferedImage.TYPE_INT_ARGB_PRE, compatible.getType());
+        assertEquals(0xFF336699, compatible.getRGB(1, 1));
+        assertSame(compatible, ImageCache.toCompatible(compatible));
+    }
+
+    @Test
+    void testMemoizesScaledVariantsPerImageRegionAndSize() {
+        ImageCache cache = new ImageCache();
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(7, 7, 0xFFFF0000);
+
+        BufferedImage scaled = cache.getScaled(image, 16, 16);
+        assertEquals(16, scaled.getWidth());
+        assertEquals(0xFFFF0000, scaled.getRGB(15, 15));
+        assertSame(scaled, cache.getScaled(image, 16, 16));
+        assertNotSame(scaled, cache.getScaled(image, 0, 0, 4, 4, 16, 16));
+        assertNotSame(scaled, cache.getScaled(new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB), 16, 16));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3 * 16 * 16 * 4, cache.getUsedBytes());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedUnderBudget() {
+        ImageCache cache = new ImageCache(3 * 10 * 10 * 4);
+        BufferedImage a = new BufferedImage(5, 5, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage b = new BufferedImage(5, 5, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage c = new BufferedImage(5, 5, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage d = new BufferedImage(5, 5, BufferedImage.TYPE_INT_ARGB);
+
+        BufferedImage scaledA = cache.getScaled(a, 10, 10);
+        BufferedImage scaledB = cache.getScaled(b, 10, 10);
+        cache.getScaled(c, 10, 10);
+        assertSame(scaledA, cache.getScaled(a, 10, 10)); // aを使ったのでbが一番古い
+        cache.getScaled(d, 10, 10);
+
+        assertEquals(3, cache.size());
+        assertSame(scaledA, cache.getScaled(a, 10, 10));
+        assertNotSame(scaledB, cache.getScaled(b, 10, 10));
+
+        // 上限を超える大きさは保持しない
+        assertNull(cache.getScaled(a, 100, 100));
+        cache.setBudgetBytes(10 * 10 * 4);
+        assertEquals(1, cache.size());
+        assertEquals(10 * 10 * 4, cache.getUsedBytes());
+    }
+
+    @Test
+    void testInvalidateDropsOnlyVariantsOfThatImage() {
+        ImageCache cache = new ImageCache();
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage other = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        fill(image, 0xFFFF0000);
+        BufferedImage before = cache.getScaled(image, 4, 4);
+        cache.getScaled(image, 8, 8);
+        BufferedImage kept = cache.getScaled(other, 4, 4);
+
+        // 書き換えただけでは古い画像が返り、invalidateすると作り直される
+        fill(image, 0xFF00FF00);
+        assertSame(before, cache.getScaled(image, 4, 4));
+        cache.invalidate(image);
+        assertEquals(1, cache.size());
+        assertEquals(4 * 4 * 4, cache.getUsedBytes());
+        assertEquals(0xFF00FF00, cache.getScaled(image, 4, 4).getRGB(0, 0));
+        assertSame(kept, cache.getScaled(other, 4, 4));
+    }
+
+    @Test
+    void testInterpolationIsConfigurable() {
+        ImageCache cache = new ImageCache();
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xFFFF0000);
+        image.setRGB(1, 0, 0xFF0000FF);
+        assertNotEquals(0xFFFF0000, cache.getScaled(image, 8, 1).getRGB(3, 0)); // 補間で混ざる
+
+        cache.setInterpolation(RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        assertEquals(0, cache.size());
+        BufferedImage nearest = cache.getScaled(image, 8, 1);
+        assertEquals(0xFFFF0000, nearest.getRGB(3, 0));
+        assertEquals(0xFF0000FF, nearest.getRGB(4, 0));
+        assertThrows(IllegalArgumentException.class, () -> cache.setInterpolation(RenderingHints.VALUE_RENDER_QUALITY));
+    }
+
+    private static void fill(BufferedImage image, int argb) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, argb);
+            }
+        }
+    }
+}
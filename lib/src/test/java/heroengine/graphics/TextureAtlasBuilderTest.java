@@ -0,0 +1,66 @@
+package heroengine.graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextureAtlasBuilderTest {
+
+    @Test
+    void testPacksWithoutOverlapAndCopiesPixels() {
+        Random random = new Random(42);
+        TextureAtlasBuilder builder = new TextureAtlasBuilder().setPageSize(128).setPadding(1);
+        List<BufferedImage> images = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            BufferedImage image = new BufferedImage(4 + random.nextInt(28), 4 + random.nextInt(28),
+                    BufferedImage.TYPE_INT_ARGB);
+            image.setRGB(0, 0, 0xFF000000 | i);
+            image.setRGB(image.getWidth() - 1, image.getHeight() - 1, 0xFF00FF00 | i);
+            images.add(image);
+            builder.add("image" + i, image);
+        }
+        BufferedImage large = new BufferedImage(200, 50, BufferedImage.TYPE_INT_ARGB);
+        builder.add("large", large);
+        TextureAtlas atlas = builder.build();
+
+        assertTrue(atlas.getPageCount() >= 2);
+        List<AtlasRegion> regions = new ArrayList<>(atlas.getRegions().values());
+        assertEquals(61, regions.size());
+        assertEquals("image0", regions.get(0).name);
+
+        AtlasRegion largeRegion = atlas.getRegion("large");
+        assertEquals(200, largeRegion.page.getWidth());
+        assertEquals(0, largeRegion.x);
+
+        for (int i = 0; i < 60; i++) {
+            AtlasRegion a = atlas.getRegion("image" + i);
+            BufferedImage image = images.get(i);
+            assertEquals(image.getWidth(), a.width);
+            assertSame(atlas.getPage(a.pageIndex), a.page);
+            assertTrue(a.x + a.width <= a.page.getWidth() && a.y + a.height <= a.page.getHeight());
+            assertEquals(image.getRGB(0, 0), a.page.getRGB(a.x, a.y));
+            assertEquals(image.getRGB(a.width - 1, a.height - 1), a.page.getRGB(a.x + a.width - 1, a.y + a.height - 1));
+            for (AtlasRegion b : regions) {
+                if (a != b && a.page == b.page) {
+                    boolean separate = a.x + a.width + 1 <= b.x || b.x + b.width + 1 <= a.x
+                            || a.y + a.height + 1 <= b.y || b.y + b.height + 1 <= a.y;
+                    assertTrue(separate, a + " overlaps " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRejectsDuplicateNames() {
+        TextureAtlasBuilder builder = new TextureAtlasBuilder();
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        builder.add("a", image);
+        assertThrows(IllegalArgumentException.class, () -> builder.add("a", image));
+        assertThrows(IllegalArgumentException.class, () -> builder.build().getRegion("b"));
+    }
+}
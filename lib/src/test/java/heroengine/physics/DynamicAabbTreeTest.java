@@ -0,0 +1,87 @@
+package heroengine.physics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DynamicAabbTreeTest {
+
+    @Test
+    void testQueryFindsAllOverlapsAndTreeStaysBalanced() {
+        DynamicAabbTree tree = new DynamicAabbTree(1);
+        Random random = new Random(3);
+        List<float[]> boxes = new ArrayList<>();
+        List<Integer> proxies = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            float size = random.nextBoolean() ? 2 : 200;
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            float[] box = {x, y, x + size * random.nextFloat(), y + size * random.nextFloat()};
+            boxes.add(box);
+            proxies.add(tree.createProxy(box[0], box[1], box[2], box[3], i));
+        }
+        // 半分を移動、1/4を削除
+        for (int i = 0; i < 500; i++) {
+            float[] box = boxes.get(i);
+            float dx = random.nextFloat() * 20 - 10;
+            box[0] += dx;
+            box[2] += dx;
+            tree.moveProxy(proxies.get(i), box[0], box[1], box[2], box[3]);
+        }
+        Set<Integer> removed = new HashSet<>();
+        for (int i = 0; i < 250; i++) {
+            int index = random.nextInt(1000);
+            if (removed.add(index)) {
+                tree.destroyProxy(proxies.get(index));
+            }
+        }
+
+        assertEquals(1000 - removed.size(), tree.getProxyCount());
+        assertTrue(tree.getHeight() < 24, "height " + tree.getHeight());
+
+        float[] query = {300, 300, 500, 450};
+        Set<Integer> found = new HashSet<>();
+        tree.query(query[0], query[1], query[2], query[3], proxy -> {
+            found.add(tree.getUserData(proxy));
+            return true;
+        });
+        for (int i = 0; i < boxes.size(); i++) {
+            float[] box = boxes.get(i);
+            boolean overlaps = !(box[2] < query[0] || query[2] < box[0] || box[3] < query[1] || query[3] < box[1]);
+            if (overlaps && !removed.contains(i)) {
+                assertTrue(found.contains(i), "missing " + i);
+            }
+        }
+    }
+
+    @Test
+    void testSmallMovesDoNotReinsert() {
+        DynamicAabbTree tree = new DynamicAabbTree(5);
+        int proxy = tree.createProxy(0, 0, 10, 10, 0);
+
+        assertFalse(tree.moveProxy(proxy, 3, 3, 13, 13));
+        assertTrue(tree.moveProxy(proxy, 30, 0, 40, 10));
+    }
+
+    @Test
+    void testRayCastHitsBoxOnPath() {
+        DynamicAabbTree tree = new DynamicAabbTree(0);
+        tree.createProxy(50, -5, 60, 5, 1);
+        tree.createProxy(50, 20, 60, 30, 2);
+
+        List<Integer> hits = new ArrayList<>();
+        tree.rayCast(0, 0, 100, 0, (proxy, x1, y1, x2, y2, maxFraction) -> {
+            hits.add(tree.getUserData(proxy));
+            return maxFraction;
+        });
+
+        assertEquals(List.of(1), hits);
+    }
+}
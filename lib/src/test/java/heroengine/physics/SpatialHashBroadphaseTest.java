@@ -0,0 +1,53 @@
+package heroengine.physics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatialHashBroadphaseTest {
+
+    @Test
+    void testHugeAndInfiniteCollidersTerminateAndMatchBruteForce() {
+        ColliderSet colliders = new ColliderSet();
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            float x = random.nextFloat() * 400;
+            float y = random.nextFloat() * 400;
+            colliders.add(null, x, y, x + 20, y + 20);
+        }
+        colliders.add(null, -1e30f, 100, 1e30f, 120); // 巨大な床
+        colliders.add(null, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY); // 無限の範囲
+        colliders.add(null, 1e12f, 1e12f, 1e12f + 10, 1e12f + 10); // intに収まらないセル座標
+        colliders.add(null, 1e12f, 1e12f, 1e12f + 10, 1e12f + 10);
+
+        SpatialHashBroadphase hash = new SpatialHashBroadphase(32);
+        assertEquals(pairs(new BruteForceBroadphase(), colliders), pairs(hash, colliders));
+
+        List<Integer> found = new ArrayList<>();
+        hash.query(colliders, 1e12f, 1e12f, 1e12f + 1, 1e12f + 1, i -> found.add(i) || true);
+        assertEquals(List.of(101, 102, 103), found.stream().sorted().toList());
+
+        found.clear();
+        hash.query(colliders, Float.NEGATIVE_INFINITY, 0, Float.POSITIVE_INFINITY, 0, i -> found.add(i) || true);
+        assertTrue(found.contains(101));
+    }
+
+    private static List<Long> pairs(Broadphase broadphase, ColliderSet colliders) {
+        PairBuffer buffer = new PairBuffer();
+        broadphase.findPairs(colliders, buffer);
+        buffer.sort();
+        List<Long> result = new ArrayList<>();
+        for (int k = 0; k < buffer.size(); k++) {
+            // 空間ハッシュは同じセルの組を候補として返すので、重なっている組だけを比べる
+            if (colliders.overlaps(buffer.first(k), buffer.second(k))) {
+                result.add((long) buffer.first(k) << 32 | buffer.second(k));
+            }
+        }
+        return result;
+    }
+}
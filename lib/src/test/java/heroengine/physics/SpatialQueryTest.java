@@ -0,0 +1,132 @@
+package heroengine.physics;
+
+import heroengine.components.BoxCollider;
+import heroengine.components.Transform;
+import heroengine.ecs.Entity;
+import heroengine.ecs.EntityManager;
+import heroengine.systems.CollisionSystem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatialQueryTest {
+
+    @Test
+    void testQueriesMatchLinearScanForEveryBroadphase() {
+        for (Broadphase broadphase : List.of(new BruteForceBroadphase(), new SpatialHashBroadphase(32),
+                new SweepAndPruneBroadphase(), new AabbTreeBroadphase())) {
+            assertQueriesMatchLinearScan(broadphase);
+        }
+    }
+
+    @Test
+    void testRaycastReturnsClosestHitWithNormal() {
+        EntityManager entityManager = new EntityManager();
+        Entity near = entityManager.spawn(new Transform(300, 0), new BoxCollider(20, 20).setStatic(true));
+        entityManager.spawn(new Transform(900, 0), new BoxCollider(20, 20));
+        entityManager.refresh();
+        CollisionSystem system = new CollisionSystem(new SpatialHashBroadphase(32));
+        system.setEntityManager(entityManager);
+        system.update(1f / 60f);
+
+        RaycastHit hit = new RaycastHit();
+        assertTrue(system.getSpatialQuery().raycast(0, 0, 1, 0, Float.POSITIVE_INFINITY, hit));
+        assertSame(near, hit.entity);
+        assertEquals(290, hit.distance, 1e-3f);
+        assertEquals(-1, hit.normalX);
+        assertEquals(0, hit.normalY);
+
+        assertFalse(system.getSpatialQuery().raycast(0, 0, 1, 0, 200, hit));
+        assertFalse(system.getSpatialQuery().raycast(0, 0, 0, 1, Float.POSITIVE_INFINITY, hit));
+    }
+
+    @Test
+    void testRaycastOverHugeDistanceTerminates() {
+        EntityManager entityManager = new EntityManager();
+        entityManager.spawn(new Transform(-100, 0), new BoxCollider(20, 20));
+        Entity far = entityManager.spawn(new Transform(1e30f, 0), new BoxCollider(20, 20));
+        entityManager.refresh();
+        CollisionSystem system = new CollisionSystem(new SpatialHashBroadphase(32));
+        system.setEntityManager(entityManager);
+        system.update(1f / 60f);
+
+        RaycastHit hit = new RaycastHit();
+        assertTrue(system.getSpatialQuery().raycast(0, 0, 1, 0, Float.POSITIVE_INFINITY, hit));
+        assertSame(far, hit.entity);
+        assertEquals(1e30f, hit.distance, 1e24f);
+        assertFalse(system.getSpatialQuery().raycast(0, 5, 1, 0, 1e20f, hit));
+    }
+
+    private static void assertQueriesMatchLinearScan(Broadphase broadphase) {
+        EntityManager entityManager = new EntityManager();
+        Random random = new Random(11);
+        List<Entity> entities = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            entities.add(entityManager.spawn(
+                    new Transform(random.nextFloat() * 1000, random.nextFloat() * 1000),
+                    new BoxCollider(5 + random.nextFloat() * 30, 5 + random.nextFloat() * 30).setStatic(i % 3 == 0)));
+        }
+        entityManager.refresh();
+        CollisionSystem system = new CollisionSystem(broadphase);
+        system.setEntityManager(entityManager);
+        system.update(1f / 60f);
+        SpatialQuery query = system.getSpatialQuery();
+        QueryResults results = new QueryResults();
+
+        for (int q = 0; q < 50; q++) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            float size = random.nextFloat() * 150;
+
+            query.queryAabb(x, y, x + size, y + size, results);
+            Set<Entity> expected = new HashSet<>();
+            for (Entity entity : entities) {
+                float[] box = bounds(entity);
+                if (!(box[2] < x || x + size < box[0] || box[3] < y || y + size < box[1])) {
+                    expected.add(entity);
+                }
+            }
+            assertEquals(expected, toSet(results), broadphase.getClass().getSimpleName());
+            assertEquals(expected.size(), results.size());
+
+            // k近傍は距離の並びが線形探索と一致する
+            int k = 5;
+            query.nearest(x, y, k, results);
+            List<Float> distances = new ArrayList<>();
+            for (Entity entity : entities) {
+                float[] box = bounds(entity);
+                float dx = Math.max(Math.max(box[0] - x, x - box[2]), 0);
+                float dy = Math.max(Math.max(box[1] - y, y - box[3]), 0);
+                distances.add((float) Math.sqrt(dx * dx + dy * dy));
+            }
+            distances.sort(null);
+            assertEquals(k, results.size());
+            for (int i = 0; i < k; i++) {
+                assertEquals(distances.get(i), results.getDistance(i), 1e-3f);
+            }
+        }
+    }
+
+    private static float[] bounds(Entity entity) {
+        Transform transform = entity.getComponent(Transform.class).get();
+        BoxCollider collider = entity.getComponent(BoxCollider.class).get();
+        return new float[]{
+                transform.x - collider.width / 2, transform.y - collider.height / 2,
+                transform.x + collider.width / 2, transform.y + collider.height / 2
+        };
+    }
+
+    private static Set<Entity> toSet(QueryResults results) {
+        Set<Entity> set = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            set.add(results.get(i));
+        }
+        return set;
+    }
+}
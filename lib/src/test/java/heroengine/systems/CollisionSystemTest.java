@@ -0,0 +1,369 @@
+package heroengine.systems;
+
+import heroengine.components.BoxCollider;
+import heroengine.components.Bullet;
+import heroengine.components.Transform;
+import heroengine.components.Velocity;
+import heroengine.ecs.Entity;
+import heroengine.ecs.EntityManager;
+import heroengine.physics.AabbTreeBroadphase;
+import heroengine.physics.Broadphase;
+import heroengine.physics.BruteForceBroadphase;
+import heroengine.physics.SpatialHashBroadphase;
+import heroengine.physics.SweepAndPruneBroadphase;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollisionSystemTest {
+
+    @Test
+    void testSpatialHashMatchesBruteForce() {
+        assertMatchesBruteForce(new SpatialHashBroadphase(32));
+    }
+
+    @Test
+    void testSweepAndPruneMatchesBruteForce() {
+        assertMatchesBruteForce(new SweepAndPruneBroadphase());
+    }
+
+    @Test
+    void testAabbTreeMatchesBruteForce() {
+        assertMatchesBruteForce(new AabbTreeBroadphase(2));
+    }
+
+    @Test
+    void testParallelNarrowphaseMatchesSerialOrder() {
+        EntityManager entityManager = new EntityManager();
+        Random random = new Random(3);
+        for (int i = 0; i < 400; i++) {
+            entityManager.spawn(
+                    new Transform(random.nextFloat() * 400, random.nextFloat() * 400),
+                    new BoxCollider(10 + random.nextFloat() * 40, 10 + random.nextFloat() * 40).setStatic(i % 5 == 0));
+        }
+        entityManager.refresh();
+
+        RecordingCollisionSystem serial = new RecordingCollisionSystem(new SpatialHashBroadphase(32));
+        RecordingCollisionSystem parallel = new RecordingCollisionSystem(new SpatialHashBroadphase(32));
+        parallel.setNarrowphaseThreads(4);
+        parallel.setMinPairsPerThread(64);
+        serial.setEntityManager(entityManager);
+        parallel.setEntityManager(entityManager);
+
+        try {
+            serial.update(1f / 60f);
+            parallel.update(1f / 60f);
+            assertTrue(serial.events.size() > 256);
+            assertEquals(serial.events, parallel.events);
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    void testBulletStopsAtFirstHitInsteadOfTunnelling() {
+        EntityManager entityManager = new EntityManager();
+        Entity wall = entityManager.spawn(new Transform(100, 0), new BoxCollider(10, 100));
+        Entity bullet = entityManager.spawn(new Transform(0, 0), new Velocity(6000, 0), new BoxCollider(10, 10), new Bullet());
+        entityManager.refresh();
+        RecordingCollisionSystem system = new RecordingCollisionSystem(new SpatialHashBroadphase(32));
+        system.setEntityManager(entityManager);
+
+        MovementSystem movement = new MovementSystem();
+        movement.setEntityManager(entityManager);
+
+        // 1/30秒で200移動すると、壁を完全に通り過ぎる
+        Transform transform = bullet.getComponent(Transform.class).get();
+        movement.update(1f / 30f);
+        assertEquals(200, transform.x, 1e-3f);
+        system.update(1f / 30f);
+
+        // 壁の左端（95）に弾の右端（+5）が接する位置まで戻される
+        assertEquals(90, transform.x, 1e-3f);
+        assertEquals(0, transform.y, 1e-3f);
+        assertTrue(system.isTouching(wall, bullet));
+        assertEquals(List.of("enter"), system.contacts);
+
+        // 連続衝突判定を無効にすると通り抜ける
+        system.setContinuousCollision(false);
+        transform.setPosition(0, 0);
+        movement.update(1f / 30f);
+        system.update(1f / 30f);
+        assertFalse(system.isTouching(wall, bullet));
+    }
+
+    @Test
+    void testBulletSweepsFromRecordedStartNotFromVelocity() {
+        EntityManager entityManager = new EntityManager();
+        Entity wall = entityManager.spawn(new Transform(100, 0), new BoxCollider(10, 100));
+        Entity bullet = entityManager.spawn(new Transform(0, 0), new Velocity(3000, 0), new BoxCollider(10, 10), new Bullet());
+        entityManager.refresh();
+        RecordingCollisionSystem system = new RecordingCollisionSystem(new SpatialHashBroadphase(32));
+        system.setEntityManager(entityManager);
+        MovementSystem movement = new MovementSystem();
+        movement.setEntityManager(entityManager);
+
+        // 判定の間に2回動いても（Velocity × deltaTime の2倍）、最初の位置から掃引する
+        Transform transform = bullet.getComponent(Transform.class).get();
+        movement.update(1f / 30f);
+        movement.update(1f / 30f);
+        assertEquals(200, transform.x, 1e-3f);
+        system.update(1f / 30f);
+        assertEquals(90, transform.x, 1e-3f);
+        assertTrue(system.isTouching(wall, bullet));
+
+        // 速度を持っていても、記録がなければ（ワープなど）掃引しない
+        transform.setPosition(300, 0);
+        system.update(1f / 30f);
+        assertEquals(300, transform.x, 1e-3f);
+        assertFalse(system.isTouching(wall, bullet));
+    }
+
+    @Test
+    void testBulletStoppedByStaticWallDoesNotHitWallBehindIt() {
+        for (int threads : new int[]{1, 2}) {
+            EntityManager entityManager = new EntityManager();
+            Entity front = entityManager.spawn(new Transform(100, 0), new BoxCollider(10, 100).setStatic(true));
+            Entity back = entityManager.spawn(new Transform(150, 0), new BoxCollider(10, 100).setStatic(true));
+            Entity bullet = entityManager.spawn(new Transform(0, 0), new Velocity(6000, 0), new BoxCollider(10, 10), new Bullet());
+            entityManager.refresh();
+            RecordingCollisionSystem system = new RecordingCollisionSystem(new SpatialHashBroadphase(32));
+            system.setNarrowphaseThreads(threads);
+            system.setMinPairsPerThread(1);
+            system.setEntityManager(entityManager);
+            MovementSystem movement = new MovementSystem();
+            movement.setEntityManager(entityManager);
+
+            // 掃引範囲には両方の壁が入るが、弾は手前の壁で止まるので奥の壁には当たらない
+            try {
+                movement.update(1f / 30f);
+                system.update(1f / 30f);
+            } finally {
+                system.shutdown();
+            }
+            assertEquals(90, bullet.getComponent(Transform.class).get().x, 1e-3f);
+            assertEquals(List.of(front.getId() + "-" + bullet.getId()), system.events, "threads " + threads);
+            assertEquals(List.of("enter"), system.contacts);
+            assertTrue(system.isTouching(front, bullet));
+            assertFalse(system.isTouching(back, bullet));
+        }
+    }
+
+    @Test
+    void testContactEnterStayExitFireOnStateChanges() {
+        EntityManager entityManager = new EntityManager();
+        Entity a = entityManager.spawn(new Transform(0, 0), new BoxCollider(10, 10));
+        Entity b = entityManager.spawn(new Transform(100, 0), new BoxCollider(10, 10));
+        entityManager.refresh();
+        RecordingCollisionSystem system = new RecordingCollisionSystem(new BruteForceBroadphase());
+        system.setEntityManager(entityManager);
+
+        system.update(1f / 60f);
+        assertTrue(system.contacts.isEmpty());
+
+        b.getComponent(Transform.class).get().setPosition(5, 0);
+        system.update(1f / 60f);
+        system.update(1f / 60f);
+        system.update(1f / 60f);
+        assertTrue(system.isTouching(a, b));
+
+        b.getComponent(Transform.class).get().setPosition(100, 0);
+        system.update(1f / 60f);
+        system.update(1f / 60f);
+
+        assertEquals(List.of("enter", "stay", "stay", "exit"), system.contacts);
+        assertFalse(system.isTouching(a, b));
+        assertEquals(0, system.getContactCount());
+    }
+
+    @Test
+    void testLayersFilterPairsAndTriggersAreRoutedSeparately() {
+        EntityManager entityManager = new EntityManager();
+        Entity wallA = entityManager.spawn(new Transform(0, 0), new BoxCollider(10, 10).setLayer(1, 0, 2));
+        Entity wallB = entityManager.spawn(new Transform(5, 0), new BoxCollider(10, 10).setLayer(1, 0, 2));
+        Entity ball = entityManager.spawn(new Transform(2, 0), new BoxCollider(10, 10));
+        BoxCollider zoneCollider = new BoxCollider(10, 10).setLayer(2).setTrigger(true);
+        zoneCollider.mask = 0;
+        Entity zone = entityManager.spawn(new Transform(3, 0), zoneCollider);
+        entityManager.refresh();
+        RecordingCollisionSystem system = new RecordingCollisionSystem(new SpatialHashBroadphase(32));
+        system.setEntityManager(entityManager);
+        system.getCollisionMatrix().setCollides(0, 2, false);
+
+        system.update(1f / 60f);
+
+        // 壁同士はマスクで、ボールとゾーンはレイヤー表で除かれる
+        assertFalse(system.isTouching(wallA, wallB));
+        assertFalse(system.isTouching(ball, zone));
+        assertTrue(system.isTouching(wallA, ball));
+        assertTrue(system.isTouching(wallB, ball));
+        assertEquals(List.of(wallA.getId() + "-" + ball.getId(), wallB.getId() + "-" + ball.getId()), system.events);
+
+        // レイヤー2はマスクが空なので、トリガーにするには相手を指定する
+        zone.getComponent(BoxCollider.class).get().setLayer(2, 1);
+        system.update(1f / 60f);
+        zone.getComponent(Transform.class).get().setPosition(100, 0);
+        system.update(1f / 60f);
+
+        assertEquals(List.of("enter-" + wallA.getId(), "enter-" + wallB.getId(), "exit-" + wallA.getId(), "exit-" + wallB.getId()),
+                system.triggers);
+    }
+
+    @Test
+    void testSetLayerValidatesLayersAndKeepsMaskWhenNoneGiven() {
+        BoxCollider collider = new BoxCollider(10, 10).setLayer(1, 0, 2);
+        assertEquals(0b101, collider.mask);
+
+        collider.setLayer(3);
+        assertEquals(3, collider.layer);
+        assertEquals(0b101, collider.mask);
+
+        assertThrows(IllegalArgumentException.class, () -> collider.setLayer(32));
+        assertThrows(IllegalArgumentException.class, () -> collider.setLayer(1, -1));
+        assertEquals(3, collider.layer);
+        assertEquals(0b101, collider.mask);
+    }
+
+    @Test
+    void testStaticCollidersAreTestedOnlyAgainstDynamics() {
+        EntityManager entityManager = new EntityManager();
+        Random random = new Random(7);
+        List<Entity> tiles = new ArrayList<>();
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 20; x++) {
+                tiles.add(entityManager.spawn(new Transform(x * 16, y * 16), new BoxCollider(16, 16).setStatic(true)));
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            entityManager.spawn(
+                    new Transform(random.nextFloat() * 320, random.nextFloat() * 320),
+                    new BoxCollider(4 + random.nextFloat() * 20, 4 + random.nextFloat() * 20));
+        }
+        entityManager.refresh();
+
+        RecordingCollisionSystem mixed = new RecordingCollisionSystem(new SpatialHashBroadphase(32));
+        RecordingCollisionSystem allDynamic = new RecordingCollisionSystem(new BruteForceBroadphase()) {
+            @Override
+            public void update(float deltaTime) {
+                tiles.forEach(tile -> tile.getComponent(BoxCollider.class).get().isStatic = false);
+                super.update(deltaTime);
+                tiles.forEach(tile -> tile.getComponent(BoxCollider.class).get().isStatic = true);
+            }
+        };
+        mixed.setEntityManager(entityManager);
+        allDynamic.setEntityManager(entityManager);
+
+        for (int frame = 0; frame < 3; frame++) {
+            mixed.update(1f / 60f);
+            allDynamic.update(1f / 60f);
+            assertEquals(400 - frame, mixed.getStaticColliderCount());
+
+            // 静的同士のペアを除けば、通知の順番と引数の順番まで総当たりと同じになる
+            List<String> expected = new ArrayList<>();
+            for (String pair : allDynamic.events) {
+                String[] ids = pair.split("-");
+                if (!(isTile(tiles, Long.parseLong(ids[0])) && isTile(tiles, Long.parseLong(ids[1])))) {
+                    expected.add(pair);
+                }
+            }
+            assertFalse(mixed.events.isEmpty());
+            assertEquals(expected, mixed.events, "frame " + frame);
+            mixed.events.clear();
+            allDynamic.events.clear();
+
+            // 静的コライダーを削除すると焼き直される
+            entityManager.removeEntity(tiles.remove(tiles.size() - 1));
+            entityManager.refresh();
+        }
+        mixed.update(1f / 60f);
+        assertEquals(397, mixed.getStaticColliderCount());
+    }
+
+    private static boolean isTile(List<Entity> tiles, long id) {
+        return tiles.stream().anyMatch(tile -> tile.getId() == id);
+    }
+
+    private static void assertMatchesBruteForce(Broadphase broadphase) {
+        EntityManager entityManager = new EntityManager();
+        Random random = new Random(42);
+        List<Entity> entities = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            entities.add(entityManager.spawn(
+                    new Transform(random.nextFloat() * 800 - 200, random.nextFloat() * 600 - 200),
+                    new BoxCollider(5 + random.nextFloat() * 40, 5 + random.nextFloat() * 40)
+                            .setLayer(random.nextInt(3), 0, 1, 2)
+            ));
+        }
+        entityManager.refresh();
+
+        RecordingCollisionSystem expected = new RecordingCollisionSystem(new BruteForceBroadphase());
+        RecordingCollisionSystem actual = new RecordingCollisionSystem(broadphase);
+        expected.getCollisionMatrix().setCollides(2, 2, false);
+        actual.getCollisionMatrix().setCollides(2, 2, false);
+        expected.setEntityManager(entityManager);
+        actual.setEntityManager(entityManager);
+
+        for (int frame = 0; frame < 8; frame++) {
+            expected.update(1f / 60f);
+            actual.update(1f / 60f);
+            assertFalse(expected.events.isEmpty());
+            assertEquals(expected.events, actual.events, "frame " + frame);
+            expected.events.clear();
+            actual.events.clear();
+
+            for (Entity entity : entities) {
+                entity.getComponent(Transform.class).get().translate(random.nextFloat() * 6 - 3, random.nextFloat() * 6 - 3);
+            }
+            if (frame == 2) {
+                entityManager.removeEntity(entities.remove(0));
+                entities.add(entityManager.spawn(new Transform(100, 100), new BoxCollider(30, 30)));
+                entityManager.refresh();
+            }
+        }
+    }
+
+    static class RecordingCollisionSystem extends CollisionSystem {
+
+        final List<String> events = new ArrayList<>();
+        final List<String> contacts = new ArrayList<>();
+        final List<String> triggers = new ArrayList<>();
+
+        RecordingCollisionSystem(Broadphase broadphase) {
+            super(broadphase);
+        }
+
+        @Override
+        protected void onCollision(Entity a, Entity b) {
+            events.add(a.getId() + "-" + b.getId());
+        }
+
+        @Override
+        protected void onCollisionEnter(Entity a, Entity b) {
+            contacts.add("enter");
+        }
+
+        @Override
+        protected void onCollisionStay(Entity a, Entity b) {
+            contacts.add("stay");
+        }
+
+        @Override
+        protected void onCollisionExit(Entity a, Entity b) {
+            contacts.add("exit");
+        }
+
+        @Override
+        protected void onTriggerEnter(Entity a, Entity b) {
+            triggers.add("enter-" + a.getId());
+        }
+
+        @Override
+        protected void onTriggerExit(Entity a, Entity b) {
+            triggers.add("exit-" + a.getId());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package heroengine.systems;
+
+import heroengine.components.SimulationLod;
+import heroengine.components.Transform;
+import heroengine.components.Velocity;
+import heroengine.ecs.Entity;
+import heroengine.ecs.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LodSystemTest {
+
+    @Test
+    void testFarEntitiesUpdateLessOftenButCoverTheSameTime() {
+        EntityManager entityManager = new EntityManager();
+        LodSystem lodSystem = new LodSystem();
+        lodSystem.setBucketDistances(100, 200, 300);
+        lodSystem.addFocusPoint(0, 0);
+        MovementSystem movementSystem = new MovementSystem();
+        lodSystem.setEntityManager(entityManager);
+        movementSystem.setEntityManager(entityManager);
+
+        Entity near = entityManager.spawn(new Transform(0, 0), new Velocity(10, 0), new SimulationLod());
+        Entity far = entityManager.spawn(new Transform(1000, 0), new Velocity(10, 0), new SimulationLod());
+        entityManager.refresh();
+
+        int farUpdates = 0;
+        int lastFarUpdate = -1;
+        for (int i = 0; i < 16; i++) {
+            lodSystem.update(0.1f);
+            if (LodSystem.isDue(far)) {
+                farUpdates++;
+                lastFarUpdate = i;
+            }
+            movementSystem.update(0.1f);
+        }
+
+        assertEquals(3, far.getComponent(SimulationLod.class).get().bucket);
+        assertEquals(2, farUpdates);
+        assertEquals(16.0f, near.getComponent(Transform.class).get().x, 1e-4f);
+        // 1/8の頻度でも、最後の更新までの時間分だけちょうど移動している
+        assertEquals(1000 + (lastFarUpdate + 1), far.getComponent(Transform.class).get().x, 1e-3f);
+    }
+
+    @Test
+    void testMovementWithoutLodSystemMovesEveryTick() {
+        EntityManager entityManager = new EntityManager();
+        MovementSystem movementSystem = new MovementSystem();
+        movementSystem.setEntityManager(entityManager);
+        Entity entity = entityManager.spawn(new Transform(0, 0), new Velocity(10, 0), new SimulationLod());
+        entityManager.refresh();
+
+        for (int i = 0; i < 5; i++) {
+            movementSystem.update(0.1f);
+        }
+
+        assertEquals(5.0f, entity.getComponent(Transform.class).get().x, 1e-4f);
+    }
+
+    @Test
+    void testThrottledLodSystemDoesNotCountTimeTwice() {
+        EntityManager entityManager = new EntityManager();
+        LodSystem lodSystem = new LodSystem();
+        MovementSystem movementSystem = new MovementSystem();
+        lodSystem.setEntityManager(entityManager);
+        movementSystem.setEntityManager(entityManager);
+        Entity entity = entityManager.spawn(new Transform(0, 0), new Velocity(10, 0), new SimulationLod());
+        entityManager.refresh();
+
+        // LodSystemは4ティックに1回だけ、MovementSystemより後に更新される
+        for (int i = 0; i < 12; i++) {
+            movementSystem.update(0.1f);
+            if (i % 4 == 3) {
+                lodSystem.update(0.4f);
+            }
+        }
+
+        assertEquals(12.0f, entity.getComponent(Transform.class).get().x, 1e-4f);
+    }
+}
@@ -0,0 +1,276 @@
+package heroengine.systems;
+
+import heroengine.components.Camera;
+import heroengine.components.ImageSprite;
+import heroengine.components.Sprite;
+import heroengine.components.Text;
+import heroengine.components.Transform;
+import heroengine.components.Velocity;
+import heroengine.ecs.Entity;
+import heroengine.ecs.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderListTest {
+
+    private final EntityManager entityManager = new EntityManager();
+    private final RenderList renderList = new RenderList();
+
+    @Test
+    void testSortsByZOrderAndKeepsInsertionOrderForTies() {
+        int[] zOrders = {3, -1, 3, 0, -70000, 3, 1 << 20, -1};
+        Sprite[] sprites = new Sprite[zOrders.length];
+        for (int i = 0; i < zOrders.length; i++) {
+            sprites[i] = spawnSprite(zOrders[i]);
+        }
+        entityManager.refresh();
+        renderList.update(entityManager);
+
+        assertOrder(sprites, 4, 1, 7, 3, 0, 2, 5, 6);
+    }
+
+    @Test
+    void testResortsOnZOrderChangeAndRebuildsOnStructureChange() {
+        Sprite a = spawnSprite(0);
+        Sprite b = spawnSprite(1);
+        Entity c = entityManager.spawn(new Transform(), new Sprite(10, 10));
+        entityManager.refresh();
+        renderList.update(entityManager);
+        assertOrder(new Sprite[]{a, b, c.getComponent(Sprite.class).get()}, 0, 2, 1);
+
+        // zOrderだけの変更は並べ直しで反映される
+        a.zOrder = 5;
+        renderList.update(entityManager);
+        collectAll();
+        assertSame(a, renderList.sprite(renderList.at(2)));
+
+        // コンポーネントの削除とエンティティの追加は、変わったエンティティの分だけ反映される
+        c.removeComponent(Sprite.class);
+        renderList.update(entityManager);
+        assertEquals(2, renderList.size());
+
+        entityManager.spawn(new Transform(), new Text("score"));
+        entityManager.refresh();
+        renderList.update(entityManager);
+        assertEquals(1, renderList.textCount());
+    }
+
+    @Test
+    void testStructureChangesUpdateOnlyChangedEntities() {
+        Entity a = entityManager.spawn(new Transform(0, 0), new Sprite(10, 10));
+        Entity b = entityManager.spawn(new Transform(100, 0), new Sprite(10, 10));
+        Entity c = entityManager.spawn(new Transform(200, 0), new Sprite(10, 10));
+        entityManager.refresh();
+        renderList.setTrackChanges(true);
+        renderList.update(entityManager);
+        renderList.clearDirty();
+
+        // 別のマネージャーの変化は影響しない
+        EntityManager other = new EntityManager();
+        other.spawn(new Transform(), new Sprite(10, 10));
+        other.refresh();
+        renderList.update(entityManager);
+        assertFalse(renderList.hasDirty());
+
+        // 削除は全体ではなく、削除した描画対象の範囲だけを記録する
+        entityManager.removeEntity(b);
+        entityManager.refresh();
+        renderList.update(entityManager);
+        assertFalse(renderList.isAllDirty());
+        assertDirty(95f, -5f, 105f, 5f);
+        assertOrder(a, c);
+        renderList.clearDirty();
+
+        // 同じzOrderの中ではエンティティの順番を保つ
+        Entity d = entityManager.spawn(new Transform(300, 0), new Sprite(10, 10));
+        entityManager.refresh();
+        a.setActive(false);
+        renderList.update(entityManager);
+        assertOrder(c, d);
+        a.setActive(true);
+        c.addComponents(new Sprite(4, 4));
+        renderList.update(entityManager);
+        assertOrder(a, c, d);
+        assertEquals(4, renderList.sprite(renderList.at(1)).width);
+
+        // 描画に関係しないコンポーネントの変化は反映しない
+        renderList.clearDirty();
+        d.addComponents(new Velocity(0, 0));
+        renderList.update(entityManager);
+        assertFalse(renderList.hasDirty());
+    }
+
+    @Test
+    void testCollectsOnlyIntersectingBoundsInDrawOrder() {
+        Sprite[] sprites = new Sprite[100];
+        Transform[] transforms = new Transform[100];
+        for (int i = 0; i < 100; i++) {
+            sprites[i] = new Sprite(10, 10);
+            sprites[i].zOrder = -i;
+            transforms[i] = new Transform(i * 100, 0);
+            entityManager.spawn(transforms[i], sprites[i]);
+        }
+        entityManager.refresh();
+        renderList.update(entityManager);
+
+        // x = 195..405 に重なるのは 2, 3, 4（zOrderの小さい順）
+        assertEquals(3, renderList.collectVisible(195, -5, 405, 5));
+        assertSame(sprites[4], renderList.sprite(renderList.at(0)));
+        assertSame(sprites[2], renderList.sprite(renderList.at(2)));
+
+        // 移動と回転は描画範囲に反映される
+        transforms[50].setPosition(300, 0);
+        transforms[3].rotation = (float) (Math.PI / 4);
+        sprites[2].setSize(4, 4);
+        renderList.update(entityManager);
+        assertEquals(2, renderList.collectVisible(294, -5, 306, 5));
+        assertEquals(1, renderList.collectVisible(203, -5, 294, 5));
+        assertEquals(0, renderList.collectVisible(202.5f, -5, 290, 5));
+    }
+
+    @Test
+    void testBatchingGroupsSameImageAndAlphaWithinZOrder() {
+        BufferedImage pageA = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage pageB = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        ImageSprite[] images = {
+                new ImageSprite(pageA), new ImageSprite(pageB), new ImageSprite(pageA),
+                new ImageSprite(pageB), new ImageSprite(pageA), new ImageSprite(pageA)
+        };
+        images[4].zOrder = 1;
+        images[5].setAlpha(0.5f);
+        for (ImageSprite image : images) {
+            entityManager.spawn(new Transform(), image);
+        }
+        entityManager.refresh();
+        renderList.update(entityManager);
+
+        int n = renderList.collectVisible(-10, -10, 10, 10, true);
+        ImageSprite[] expected = {images[5], images[0], images[2], images[1], images[3], images[4]};
+        assertEquals(expected.length, n);
+        for (int k = 0; k < n; k++) {
+            assertSame(expected[k], renderList.imageSprite(renderList.at(k)), "position " + k);
+        }
+    }
+
+    @Test
+    void testImageIdsStayBounded() {
+        BufferedImage pageA = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage pageB = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        entityManager.spawn(new Transform(), new ImageSprite(pageA));
+        entityManager.spawn(new Transform(), new ImageSprite(pageB));
+        ImageSprite last = new ImageSprite(pageA);
+        entityManager.spawn(new Transform(), last);
+        entityManager.refresh();
+
+        // 毎フレーム新しい画像に差し替えても、番号の表は大きくならない
+        renderList.update(entityManager);
+        for (int frame = 0; frame < 1000; frame++) {
+            last.setImage(new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB));
+            renderList.update(entityManager);
+            renderList.collectVisible(-10, -10, 10, 10, true);
+        }
+        assertTrue(renderList.imageIdCount() <= 3 * 2 + 64 + 1);
+    }
+
+    private Sprite spawnSprite(int zOrder) {
+        Sprite sprite = new Sprite(10, 10);
+        sprite.zOrder = zOrder;
+        entityManager.spawn(new Transform(), sprite);
+        return sprite;
+    }
+
+    @Test
+    void testTracksBoundsOfChangedDrawables() {
+        Entity moving = entityManager.spawn(new Transform(10, 10), new Sprite(10, 10));
+        Sprite recolored = new Sprite(10, 10);
+        entityManager.spawn(new Transform(100, 100), recolored);
+        entityManager.refresh();
+        renderList.setTrackChanges(true);
+        renderList.update(entityManager);
+        assertTrue(renderList.isAllDirty());
+        renderList.clearDirty();
+
+        // 変化がなければ何も記録しない
+        renderList.update(entityManager);
+        assertFalse(renderList.hasDirty());
+
+        // 移動は変化前と変化後の範囲を記録する
+        moving.getComponent(Transform.class).get().x = 20;
+        renderList.update(entityManager);
+        assertFalse(renderList.isAllDirty());
+        assertDirty(5f, 5f, 25f, 15f);
+        renderList.clearDirty();
+
+        // 色の変更は今の範囲を記録する
+        recolored.color = Color.RED;
+        renderList.update(entityManager);
+        assertDirty(95f, 95f, 105f, 105f);
+        renderList.clearDirty();
+
+        // カメラの追加は全体の変化になる
+        entityManager.spawn(new Camera());
+        entityManager.refresh();
+        renderList.update(entityManager);
+        assertTrue(renderList.isAllDirty());
+    }
+
+    @Test
+    void testTracksChangedLayers() {
+        Sprite background = spawnSprite(-5);
+        Sprite front = spawnSprite(0);
+        entityManager.refresh();
+        assertEquals(0, renderList.addLayer(-10, -1));
+        assertThrows(IllegalArgumentException.class, () -> renderList.addLayer(-1, 3));
+        renderList.update(entityManager);
+        assertTrue(renderList.isLayerDirty(0));
+        renderList.clearLayerDirty(0);
+
+        // レイヤーの外の変化は記録しない
+        front.color = Color.RED;
+        renderList.update(entityManager);
+        assertFalse(renderList.isLayerDirty(0));
+
+        background.width = 20;
+        renderList.update(entityManager);
+        assertTrue(renderList.isLayerDirty(0));
+        renderList.clearLayerDirty(0);
+
+        // レイヤーに入ってきた描画対象も変化として記録する
+        front.zOrder = -2;
+        renderList.update(entityManager);
+        assertTrue(renderList.isLayerDirty(0));
+    }
+
+    private void collectAll() {
+        renderList.collectVisible(-1e9f, -1e9f, 1e9f, 1e9f);
+    }
+
+    private void assertDirty(float minX, float minY, float maxX, float maxY) {
+        DirtyRegion dirty = renderList.dirtyRegion();
+        assertEquals(1, dirty.size());
+        assertEquals(minX, dirty.minX(0));
+        assertEquals(minY, dirty.minY(0));
+        assertEquals(maxX, dirty.maxX(0));
+        assertEquals(maxY, dirty.maxY(0));
+    }
+
+    private void assertOrder(Entity... expected) {
+        assertEquals(expected.length, renderList.size());
+        assertEquals(expected.length, renderList.collectVisible(-1e9f, -1e9f, 1e9f, 1e9f));
+        for (int k = 0; k < expected.length; k++) {
+            assertSame(expected[k].getComponent(Sprite.class).get(), renderList.sprite(renderList.at(k)), "position " + k);
+        }
+    }
+
+    private void assertOrder(Sprite[] sprites, int... expected) {
+        assertEquals(expected.length, renderList.size());
+        assertEquals(expected.length, renderList.collectVisible(-1e9f, -1e9f, 1e9f, 1e9f));
+        for (int k = 0; k < expected.length; k++) {
+            assertSame(sprites[expected[k]], renderList.sprite(renderList.at(k)), "position " + k);
+        }
+    }
+}
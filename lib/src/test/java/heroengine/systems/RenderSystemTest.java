@@ -0,0 +1,330 @@
+package heroengine.systems;
+
+import heroengine.components.Camera;
+import heroengine.components.ImageSprite;
+import heroengine.components.Sprite;
+import heroengine.components.Text;
+import heroengine.components.Transform;
+import heroengine.ecs.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderSystemTest {
+
+    private final EntityManager entityManager = new EntityManager();
+
+    @Test
+    void testRenderDrawsInZOrder() {
+        Sprite front = new Sprite(10, 10, Color.BLUE);
+        Sprite back = new Sprite(10, 10, Color.RED);
+        back.zOrder = -1;
+        entityManager.spawn(new Transform(5, 5), front);
+        entityManager.spawn(new Transform(5, 5), back);
+        entityManager.refresh();
+
+        RenderSystem renderSystem = renderSystem();
+        render(renderSystem, 10, 10);
+        BufferedImage image = render(renderSystem, 10, 10);
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(5, 5));
+    }
+
+    @Test
+    void testBatchingIsOptIn() {
+        BufferedImage pageA = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage pageB = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        fill(pageA, Color.RED);
+        fill(pageB, Color.GREEN);
+        entityManager.spawn(new Transform(2, 2), new ImageSprite(pageA));
+        entityManager.spawn(new Transform(2, 2), new ImageSprite(pageB));
+        entityManager.spawn(new Transform(2, 2), new ImageSprite(pageA));
+        entityManager.refresh();
+
+        // デフォルトではエンティティの順番に描画する（最後の赤が手前）
+        RenderSystem renderSystem = renderSystem();
+        assertEquals(Color.RED.getRGB(), render(renderSystem, 4, 4).getRGB(2, 2));
+
+        // まとめると同じ画像が続き、緑が手前になる
+        renderSystem.setBatching(true);
+        assertEquals(Color.GREEN.getRGB(), render(renderSystem, 4, 4).getRGB(2, 2));
+    }
+
+    @Test
+    void testCameraViewportAndZoom() {
+        entityManager.spawn(new Transform(1000, 1000), new Sprite(10, 10, Color.GREEN));
+        entityManager.spawn(new Transform(0, 0), new Sprite(10, 10, Color.RED));
+        Camera camera = new Camera(1000, 1000);
+        camera.setZoom(2);
+        camera.setViewport(10, 0, 10, 10);
+        entityManager.spawn(camera);
+        entityManager.refresh();
+
+        BufferedImage image = render(renderSystem(), 30, 10);
+
+        // ビューポートの中央に2倍で映り、ビューポートの外には描画されない
+        assertEquals(Color.GREEN.getRGB(), image.getRGB(15, 5));
+        assertEquals(Color.GREEN.getRGB(), image.getRGB(10, 0));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(9, 5));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(20, 5));
+    }
+
+    @Test
+    void testDirtyRectanglesRepaintMovedSprite() {
+        Transform transform = new Transform(15, 15);
+        entityManager.spawn(transform, new Sprite(10, 10, Color.BLUE));
+        entityManager.spawn(new Transform(80, 80), new Text("score"));
+        entityManager.refresh();
+
+        RenderSystem renderSystem = renderSystem();
+        renderSystem.setDirtyRectangles(true);
+        renderSystem.setFullRedrawThreshold(0.1f);
+        BufferedImage image = render(renderSystem, 100, 100);
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(15, 15));
+
+        // 移動前の位置は消え、移動後の位置に描画される（変化していない部分は前回の結果のまま）
+        transform.x = 40;
+        image = render(renderSystem, 100, 100);
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(15, 15));
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(40, 15));
+    }
+
+    @Test
+    void testDirtyRectanglesKeepDistantChangesApart() {
+        // Pongのように左右のパドルとボールだけが動く
+        Transform left = new Transform(30, 300);
+        Transform right = new Transform(770, 300);
+        Transform ball = new Transform(400, 300);
+        entityManager.spawn(left, new Sprite(10, 80, Color.WHITE));
+        entityManager.spawn(right, new Sprite(10, 80, Color.WHITE));
+        entityManager.spawn(ball, new Sprite(10, 10, Color.WHITE));
+        BufferedImage pixels = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        fill(pixels, Color.BLUE);
+        entityManager.spawn(new Transform(200, 300), new ImageSprite(pixels));
+        entityManager.refresh();
+
+        RenderSystem renderSystem = renderSystem();
+        renderSystem.setDirtyRectangles(true);
+        BufferedImage image = render(renderSystem, 800, 600);
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(200, 300));
+
+        // 画像の中身を直接書き換えても、描き直さない限り前回の結果のまま
+        fill(pixels, Color.RED);
+        left.y += 5;
+        right.y -= 5;
+        ball.x += 3;
+        image = render(renderSystem, 800, 600);
+        DirtyRegion dirty = renderSystem.dirtyRegion();
+        assertEquals(3, dirty.size());
+        assertTrue(dirty.area() < 0.05 * 800 * 600, "repainted " + dirty.area());
+        // 3つをまとめた矩形なら間にある画像も描き直される
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(200, 300));
+        assertEquals(Color.WHITE.getRGB(), image.getRGB(30, 342));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(30, 258));
+        assertEquals(Color.WHITE.getRGB(), image.getRGB(770, 258));
+        assertEquals(Color.WHITE.getRGB(), image.getRGB(407, 300));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(396, 300));
+
+        // 描き直せば書き換えた中身が映る
+        renderSystem.invalidate();
+        image = render(renderSystem, 800, 600);
+        assertEquals(Color.RED.getRGB(), image.getRGB(200, 300));
+    }
+
+    @Test
+    void testTranslateOnlyAndRotatedSprites() {
+        Transform rotated = new Transform(30, 10);
+        rotated.rotation = (float) (Math.PI / 2);
+        entityManager.spawn(new Transform(9.6f, 10.4f), new Sprite(4, 4, Color.BLUE));
+        entityManager.spawn(rotated, new Sprite(20, 2, Color.RED));
+        entityManager.refresh();
+
+        BufferedImage image = render(renderSystem(), 40, 40);
+
+        // 移動だけのスプライトは整数に丸めた位置に描画される
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(8, 8));
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(11, 11));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(12, 12));
+        // 回転したスプライトは縦長になる
+        assertEquals(Color.RED.getRGB(), image.getRGB(30, 2));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(25, 10));
+    }
+
+    @Test
+    void testTranslateOnlySpritesKeepSubPixelPositionsUnderZoom() {
+        Camera camera = new Camera(0, 0);
+        camera.setZoom(8);
+        entityManager.spawn(new Transform(0.5f, 0), new Sprite(2, 2, Color.BLUE));
+        entityManager.spawn(camera);
+        entityManager.refresh();
+
+        BufferedImage image = render(renderSystem(), 100, 100);
+
+        // 8倍なら0.5の位置は4ピクセル右にずれる（ワールド座標で丸めると8ピクセル単位になる）
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(45, 50));
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(46, 50));
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(61, 50));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(62, 50));
+    }
+
+    @Test
+    void testSubPixelPositionsKeepAntialiasedEdges() {
+        Transform transform = new Transform(10.3f, 10);
+        entityManager.spawn(transform, new Sprite(8, 8, Color.WHITE));
+        entityManager.refresh();
+        RenderSystem renderSystem = renderSystem();
+
+        // アンチエイリアスが有効なら、小数の位置を丸めずに描画する（変換を設定した描画と同じ結果）
+        for (float x : new float[]{10.3f, 10.5f, 10.7f, 11f}) {
+            transform.x = x;
+            BufferedImage image = new BufferedImage(24, 20, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = clipped(image);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            renderSystem.render(g);
+
+            BufferedImage expected = new BufferedImage(24, 20, BufferedImage.TYPE_INT_RGB);
+            Graphics2D reference = expected.createGraphics();
+            reference.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            reference.translate(x, 10);
+            reference.setColor(Color.WHITE);
+            reference.fillRect(-4, -4, 8, 8);
+            for (int px = 0; px < 24; px++) {
+                assertEquals(expected.getRGB(px, 10), image.getRGB(px, 10), "x=" + x + " pixel " + px);
+            }
+        }
+    }
+
+    @Test
+    void testCachedLayerIsBlittedUntilInvalidated() {
+        BufferedImage tile = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        fill(tile, Color.RED);
+        ImageSprite background = new ImageSprite(tile);
+        background.zOrder = -1;
+        Transform front = new Transform(20, 20);
+        entityManager.spawn(new Transform(50, 50), background);
+        entityManager.spawn(front, new Sprite(10, 10, Color.BLUE));
+        entityManager.refresh();
+
+        RenderSystem renderSystem = renderSystem();
+        renderSystem.addCachedLayer(-100, -1);
+        BufferedImage image = render(renderSystem, 100, 100);
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(20, 20));
+        assertEquals(Color.RED.getRGB(), image.getRGB(80, 80));
+
+        // 画像の中身を直接書き換えても、レイヤーは描き直されない
+        fill(tile, Color.GREEN);
+        front.x = 60;
+        image = render(renderSystem, 100, 100);
+        assertEquals(Color.RED.getRGB(), image.getRGB(20, 20));
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(60, 20));
+
+        renderSystem.invalidate();
+        image = render(renderSystem, 100, 100);
+        assertEquals(Color.GREEN.getRGB(), image.getRGB(20, 20));
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(60, 20));
+    }
+
+    @Test
+    void testCachedLayerWithMultipleCameras() {
+        Sprite background = new Sprite(20, 20, Color.BLUE);
+        background.zOrder = -5;
+        entityManager.spawn(new Transform(0, 0), background);
+        entityManager.spawn(new Transform(0, 0), new Sprite(10, 10, Color.RED));
+        Camera first = new Camera(0, 0);
+        Camera second = new Camera(30, 0);
+        entityManager.spawn(first);
+        entityManager.spawn(second);
+        entityManager.refresh();
+
+        // 画面全体を映すカメラが重なっていても、キャッシュしない場合と同じ結果になる
+        // （2つ目のカメラのレイヤーが1つ目のカメラの手前のスプライトを覆わない）
+        assertCachedLayerMatchesDirectRendering();
+        BufferedImage image = renderWithCachedLayer();
+        assertEquals(Color.RED.getRGB(), image.getRGB(50, 50));
+        assertEquals(Color.RED.getRGB(), image.getRGB(20, 50));
+
+        // 画面を分割したカメラでは、それぞれのビューポートの範囲だけを転送する
+        first.setViewport(0, 0, 50, 100);
+        second.setViewport(50, 0, 50, 100);
+        assertCachedLayerMatchesDirectRendering();
+        image = renderWithCachedLayer();
+        assertEquals(Color.RED.getRGB(), image.getRGB(25, 50));
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(52, 50));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(45, 50));
+
+        // カメラを減らすと、残ったカメラのレイヤーを描き直す
+        entityManager.removeEntity(entityManager.getEntities().get(3));
+        entityManager.refresh();
+        assertCachedLayerMatchesDirectRendering();
+    }
+
+    @Test
+    void testInvalidateDropsScaledImages() {
+        BufferedImage tile = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        fill(tile, Color.RED);
+        ImageSprite sprite = new ImageSprite(tile);
+        sprite.setSize(8, 8);
+        entityManager.spawn(new Transform(4, 4), sprite);
+        entityManager.refresh();
+
+        RenderSystem renderSystem = renderSystem();
+        assertEquals(Color.RED.getRGB(), render(renderSystem, 8, 8).getRGB(4, 4));
+        assertEquals(1, renderSystem.getImageCache().size());
+
+        fill(tile, Color.GREEN);
+        renderSystem.invalidate();
+        assertEquals(0, renderSystem.getImageCache().size());
+        assertEquals(Color.GREEN.getRGB(), render(renderSystem, 8, 8).getRGB(4, 4));
+    }
+
+    /**
+     * entityManager を描画する RenderSystem（パネルなし）
+     */
+    private RenderSystem renderSystem() {
+        RenderSystem renderSystem = new RenderSystem(null);
+        renderSystem.setEntityManager(entityManager);
+        return renderSystem;
+    }
+
+    /**
+     * 新しい画像に1フレーム描画する（部分再描画では前回の結果が残らないので、描き直した範囲だけが映る）
+     */
+    private static BufferedImage render(RenderSystem renderSystem, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        renderSystem.render(clipped(image));
+        return image;
+    }
+
+    private static Graphics2D clipped(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setClip(0, 0, image.getWidth(), image.getHeight());
+        return g;
+    }
+
+    private static void fill(BufferedImage image, Color color) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+    }
+
+    private BufferedImage renderWithCachedLayer() {
+        RenderSystem renderSystem = renderSystem();
+        renderSystem.addCachedLayer(-100, -1);
+        render(renderSystem, 100, 100);
+        // 2フレーム目はキャッシュした画像の転送だけになる
+        return render(renderSystem, 100, 100);
+    }
+
+    private void assertCachedLayerMatchesDirectRendering() {
+        BufferedImage expected = render(renderSystem(), 100, 100);
+        BufferedImage actual = renderWithCachedLayer();
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+}
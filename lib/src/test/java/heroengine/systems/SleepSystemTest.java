@@ -0,0 +1,99 @@
+package heroengine.systems;
+
+import heroengine.components.BoxCollider;
+import heroengine.components.SleepState;
+import heroengine.components.Transform;
+import heroengine.components.Velocity;
+import heroengine.ecs.Entity;
+import heroengine.ecs.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SleepSystemTest {
+
+    private final EntityManager entityManager = new EntityManager();
+    private final MovementSystem movementSystem = new MovementSystem();
+    private final List<String> exits = new ArrayList<>();
+    private final CollisionSystem collisionSystem = new CollisionSystem() {
+        @Override
+        protected void onCollisionExit(Entity a, Entity b) {
+            exits.add(a.getId() + "-" + b.getId());
+        }
+    };
+    private final SleepSystem sleepSystem = new SleepSystem(collisionSystem);
+
+    SleepSystemTest() {
+        movementSystem.setEntityManager(entityManager);
+        collisionSystem.setEntityManager(entityManager);
+        sleepSystem.setEntityManager(entityManager);
+        sleepSystem.setFramesToSleep(10);
+    }
+
+    @Test
+    void testTouchingBodiesSleepAndWakeAsOneIsland() {
+        Entity a = spawnBox(0, 0);
+        Entity b = spawnBox(10, 0);
+        Entity c = spawnBox(500, 0);
+        entityManager.refresh();
+
+        step(12);
+        assertTrue(sleep(a).asleep);
+        assertTrue(sleep(b).asleep);
+        assertEquals(sleep(a).island, sleep(b).island);
+        assertNotEquals(sleep(a).island, sleep(c).island);
+
+        // スリープ中は衝突判定の対象外だが、接触は維持される
+        step(1);
+        assertEquals(3, collisionSystem.getSleepingColliderCount());
+        assertTrue(collisionSystem.isTouching(a, b));
+        assertTrue(exits.isEmpty());
+
+        // 外部から速度を書き換えると、接触しているbも一緒に起きる
+        a.getComponent(Velocity.class).get().set(100, 0);
+        step(1);
+        assertFalse(sleep(a).asleep);
+        assertFalse(sleep(b).asleep);
+        assertTrue(sleep(c).asleep);
+    }
+
+    @Test
+    void testMovingBodyWakesSleepingIslandOnContact() {
+        Entity a = spawnBox(0, 0);
+        Entity ball = entityManager.spawn(new Transform(100, 0), new Velocity(0, 0), new BoxCollider(10, 10));
+        entityManager.refresh();
+        step(12);
+        assertTrue(sleep(a).asleep);
+        assertEquals(0, a.getComponent(Velocity.class).get().vx);
+
+        // スリープ中は動かない
+        float x = a.getComponent(Transform.class).get().x;
+        step(5);
+        assertEquals(x, a.getComponent(Transform.class).get().x);
+        assertTrue(sleep(a).asleep);
+
+        ball.getComponent(Velocity.class).get().set(-600, 0);
+        step(10);
+
+        assertFalse(sleep(a).asleep);
+    }
+
+    private Entity spawnBox(float x, float y) {
+        return entityManager.spawn(new Transform(x, y), new Velocity(1, 0), new BoxCollider(10, 10), new SleepState());
+    }
+
+    private static SleepState sleep(Entity entity) {
+        return entity.getComponent(SleepState.class).get();
+    }
+
+    private void step(int frames) {
+        for (int i = 0; i < frames; i++) {
+            movementSystem.update(1f / 60f);
+            collisionSystem.update(1f / 60f);
+            sleepSystem.update(1f / 60f);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package heroengine.systems;
+
+import heroengine.components.Text;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextCacheTest {
+
+    private final Graphics2D g2d = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+    @Test
+    void testAppendBuildsTextWithoutStrings() {
+        Text text = new Text("0  :  0");
+        text.clear().append(12).append("  :  ").append(-305).append('!');
+        assertTrue(text.isBuffered());
+        assertNull(text.text);
+        assertEquals("12  :  -305!", text.getText());
+
+        text.clear().append(Integer.MIN_VALUE).append(0);
+        assertEquals("-21474836480", text.getText());
+
+        // 文字バッファは必要に応じて広がる
+        text.clear();
+        for (int i = 0; i < 100; i++) {
+            text.append(i % 10);
+        }
+        assertEquals(100, text.getLength());
+
+        text.setText("done");
+        assertFalse(text.isBuffered());
+        assertEquals("done", text.getText());
+    }
+
+    @Test
+    void testRelaysOutOnlyWhenContentOrFontChanges() {
+        Text text = new Text("score");
+        TextCache cache = new TextCache();
+        assertTrue(cache.validate(text, g2d));
+        GlyphVector glyphs = cache.glyphs;
+        int width = cache.width;
+        assertEquals(g2d.getFontMetrics(text.font).stringWidth("score"), width);
+
+        // 色や位置だけの変更では並べ直さない
+        text.setColor(Color.RED);
+        assertFalse(cache.validate(text, g2d));
+        assertSame(glyphs, cache.glyphs);
+
+        text.clear().append(42);
+        assertTrue(cache.validate(text, g2d));
+        assertEquals(2, cache.glyphs.getNumGlyphs());
+        assertFalse(cache.validate(text, g2d));
+
+        text.font = text.font.deriveFont(48f);
+        assertTrue(cache.validate(text, g2d));
+        text.text = "direct";
+        assertTrue(cache.validate(text, g2d));
+        assertEquals(6, cache.glyphs.getNumGlyphs());
+    }
+}